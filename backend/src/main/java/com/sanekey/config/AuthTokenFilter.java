@@ -1,6 +1,11 @@
 package com.sanekey.config;
 
+import com.sanekey.model.User;
+import com.sanekey.service.TokenRevocationService;
+import com.sanekey.service.TokenVersionCache;
 import com.sanekey.service.UserService;
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,6 +13,9 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -24,22 +32,44 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private TokenVersionCache tokenVersionCache;
+    
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+    
+    @Autowired
+    private Environment environment;
+    
+    @Value("${sanekey.app.jwtClaimsAuth:true}")
+    private boolean claimsAuthEnabled;
+    
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
     
+    private boolean gatewaySimulatorActive;
+    
+    @PostConstruct
+    public void init() {
+        gatewaySimulatorActive = environment.acceptsProfiles(Profiles.of("gateway-sim"));
+    }
+    
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
                                     FilterChain filterChain) throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
-                
-                UserDetails userDetails = userService.loadUserByUsername(username);
-                UsernamePasswordAuthenticationToken authentication = 
-                    new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+            Claims claims = jwt != null ? jwtUtils.verifyJwtToken(jwt) : null;
+            if (claims != null && tokenRevocationService.isRevoked(claims)) {
+                logger.warn("Rejected revoked JWT {}", claims.getId());
+            } else if (claims != null) {
+                UserDetails userDetails = resolveUserDetails(claims);
+                if (userDetails != null) {
+                    UsernamePasswordAuthenticationToken authentication = 
+                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                }
             }
         } catch (Exception e) {
             logger.error("Cannot set user authentication: {}", e);
@@ -48,6 +78,37 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
     
+    /**
+     * Build the principal from token claims when possible, falling back to a
+     * user lookup for tokens issued without identity claims
+     */
+    private UserDetails resolveUserDetails(Claims claims) {
+        Number userId = claims.get(JwtUtils.CLAIM_USER_ID, Number.class);
+        String role = claims.get(JwtUtils.CLAIM_ROLE, String.class);
+        Number tokenVersion = claims.get(JwtUtils.CLAIM_TOKEN_VERSION, Number.class);
+        
+        if (!claimsAuthEnabled || userId == null || role == null || tokenVersion == null) {
+            return userService.loadUserByUsername(claims.getSubject());
+        }
+        
+        if (!tokenVersionCache.isCurrent(userId.longValue(), tokenVersion.intValue())) {
+            logger.warn("Rejected JWT with stale token version for user {}", userId);
+            return null;
+        }
+        
+        return new UserPrincipal(userId.longValue(), claims.getSubject(),
+                User.Role.valueOf(role), tokenVersion.intValue());
+    }
+    
+    /**
+     * Under the gateway-sim profile, the gateway simulator receives the
+     * gateways' own bearer credentials, not JWTs
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return gatewaySimulatorActive && request.getServletPath().startsWith("/api/sim/");
+    }
+    
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
         
@@ -57,4 +118,4 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         
         return null;
     }
-}
\ No newline at end of file
+}
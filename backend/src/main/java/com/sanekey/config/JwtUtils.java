@@ -1,8 +1,13 @@
 package com.sanekey.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sanekey.model.User;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -10,43 +15,129 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtils {
     private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
     
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_TOKEN_VERSION = "ver";
+    
     @Value("${sanekey.app.jwtSecret}")
     private String jwtSecret;
     
     @Value("${sanekey.app.jwtExpirationMs}")
     private int jwtExpirationMs;
     
+    @Value("${sanekey.app.jwtClaimsCache.maxSize:10000}")
+    private int claimsCacheMaxSize;
+    
+    private Key signingKey;
+    
+    private JwtParser parser;
+    
+    // Already-verified tokens keyed by SHA-256 digest, each expiring with its token
+    private Cache<String, VerifiedClaims> verifiedClaims;
+    
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+        verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(claimsCacheMaxSize)
+                .expireAfter(new Expiry<String, VerifiedClaims>() {
+                    @Override
+                    public long expireAfterCreate(String digest, VerifiedClaims entry, long currentTime) {
+                        long remainingMs = entry.expiresAt - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMs));
+                    }
+                    
+                    @Override
+                    public long expireAfterUpdate(String digest, VerifiedClaims entry, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(digest, entry, currentTime);
+                    }
+                    
+                    @Override
+                    public long expireAfterRead(String digest, VerifiedClaims entry, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+    
     public String generateJwtToken(Authentication authentication) {
         UserDetails userPrincipal = (UserDetails) authentication.getPrincipal();
         
-        return Jwts.builder()
-                .setSubject((userPrincipal.getUsername()))
+        JwtBuilder builder = Jwts.builder()
+                .setId(UUID.randomUUID().toString())
+                .setSubject((userPrincipal.getUsername()));
+        
+        // Embed identity claims so the filter can authenticate without a user lookup
+        if (userPrincipal instanceof User user) {
+            builder.claim(CLAIM_USER_ID, user.getId())
+                    .claim(CLAIM_ROLE, user.getRole().name())
+                    .claim(CLAIM_TOKEN_VERSION, user.getTokenVersion());
+        }
+        
+        return builder
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(key(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
     
-    private Key key() {
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+    /**
+     * Verify a token once and return its claims, or null if it is invalid or expired.
+     * Repeat calls with the same token are served from the verified-claims cache.
+     */
+    public Claims verifyJwtToken(String token) {
+        if (token == null || token.isEmpty()) {
+            logger.error("JWT claims string is empty");
+            return null;
+        }
+        
+        long now = System.currentTimeMillis();
+        String digest = digest(token);
+        VerifiedClaims cached = verifiedClaims.getIfPresent(digest);
+        if (cached != null) {
+            if (cached.expiresAt > now) {
+                return cached.claims;
+            }
+            verifiedClaims.invalidate(digest);
+            logger.error("JWT token is expired");
+            return null;
+        }
+        
+        Claims claims = parseClaims(token);
+        if (claims != null && claims.getExpiration() != null) {
+            verifiedClaims.put(digest, new VerifiedClaims(claims, claims.getExpiration().getTime()));
+        }
+        return claims;
     }
     
     public String getUserNameFromJwtToken(String token) {
-        return Jwts.parserBuilder().setSigningKey(key()).build()
-                .parseClaimsJws(token).getBody().getSubject();
+        Claims claims = verifyJwtToken(token);
+        return claims != null ? claims.getSubject() : null;
     }
     
     public boolean validateJwtToken(String authToken) {
+        return verifyJwtToken(authToken) != null;
+    }
+    
+    private Claims parseClaims(String token) {
         try {
-            Jwts.parserBuilder().setSigningKey(key()).build().parse(authToken);
-            return true;
+            return parser.parseClaimsJws(token).getBody();
         } catch (MalformedJwtException e) {
             logger.error("Invalid JWT token: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
@@ -55,8 +146,21 @@ public class JwtUtils {
             logger.error("JWT token is unsupported: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             logger.error("JWT claims string is empty: {}", e.getMessage());
+        } catch (JwtException e) {
+            logger.error("JWT signature is invalid: {}", e.getMessage());
         }
         
-        return false;
+        return null;
     }
-}
\ No newline at end of file
+    
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(sha256.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    private record VerifiedClaims(Claims claims, long expiresAt) {}
+}
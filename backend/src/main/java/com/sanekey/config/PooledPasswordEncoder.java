@@ -0,0 +1,159 @@
+package com.sanekey.config;
+
+import com.sanekey.exception.CustomExceptionHandler.BusinessException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt encoder that runs hashing on a dedicated bounded pool instead of the
+ * request threads, rejecting work with 429 once the queue is full
+ */
+public class PooledPasswordEncoder implements PasswordEncoder {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PooledPasswordEncoder.class);
+    
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[aby]?\\$(\\d\\d)\\$");
+    
+    private static final int MIN_STRENGTH = 10;
+    private static final int MAX_STRENGTH = 16;
+    
+    private final BCryptPasswordEncoder delegate;
+    private final int strength;
+    private final long timeoutMs;
+    private final ThreadPoolExecutor executor;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejectedCounter;
+    
+    public PooledPasswordEncoder(int strength, int poolSize, int queueCapacity, long timeoutMs,
+                                 MeterRegistry meterRegistry) {
+        this.strength = strength;
+        this.delegate = new BCryptPasswordEncoder(strength);
+        this.timeoutMs = timeoutMs;
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        
+        this.encodeTimer = Timer.builder("sanekey.bcrypt.duration")
+                .description("BCrypt hashing latency")
+                .tag("operation", "encode")
+                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("sanekey.bcrypt.duration")
+                .description("BCrypt hashing latency")
+                .tag("operation", "matches")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("sanekey.bcrypt.rejected")
+                .description("BCrypt tasks rejected because the pool was saturated")
+                .register(meterRegistry);
+        Gauge.builder("sanekey.bcrypt.queue.depth", executor, e -> e.getQueue().size())
+                .description("BCrypt tasks waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("sanekey.bcrypt.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("BCrypt tasks currently running")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Pick the highest BCrypt cost whose hash time stays within the target latency
+     */
+    public static int calibrateStrength(long targetMs) {
+        int chosen = MIN_STRENGTH;
+        for (int candidate = MIN_STRENGTH; candidate <= MAX_STRENGTH; candidate++) {
+            BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(candidate);
+            long start = System.nanoTime();
+            encoder.encode("calibration-password");
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (elapsedMs > targetMs) {
+                break;
+            }
+            chosen = candidate;
+        }
+        logger.info("BCrypt cost calibrated to {} for a {}ms target", chosen, targetMs);
+        return chosen;
+    }
+    
+    public int getStrength() {
+        return strength;
+    }
+    
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> encodeTimer.recordCallable(() -> delegate.encode(rawPassword)));
+    }
+    
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> matchesTimer.recordCallable(() -> delegate.matches(rawPassword, encodedPassword)));
+    }
+    
+    /**
+     * Rehash on login whenever the stored cost differs from the configured one
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != strength;
+    }
+    
+    public void shutdown() {
+        executor.shutdown();
+    }
+    
+    private <T> T execute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new BusinessException("Too many authentication requests, please retry shortly",
+                    HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests");
+        }
+        
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejectedCounter.increment();
+            throw new BusinessException("Authentication timed out, please retry shortly",
+                    HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password hashing failed", cause);
+        }
+    }
+}
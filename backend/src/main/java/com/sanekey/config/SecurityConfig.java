@@ -1,9 +1,13 @@
 package com.sanekey.config;
 
 import com.sanekey.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
@@ -11,8 +15,6 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
@@ -32,6 +34,27 @@ public class SecurityConfig {
     @Autowired
     private AuthEntryPointJwt unauthorizedHandler;
     
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${sanekey.security.bcrypt.strength:10}")
+    private int bcryptStrength;
+    
+    @Value("${sanekey.security.bcrypt.calibrate:false}")
+    private boolean bcryptCalibrate;
+    
+    @Value("${sanekey.security.bcrypt.targetMs:250}")
+    private long bcryptTargetMs;
+    
+    @Value("${sanekey.security.bcrypt.poolSize:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+    private int bcryptPoolSize;
+    
+    @Value("${sanekey.security.bcrypt.queueCapacity:64}")
+    private int bcryptQueueCapacity;
+    
+    @Value("${sanekey.security.bcrypt.timeoutMs:5000}")
+    private long bcryptTimeoutMs;
+    
     @Bean
     public AuthTokenFilter authenticationJwtTokenFilter() {
         return new AuthTokenFilter();
@@ -42,6 +65,7 @@ public class SecurityConfig {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userService);
         authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setUserDetailsPasswordService(userService);
         return authProvider;
     }
     
@@ -51,8 +75,28 @@ public class SecurityConfig {
     }
     
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PooledPasswordEncoder passwordEncoder() {
+        int strength = bcryptCalibrate
+                ? PooledPasswordEncoder.calibrateStrength(bcryptTargetMs)
+                : bcryptStrength;
+        return new PooledPasswordEncoder(strength, bcryptPoolSize, bcryptQueueCapacity,
+                bcryptTimeoutMs, meterRegistry);
+    }
+    
+    /**
+     * Opens the gateway simulator, which the SDKs call with the gateways' own
+     * credentials; only registered under the gateway-sim profile
+     */
+    @Bean
+    @Order(1)
+    @Profile("gateway-sim")
+    public SecurityFilterChain gatewaySimulatorFilterChain(HttpSecurity http) throws Exception {
+        http.securityMatcher("/api/sim/**")
+            .csrf(csrf -> csrf.disable())
+            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+            .authorizeHttpRequests(auth -> auth.anyRequest().permitAll());
+        
+        return http.build();
     }
     
     @Bean
@@ -66,6 +110,8 @@ public class SecurityConfig {
                 .requestMatchers("/api/test/**").permitAll()
                 .requestMatchers("/api/public/**").permitAll()
                 .requestMatchers("/h2-console/**").permitAll()
+                // Gateway webhooks authenticate by signature
+                .requestMatchers("/api/payments/webhooks/**").permitAll()
                 // Admin endpoints
                 .requestMatchers("/api/admin/**").hasRole("ADMIN")
                 .requestMatchers("/api/users/all").hasRole("ADMIN")
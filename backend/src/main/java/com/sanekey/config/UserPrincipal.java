@@ -0,0 +1,70 @@
+package com.sanekey.config;
+
+import com.sanekey.model.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable principal built from JWT claims, used instead of the User entity
+ * when claims-only authentication is enabled
+ */
+public final class UserPrincipal implements UserDetails {
+
+    private final Long id;
+    private final String email;
+    private final User.Role role;
+    private final int tokenVersion;
+    private final List<GrantedAuthority> authorities;
+
+    public UserPrincipal(Long id, String email, User.Role role, int tokenVersion) {
+        this.id = id;
+        this.email = email;
+        this.role = role;
+        this.tokenVersion = tokenVersion;
+        this.authorities = List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+
+    public Long getId() { return id; }
+    public String getEmail() { return email; }
+    public User.Role getRole() { return role; }
+    public int getTokenVersion() { return tokenVersion; }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
@@ -1,12 +1,22 @@
 package com.sanekey.controller;
 
 import com.sanekey.config.JwtUtils;
+import com.sanekey.exception.CustomExceptionHandler.BusinessException;
 import com.sanekey.model.User;
+import com.sanekey.model.UserSnapshot;
+import com.sanekey.service.LoginThrottleService;
+import com.sanekey.service.TokenRevocationService;
+import com.sanekey.service.TokenVersionCache;
 import com.sanekey.service.UserService;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -30,11 +40,36 @@ public class AuthController {
     @Autowired
     private JwtUtils jwtUtils;
     
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+    
+    @Autowired
+    private LoginThrottleService loginThrottleService;
+    
+    @Autowired
+    private TokenVersionCache tokenVersionCache;
+    
     /**
      * User sign in endpoint
      */
     @PostMapping("/signin")
-    public ResponseEntity<?> signInUser(@Valid @RequestBody SignInRequest signInRequest) {
+    public ResponseEntity<?> signInUser(@Valid @RequestBody SignInRequest signInRequest,
+                                        HttpServletRequest request) {
+        String clientIp = request.getRemoteAddr();
+        
+        // Throttle by IP and account before spending a BCrypt verify
+        long retryAfterSeconds = loginThrottleService.checkAttempt(clientIp, signInRequest.getEmail());
+        if (retryAfterSeconds > 0) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Too many sign-in attempts, please try again later");
+            error.put("retryAfter", retryAfterSeconds);
+            error.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                    .body(error);
+        }
+        
         try {
             // Authenticate user credentials
             Authentication authentication = authenticationManager.authenticate(
@@ -44,6 +79,8 @@ public class AuthController {
                 )
             );
             
+            loginThrottleService.recordSuccess(signInRequest.getEmail());
+            
             // Set authentication in security context
             SecurityContextHolder.getContext().setAuthentication(authentication);
             
@@ -51,7 +88,7 @@ public class AuthController {
             String jwt = jwtUtils.generateJwtToken(authentication);
             
             // Get user details
-            User user = (User) authentication.getPrincipal();
+            User user = userService.getCurrentUser(authentication);
             
             // Prepare response
             Map<String, Object> response = new HashMap<>();
@@ -64,6 +101,21 @@ public class AuthController {
             
             return ResponseEntity.ok(response);
             
+        } catch (BusinessException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", e.getMessage());
+            error.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.status(e.getStatus()).body(error);
+        } catch (BadCredentialsException e) {
+            // Only a failed password check counts towards the throttle
+            loginThrottleService.recordFailure(clientIp, signInRequest.getEmail());
+            
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Invalid email or password");
+            error.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.badRequest().body(error);
         } catch (Exception e) {
             Map<String, Object> error = new HashMap<>();
             error.put("success", false);
@@ -79,17 +131,8 @@ public class AuthController {
     @PostMapping("/signup")
     public ResponseEntity<?> signUpUser(@Valid @RequestBody SignUpRequest signUpRequest) {
         try {
-            // Check if email already exists
-            if (userService.existsByEmail(signUpRequest.getEmail())) {
-                Map<String, Object> error = new HashMap<>();
-                error.put("success", false);
-                error.put("message", "Email is already registered!");
-                error.put("timestamp", LocalDateTime.now());
-                return ResponseEntity.badRequest().body(error);
-            }
-            
             // Validate password strength
-            if (signUpRequest.getPassword().length() < 6) {
+            if (signUpRequest.getPassword() == null || signUpRequest.getPassword().length() < 6) {
                 Map<String, Object> error = new HashMap<>();
                 error.put("success", false);
                 error.put("message", "Password must be at least 6 characters long");
@@ -97,20 +140,16 @@ public class AuthController {
                 return ResponseEntity.badRequest().body(error);
             }
             
-            // Register new user
+            // Register new user; a duplicate email is detected by the unique constraint
             User user = userService.registerUser(
                 signUpRequest.getEmail(),
                 signUpRequest.getPassword(),
                 signUpRequest.getFullName()
             );
             
-            // Auto sign in after registration
-            Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                    signUpRequest.getEmail(), 
-                    signUpRequest.getPassword()
-                )
-            );
+            // Auto sign in after registration with the freshly stored user
+            Authentication authentication =
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
             
             SecurityContextHolder.getContext().setAuthentication(authentication);
             String jwt = jwtUtils.generateJwtToken(authentication);
@@ -126,6 +165,13 @@ public class AuthController {
             
             return ResponseEntity.ok(response);
             
+        } catch (BusinessException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", e.getMessage());
+            error.put("error", e.getError());
+            error.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.status(e.getStatus()).body(error);
         } catch (Exception e) {
             Map<String, Object> error = new HashMap<>();
             error.put("success", false);
@@ -139,8 +185,13 @@ public class AuthController {
      * User sign out endpoint
      */
     @PostMapping("/signout")
-    public ResponseEntity<?> signOutUser() {
+    public ResponseEntity<?> signOutUser(@RequestHeader(value = "Authorization", required = false) String authHeader) {
         try {
+            // Revoke the presented token for the rest of its lifetime
+            if (authHeader != null && authHeader.startsWith("Bearer ")) {
+                tokenRevocationService.revokeToken(authHeader.substring(7));
+            }
+            
             // Clear security context
             SecurityContextHolder.clearContext();
             
@@ -161,7 +212,9 @@ public class AuthController {
     }
     
     /**
-     * Validate JWT token endpoint
+     * Validate JWT token endpoint; a token is valid only if AuthTokenFilter
+     * would accept it, so signed-out tokens and tokens of deactivated
+     * accounts or from before a password change are rejected
      */
     @GetMapping("/validate")
     public ResponseEntity<?> validateToken(@RequestHeader("Authorization") String authHeader) {
@@ -169,11 +222,15 @@ public class AuthController {
             if (authHeader != null && authHeader.startsWith("Bearer ")) {
                 String jwt = authHeader.substring(7);
                 
-                if (jwtUtils.validateJwtToken(jwt)) {
-                    String email = jwtUtils.getUserNameFromJwtToken(jwt);
-                    User user = userService.findByEmail(email)
-                            .orElseThrow(() -> new RuntimeException("User not found"));
-                    
+                Claims claims = jwtUtils.verifyJwtToken(jwt);
+                
+                UserSnapshot user = claims != null && isAccepted(claims)
+                        ? userService.findSnapshotByEmail(claims.getSubject())
+                                .filter(snapshot -> Boolean.TRUE.equals(snapshot.getIsActive()))
+                                .orElse(null)
+                        : null;
+                
+                if (user != null) {
                     Map<String, Object> response = new HashMap<>();
                     response.put("success", true);
                     response.put("valid", true);
@@ -203,6 +260,20 @@ public class AuthController {
         }
     }
     
+    /**
+     * The revocation and token-version checks AuthTokenFilter applies; tokens
+     * issued without a version claim are left to the active-user check
+     */
+    private boolean isAccepted(Claims claims) {
+        if (tokenRevocationService.isRevoked(claims)) {
+            return false;
+        }
+        Number userId = claims.get(JwtUtils.CLAIM_USER_ID, Number.class);
+        Number tokenVersion = claims.get(JwtUtils.CLAIM_TOKEN_VERSION, Number.class);
+        return userId == null || tokenVersion == null
+                || tokenVersionCache.isCurrent(userId.longValue(), tokenVersion.intValue());
+    }
+    
     /**
      * Get current user endpoint
      */
@@ -210,7 +281,7 @@ public class AuthController {
     public ResponseEntity<?> getCurrentUser(Authentication authentication) {
         try {
             if (authentication != null && authentication.isAuthenticated()) {
-                User user = (User) authentication.getPrincipal();
+                UserSnapshot user = userService.getCurrentUserSnapshot(authentication);
                 
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", true);
@@ -281,6 +352,15 @@ public class AuthController {
             this.createdAt = user.getCreatedAt();
         }
         
+        public UserResponse(UserSnapshot user) {
+            this.id = user.getId();
+            this.email = user.getEmail();
+            this.fullName = user.getFullName();
+            this.avatarUrl = user.getAvatarUrl();
+            this.role = user.getRole();
+            this.createdAt = user.getCreatedAt();
+        }
+        
         // Getters
         public Long getId() { return id; }
         public String getEmail() { return email; }
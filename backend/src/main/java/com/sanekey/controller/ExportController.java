@@ -0,0 +1,119 @@
+package com.sanekey.controller;
+
+import com.sanekey.service.ExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming bulk exports (Admin only). Rows are written as they are read,
+ * in id order; after a dropped connection, request again with cursor set to
+ * the id of the last complete row received.
+ */
+@RestController
+@RequestMapping("/api/admin/exports")
+@PreAuthorize("hasRole('ADMIN')")
+public class ExportController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ExportController.class);
+    
+    @Autowired
+    private ExportService exportService;
+    
+    /**
+     * Export payments; status is a payment status
+     */
+    @GetMapping("/payments")
+    public void exportPayments(@RequestParam(defaultValue = "ndjson") String format,
+                               @RequestParam(defaultValue = "false") boolean gzip,
+                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                               @RequestParam(required = false) String status,
+                               @RequestParam(required = false) Long cursor,
+                               HttpServletResponse response) throws IOException {
+        export(ExportService.Dataset.PAYMENTS, format, gzip, from, to, status, cursor, response);
+    }
+    
+    /**
+     * Export users; status is ACTIVE or INACTIVE
+     */
+    @GetMapping("/users")
+    public void exportUsers(@RequestParam(defaultValue = "ndjson") String format,
+                            @RequestParam(defaultValue = "false") boolean gzip,
+                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                            @RequestParam(required = false) String status,
+                            @RequestParam(required = false) Long cursor,
+                            HttpServletResponse response) throws IOException {
+        export(ExportService.Dataset.USERS, format, gzip, from, to, status, cursor, response);
+    }
+    
+    /**
+     * Export reviews; status is VERIFIED or UNVERIFIED
+     */
+    @GetMapping("/reviews")
+    public void exportReviews(@RequestParam(defaultValue = "ndjson") String format,
+                              @RequestParam(defaultValue = "false") boolean gzip,
+                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                              @RequestParam(required = false) String status,
+                              @RequestParam(required = false) Long cursor,
+                              HttpServletResponse response) throws IOException {
+        export(ExportService.Dataset.REVIEWS, format, gzip, from, to, status, cursor, response);
+    }
+    
+    private void export(ExportService.Dataset dataset, String format, boolean gzip,
+                        LocalDateTime from, LocalDateTime to, String status, Long cursor,
+                        HttpServletResponse response) throws IOException {
+        // Validate before the first byte is written, so errors still get a proper status
+        ExportService.Format exportFormat;
+        try {
+            exportFormat = ExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Format must be ndjson or csv");
+        }
+        Object statusFilter = exportService.statusFilter(dataset, status);
+        
+        exportService.acquireSlot();
+        try {
+            String fileName = dataset.fileName() + (exportFormat == ExportService.Format.CSV ? ".csv" : ".ndjson");
+            if (gzip) {
+                response.setContentType("application/gzip");
+                fileName += ".gz";
+            } else {
+                response.setContentType(exportFormat == ExportService.Format.CSV
+                        ? "text/csv;charset=UTF-8" : "application/x-ndjson;charset=UTF-8");
+            }
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+            
+            OutputStream out = response.getOutputStream();
+            if (gzip) {
+                out = new GZIPOutputStream(out, 64 * 1024);
+            }
+            exportService.export(dataset, exportFormat, from, to, statusFilter, cursor, out);
+            if (out instanceof GZIPOutputStream gzipOut) {
+                gzipOut.finish();
+            }
+            out.flush();
+        } catch (SQLException e) {
+            // Headers are already sent; the truncated stream tells the client to resume
+            logger.error("Export of {} failed: {}", dataset.fileName(), e.getMessage());
+            throw new IOException("Export failed", e);
+        } finally {
+            exportService.releaseSlot();
+        }
+    }
+}
@@ -1,8 +1,18 @@
 package com.sanekey.controller;
 
+import com.sanekey.exception.CustomExceptionHandler.BusinessException;
 import com.sanekey.model.Payment;
+import com.sanekey.model.PaymentRevenueRollup;
 import com.sanekey.model.User;
+import com.sanekey.repository.PaymentSearchCriteria;
+import com.sanekey.service.IdempotencyService;
+import com.sanekey.service.PaymentJournal;
+import com.sanekey.service.PaymentSearchService;
 import com.sanekey.service.PaymentService;
+import com.sanekey.service.PaymentTransitionResult;
+import com.sanekey.service.RevenueRollupService;
+import com.sanekey.service.UserService;
+import com.sanekey.util.KeysetPage;
 import com.stripe.exception.StripeException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -11,11 +21,10 @@ import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/payments")
@@ -25,27 +34,53 @@ public class PaymentController {
     @Autowired
     private PaymentService paymentService;
     
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private RevenueRollupService revenueRollupService;
+    
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
+    @Autowired
+    private PaymentSearchService paymentSearchService;
+    
+    @Autowired
+    private PaymentJournal paymentJournal;
+    
     /**
-     * Create Stripe payment
+     * Create Stripe payment; an Idempotency-Key header makes retries replay the first response
      */
     @PostMapping("/stripe/create")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
     public ResponseEntity<?> createStripePayment(
             @RequestBody CreatePaymentRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             Authentication authentication) {
+        User user = userService.getCurrentUser(authentication);
+        return idempotencyService.execute(user.getId(), idempotencyKey,
+                IdempotencyService.fingerprint("stripe/create", request.getAmount(), request.getDescription()),
+                () -> createStripePayment(request, user, IdempotencyService.gatewayKey(user.getId(), idempotencyKey)));
+    }
+    
+    /**
+     * Responses for requests that never reached the gateway are thrown as
+     * NotExecutedException, so the Idempotency-Key stays free for a retry
+     */
+    private ResponseEntity<?> createStripePayment(CreatePaymentRequest request, User user, String gatewayKey) {
+        if (request.getAmount() == null || request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", "Invalid payment amount");
+            throw new IdempotencyService.NotExecutedException(ResponseEntity.badRequest().body(error));
+        }
+        
         try {
-            if (request.getAmount() == null || request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
-                Map<String, String> error = new HashMap<>();
-                error.put("message", "Invalid payment amount");
-                return ResponseEntity.badRequest().body(error);
-            }
-            
-            User user = (User) authentication.getPrincipal();
-            
             Payment payment = paymentService.createStripePayment(
                 user,
                 request.getAmount(),
-                request.getDescription()
+                request.getDescription(),
+                gatewayKey
             );
             
             Map<String, Object> response = new HashMap<>();
@@ -58,6 +93,9 @@ public class PaymentController {
             Map<String, String> error = new HashMap<>();
             error.put("message", "Stripe error: " + e.getMessage());
             return ResponseEntity.badRequest().body(error);
+        } catch (BusinessException e) {
+            // Only the gateway guard throws these, when it rejects the call before it is made
+            throw new IdempotencyService.NotExecutedException(gatewayError(e));
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("message", "Failed to create payment: " + e.getMessage());
@@ -66,26 +104,37 @@ public class PaymentController {
     }
     
     /**
-     * Create PayPal payment
+     * Create PayPal payment; an Idempotency-Key header makes retries replay the first response
      */
     @PostMapping("/paypal/create")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
     public ResponseEntity<?> createPayPalPayment(
             @RequestBody CreatePaymentRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             Authentication authentication) {
+        User user = userService.getCurrentUser(authentication);
+        return idempotencyService.execute(user.getId(), idempotencyKey,
+                IdempotencyService.fingerprint("paypal/create", request.getAmount(), request.getDescription()),
+                () -> createPayPalPayment(request, user, IdempotencyService.gatewayKey(user.getId(), idempotencyKey)));
+    }
+    
+    /**
+     * Responses for requests that never reached the gateway are thrown as
+     * NotExecutedException, so the Idempotency-Key stays free for a retry
+     */
+    private ResponseEntity<?> createPayPalPayment(CreatePaymentRequest request, User user, String gatewayKey) {
+        if (request.getAmount() == null || request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", "Invalid payment amount");
+            throw new IdempotencyService.NotExecutedException(ResponseEntity.badRequest().body(error));
+        }
+        
         try {
-            if (request.getAmount() == null || request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
-                Map<String, String> error = new HashMap<>();
-                error.put("message", "Invalid payment amount");
-                return ResponseEntity.badRequest().body(error);
-            }
-            
-            User user = (User) authentication.getPrincipal();
-            
             Payment payment = paymentService.createPayPalPayment(
                 user,
                 request.getAmount(),
-                request.getDescription()
+                request.getDescription(),
+                gatewayKey
             );
             
             Map<String, Object> response = new HashMap<>();
@@ -94,6 +143,9 @@ public class PaymentController {
             
             return ResponseEntity.ok(response);
             
+        } catch (BusinessException e) {
+            // Only the gateway guard throws these, when it rejects the call before it is made
+            throw new IdempotencyService.NotExecutedException(gatewayError(e));
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("message", "Failed to create PayPal payment: " + e.getMessage());
@@ -120,6 +172,8 @@ public class PaymentController {
             Map<String, String> error = new HashMap<>();
             error.put("message", "Stripe error: " + e.getMessage());
             return ResponseEntity.badRequest().body(error);
+        } catch (BusinessException e) {
+            return gatewayError(e);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("message", "Failed to confirm payment: " + e.getMessage());
@@ -142,6 +196,8 @@ public class PaymentController {
             
             return ResponseEntity.ok(response);
             
+        } catch (BusinessException e) {
+            return gatewayError(e);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("message", "Failed to confirm PayPal payment: " + e.getMessage());
@@ -150,20 +206,23 @@ public class PaymentController {
     }
     
     /**
-     * Get user's payment history
+     * Get user's payment history, one keyset page at a time
      */
     @GetMapping("/history")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
-    public ResponseEntity<?> getPaymentHistory(Authentication authentication) {
+    public ResponseEntity<?> getPaymentHistory(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Payment.PaymentStatus status,
+            @RequestParam(required = false) Payment.PaymentMethod method,
+            Authentication authentication) {
         try {
-            User user = (User) authentication.getPrincipal();
-            List<Payment> payments = paymentService.getPaymentsByUser(user);
-            
-            List<PaymentResponse> paymentResponses = payments.stream()
-                    .map(PaymentResponse::new)
-                    .collect(Collectors.toList());
+            User user = userService.getCurrentUser(authentication);
+            KeysetPage<PaymentResponse> page = paymentService
+                    .getPaymentHistoryPage(user.getId(), status, method, cursor, limit)
+                    .map(PaymentResponse::new);
             
-            return ResponseEntity.ok(paymentResponses);
+            return ResponseEntity.ok(pageResponse(page));
             
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
@@ -182,11 +241,11 @@ public class PaymentController {
             Payment payment = paymentService.getPaymentById(id)
                     .orElseThrow(() -> new RuntimeException("Payment not found"));
             
-            User user = (User) authentication.getPrincipal();
+            User user = userService.getCurrentUser(authentication);
             
             // Check if user owns this payment or is admin
             if (!payment.getUser().getId().equals(user.getId()) && 
-                !user.getRole().equals(User.Role.ADMIN)) {
+                !userService.isAdmin(authentication)) {
                 Map<String, String> error = new HashMap<>();
                 error.put("message", "Access denied");
                 return ResponseEntity.status(403).body(error);
@@ -201,6 +260,26 @@ public class PaymentController {
         }
     }
     
+    /**
+     * Get a payment's event history, oldest first (Admin only). Events not yet
+     * shipped from the local journal are included with a null shippedAt.
+     */
+    @GetMapping("/{id}/audit")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getPaymentAudit(@PathVariable Long id) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("paymentId", id);
+            response.put("events", paymentJournal.history(id));
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", "Failed to get payment history");
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
     /**
      * Cancel payment
      */
@@ -211,20 +290,31 @@ public class PaymentController {
             Payment payment = paymentService.getPaymentById(id)
                     .orElseThrow(() -> new RuntimeException("Payment not found"));
             
-            User user = (User) authentication.getPrincipal();
+            User user = userService.getCurrentUser(authentication);
             
             // Check if user owns this payment or is admin
             if (!payment.getUser().getId().equals(user.getId()) && 
-                !user.getRole().equals(User.Role.ADMIN)) {
+                !userService.isAdmin(authentication)) {
                 Map<String, String> error = new HashMap<>();
                 error.put("message", "Access denied");
                 return ResponseEntity.status(403).body(error);
             }
             
-            Payment cancelledPayment = paymentService.cancelPayment(id);
+            PaymentTransitionResult result = paymentService.cancelPayment(id);
+            
+            if (result.getOutcome() == PaymentTransitionResult.Outcome.LOST_RACE) {
+                Map<String, String> error = new HashMap<>();
+                error.put("message", "Payment was updated concurrently and is now " + result.getPayment().getStatus());
+                return ResponseEntity.status(409).body(error);
+            }
+            if (result.getOutcome() == PaymentTransitionResult.Outcome.NOT_ALLOWED) {
+                Map<String, String> error = new HashMap<>();
+                error.put("message", "Cannot cancel payment with status: " + result.getPayment().getStatus());
+                return ResponseEntity.badRequest().body(error);
+            }
             
             Map<String, Object> response = new HashMap<>();
-            response.put("payment", new PaymentResponse(cancelledPayment));
+            response.put("payment", new PaymentResponse(result.getPayment()));
             response.put("message", "Payment cancelled successfully");
             
             return ResponseEntity.ok(response);
@@ -237,18 +327,21 @@ public class PaymentController {
     }
     
     /**
-     * Get all payments (Admin only)
+     * Get all payments, one keyset page at a time (Admin only)
      */
     @GetMapping("/all")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<?> getAllPayments() {
+    public ResponseEntity<?> getAllPayments(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Payment.PaymentStatus status,
+            @RequestParam(required = false) Payment.PaymentMethod method) {
         try {
-            List<Payment> payments = paymentService.getPaymentsByStatus(null); // Get all
-            List<PaymentResponse> paymentResponses = payments.stream()
-                    .map(PaymentResponse::new)
-                    .collect(Collectors.toList());
+            KeysetPage<PaymentResponse> page = paymentService
+                    .getPaymentsPage(status, method, cursor, limit)
+                    .map(PaymentResponse::new);
             
-            return ResponseEntity.ok(paymentResponses);
+            return ResponseEntity.ok(pageResponse(page));
             
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
@@ -257,6 +350,42 @@ public class PaymentController {
         }
     }
     
+    /**
+     * Search payments by any combination of filters (Admin only). Totals are
+     * returned with the first page only; totalCount is null when an exact
+     * count would take too long, approximateCount is always present.
+     */
+    @GetMapping("/search")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> searchPayments(
+            PaymentSearchCriteria criteria,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "true") boolean exactCount) {
+        try {
+            KeysetPage<PaymentResponse> page = paymentSearchService
+                    .search(criteria, cursor, limit)
+                    .map(PaymentResponse::new);
+            
+            Map<String, Object> response = pageResponse(page);
+            response.put("index", paymentSearchService.indexFor(criteria));
+            if (cursor == null || cursor.isEmpty()) {
+                response.put("approximateCount", paymentSearchService.approximateCount(criteria));
+                response.put("totalCount", exactCount ? paymentSearchService.exactCount(criteria) : null);
+            }
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", "Failed to search payments");
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
     /**
      * Get payment statistics (Admin only)
      */
@@ -274,6 +403,8 @@ public class PaymentController {
             Map<String, Object> stats = new HashMap<>();
             stats.put("monthlyRevenue", monthlyRevenue);
             stats.put("dailyRevenue", dailyRevenue);
+            stats.put("monthlyBreakdown", revenueRollupService.getPeriodSummary(
+                PaymentRevenueRollup.PERIOD_MONTH, LocalDate.now().withDayOfMonth(1)));
             
             return ResponseEntity.ok(stats);
             
@@ -284,6 +415,45 @@ public class PaymentController {
         }
     }
     
+    /**
+     * Rebuild revenue rollups from raw payments (Admin only)
+     */
+    @PostMapping("/stats/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> rebuildPaymentStats() {
+        try {
+            revenueRollupService.rebuild();
+            
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "Payment statistics rebuilt successfully");
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", "Failed to rebuild payment statistics: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    /**
+     * Fast-fail answer while a gateway is saturated or its breaker is open
+     */
+    private ResponseEntity<?> gatewayError(BusinessException e) {
+        Map<String, String> error = new HashMap<>();
+        error.put("message", e.getMessage());
+        error.put("error", e.getError());
+        return ResponseEntity.status(e.getStatus()).body(error);
+    }
+    
+    private Map<String, Object> pageResponse(KeysetPage<PaymentResponse> page) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("payments", page.getItems());
+        response.put("count", page.getItems().size());
+        response.put("nextCursor", page.getNextCursor());
+        response.put("hasMore", page.isHasMore());
+        return response;
+    }
+    
     // Request DTOs
     public static class CreatePaymentRequest {
         private BigDecimal amount;
@@ -317,6 +487,8 @@ public class PaymentController {
         private Payment.PaymentStatus status;
         private Payment.PaymentMethod method;
         private String transactionId;
+        private String stripePaymentIntentId;
+        private String paypalOrderId;
         private String description;
         private LocalDateTime createdAt;
         private LocalDateTime completedAt;
@@ -328,6 +500,8 @@ public class PaymentController {
             this.status = payment.getStatus();
             this.method = payment.getMethod();
             this.transactionId = payment.getTransactionId();
+            this.stripePaymentIntentId = payment.getStripePaymentIntentId();
+            this.paypalOrderId = payment.getPaypalOrderId();
             this.description = payment.getDescription();
             this.createdAt = payment.getCreatedAt();
             this.completedAt = payment.getCompletedAt();
@@ -340,6 +514,8 @@ public class PaymentController {
         public Payment.PaymentStatus getStatus() { return status; }
         public Payment.PaymentMethod getMethod() { return method; }
         public String getTransactionId() { return transactionId; }
+        public String getStripePaymentIntentId() { return stripePaymentIntentId; }
+        public String getPaypalOrderId() { return paypalOrderId; }
         public String getDescription() { return description; }
         public LocalDateTime getCreatedAt() { return createdAt; }
         public LocalDateTime getCompletedAt() { return completedAt; }
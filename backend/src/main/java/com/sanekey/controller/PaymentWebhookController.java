@@ -0,0 +1,68 @@
+package com.sanekey.controller;
+
+import com.sanekey.exception.CustomExceptionHandler.BusinessException;
+import com.sanekey.service.PaymentWebhookService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Gateway webhook receivers. Events are verified and written to the inbox
+ * only; the payment status changes are applied asynchronously.
+ */
+@RestController
+@RequestMapping("/api/payments/webhooks")
+public class PaymentWebhookController {
+    
+    @Autowired
+    private PaymentWebhookService paymentWebhookService;
+    
+    /**
+     * Receive a Stripe event
+     */
+    @PostMapping("/stripe")
+    public ResponseEntity<?> stripeWebhook(
+            @RequestBody String payload,
+            @RequestHeader(value = "Stripe-Signature", required = false) String signature) {
+        try {
+            return acknowledge(paymentWebhookService.ingestStripeEvent(payload, signature));
+        } catch (BusinessException e) {
+            return error(e);
+        }
+    }
+    
+    /**
+     * Receive a PayPal event
+     */
+    @PostMapping("/paypal")
+    public ResponseEntity<?> paypalWebhook(
+            @RequestBody String payload,
+            @RequestHeader HttpHeaders headers) {
+        try {
+            return acknowledge(paymentWebhookService.ingestPayPalEvent(payload, headers));
+        } catch (BusinessException e) {
+            return error(e);
+        }
+    }
+    
+    private ResponseEntity<?> acknowledge(boolean accepted) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("duplicate", !accepted);
+        response.put("timestamp", LocalDateTime.now());
+        return ResponseEntity.ok(response);
+    }
+    
+    private ResponseEntity<?> error(BusinessException e) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("success", false);
+        error.put("message", e.getMessage());
+        error.put("timestamp", LocalDateTime.now());
+        return ResponseEntity.status(e.getStatus()).body(error);
+    }
+}
@@ -1,8 +1,15 @@
 package com.sanekey.controller;
 
 import com.sanekey.model.ProductReview;
+import com.sanekey.model.ReviewView;
 import com.sanekey.model.User;
+import com.sanekey.repository.ReviewSort;
+import com.sanekey.service.HelpfulVoteService;
+import com.sanekey.service.ProductRatingStatsService;
 import com.sanekey.service.ProductReviewService;
+import com.sanekey.service.ReviewSearchService;
+import com.sanekey.service.UserService;
+import com.sanekey.util.KeysetPage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -12,6 +19,7 @@ import org.springframework.web.bind.annotation.*;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -23,6 +31,18 @@ public class ProductReviewController {
     @Autowired
     private ProductReviewService reviewService;
     
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private ProductRatingStatsService ratingStatsService;
+    
+    @Autowired
+    private HelpfulVoteService helpfulVoteService;
+    
+    @Autowired
+    private ReviewSearchService reviewSearchService;
+    
     /**
      * Create a new review
      */
@@ -30,7 +50,7 @@ public class ProductReviewController {
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
     public ResponseEntity<?> createReview(@RequestBody CreateReviewRequest request, Authentication authentication) {
         try {
-            User user = (User) authentication.getPrincipal();
+            User user = userService.getCurrentUser(authentication);
             
             ProductReview review = reviewService.createReview(
                 user,
@@ -65,7 +85,7 @@ public class ProductReviewController {
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
     public ResponseEntity<?> updateReview(@PathVariable Long id, @RequestBody UpdateReviewRequest request, Authentication authentication) {
         try {
-            User user = (User) authentication.getPrincipal();
+            User user = userService.getCurrentUser(authentication);
             
             ProductReview review = reviewService.updateReview(
                 id,
@@ -100,8 +120,8 @@ public class ProductReviewController {
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
     public ResponseEntity<?> deleteReview(@PathVariable Long id, Authentication authentication) {
         try {
-            User user = (User) authentication.getPrincipal();
-            reviewService.deleteReview(id, user);
+            User user = userService.getCurrentUser(authentication);
+            reviewService.deleteReview(id, user, userService.isAdmin(authentication));
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -120,31 +140,33 @@ public class ProductReviewController {
     }
     
     /**
-     * Get reviews for a product
+     * Get one keyset page of a product's reviews. sort is one of newest (default),
+     * most_helpful, highest_rating, lowest_rating or verified_first; pass the
+     * returned nextCursor with the same sort and rating to get the next page.
      */
     @GetMapping("/product/{productId}")
-    public ResponseEntity<?> getProductReviews(@PathVariable String productId, @RequestParam(required = false) Integer rating) {
+    public ResponseEntity<?> getProductReviews(
+            @PathVariable String productId,
+            @RequestParam(required = false) Integer rating,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
         try {
-            List<ProductReview> reviews;
-            
-            if (rating != null) {
-                reviews = reviewService.getReviewsByProductIdAndRating(productId, rating);
-            } else {
-                reviews = reviewService.getReviewsByProductId(productId);
-            }
-            
-            List<ReviewResponse> reviewResponses = reviews.stream()
-                    .map(ReviewResponse::new)
-                    .collect(Collectors.toList());
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("reviews", reviewResponses);
-            response.put("count", reviewResponses.size());
-            response.put("timestamp", LocalDateTime.now());
+            ReviewSort reviewSort = ReviewSort.from(sort);
+            KeysetPage<ReviewResponse> page = reviewService
+                    .getProductReviewsPage(productId, rating, reviewSort, cursor, limit)
+                    .map(ReviewResponse::new);
             
+            Map<String, Object> response = pageResponse(page);
+            response.put("sort", reviewSort.name().toLowerCase(Locale.ROOT));
             return ResponseEntity.ok(response);
             
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", e.getMessage());
+            error.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.badRequest().body(error);
         } catch (Exception e) {
             Map<String, Object> error = new HashMap<>();
             error.put("success", false);
@@ -179,52 +201,135 @@ public class ProductReviewController {
     }
     
     /**
-     * Mark review as helpful
+     * Search a product's reviews by title and comment, best match first. All
+     * words count towards the ranking; the last word, and any ending in *,
+     * also matches as a prefix.
      */
-    @PostMapping("/{id}/helpful")
-    public ResponseEntity<?> markReviewAsHelpful(@PathVariable Long id) {
+    @GetMapping("/product/{productId}/search")
+    public ResponseEntity<?> searchProductReviews(
+            @PathVariable String productId,
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limit) {
         try {
-            ProductReview review = reviewService.markReviewAsHelpful(id);
+            List<ReviewResponse> reviews = reviewService.searchReviews(productId, q, limit).stream()
+                    .map(ReviewResponse::new)
+                    .collect(Collectors.toList());
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("message", "Review marked as helpful");
-            response.put("helpfulCount", review.getHelpfulCount());
+            response.put("reviews", reviews);
+            response.put("count", reviews.size());
+            response.put("query", q);
             response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", e.getMessage());
+            error.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.badRequest().body(error);
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Failed to search reviews");
+            error.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    /**
+     * Rebuild the review search indexes from the database (Admin only)
+     */
+    @PostMapping("/search/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> rebuildSearchIndexes() {
+        try {
+            reviewSearchService.rebuild();
             
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Review search indexes rebuilt successfully");
+            response.put("timestamp", LocalDateTime.now());
             return ResponseEntity.ok(response);
             
         } catch (Exception e) {
             Map<String, Object> error = new HashMap<>();
             error.put("success", false);
-            error.put("message", e.getMessage());
+            error.put("message", "Failed to rebuild review search indexes: " + e.getMessage());
             error.put("timestamp", LocalDateTime.now());
             return ResponseEntity.badRequest().body(error);
         }
     }
     
     /**
-     * Get user's reviews
+     * Rebuild product rating stats from raw reviews (Admin only)
      */
-    @GetMapping("/my-reviews")
-    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
-    public ResponseEntity<?> getUserReviews(Authentication authentication) {
+    @PostMapping("/stats/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> rebuildRatingStats() {
         try {
-            User user = (User) authentication.getPrincipal();
-            List<ProductReview> reviews = reviewService.getReviewsByUser(user);
+            ratingStatsService.rebuild();
             
-            List<ReviewResponse> reviewResponses = reviews.stream()
-                    .map(ReviewResponse::new)
-                    .collect(Collectors.toList());
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Rating statistics rebuilt successfully");
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Failed to rebuild rating statistics: " + e.getMessage());
+            error.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    /**
+     * Mark review as helpful, once per user
+     */
+    @PostMapping("/{id}/helpful")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<?> markReviewAsHelpful(@PathVariable Long id, Authentication authentication) {
+        try {
+            User user = userService.getCurrentUser(authentication);
+            int helpfulCount = helpfulVoteService.vote(id, user.getId());
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("reviews", reviewResponses);
-            response.put("count", reviewResponses.size());
+            response.put("message", "Review marked as helpful");
+            response.put("helpfulCount", helpfulCount);
             response.put("timestamp", LocalDateTime.now());
             
             return ResponseEntity.ok(response);
             
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", e.getMessage());
+            error.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    /**
+     * Get user's reviews, one keyset page at a time
+     */
+    @GetMapping("/my-reviews")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<?> getUserReviews(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            Authentication authentication) {
+        try {
+            User user = userService.getCurrentUser(authentication);
+            KeysetPage<ReviewResponse> page = reviewService
+                    .getUserReviewsPage(user.getId(), cursor, limit)
+                    .map(ReviewResponse::new);
+            
+            return ResponseEntity.ok(pageResponse(page));
+            
         } catch (Exception e) {
             Map<String, Object> error = new HashMap<>();
             error.put("success", false);
@@ -241,7 +346,7 @@ public class ProductReviewController {
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
     public ResponseEntity<?> canUserReviewProduct(@PathVariable String productId, Authentication authentication) {
         try {
-            User user = (User) authentication.getPrincipal();
+            User user = userService.getCurrentUser(authentication);
             boolean canReview = reviewService.canUserReviewProduct(user, productId);
             
             Map<String, Object> response = new HashMap<>();
@@ -260,6 +365,17 @@ public class ProductReviewController {
         }
     }
     
+    private Map<String, Object> pageResponse(KeysetPage<ReviewResponse> page) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("reviews", page.getItems());
+        response.put("count", page.getItems().size());
+        response.put("nextCursor", page.getNextCursor());
+        response.put("hasMore", page.isHasMore());
+        response.put("timestamp", LocalDateTime.now());
+        return response;
+    }
+    
     // Request DTOs
     public static class CreateReviewRequest {
         private String productId;
@@ -326,6 +442,20 @@ public class ProductReviewController {
             this.user = new UserInfo(review.getUser());
         }
         
+        public ReviewResponse(ReviewView review) {
+            this.id = review.getId();
+            this.productId = review.getProductId();
+            this.rating = review.getRating();
+            this.title = review.getTitle();
+            this.comment = review.getComment();
+            this.isVerified = review.getIsVerified();
+            this.helpfulCount = review.getHelpfulCount();
+            this.images = review.getImages();
+            this.createdAt = review.getCreatedAt();
+            this.updatedAt = review.getUpdatedAt();
+            this.user = new UserInfo(review.getUserId(), review.getUserFullName(), review.getUserAvatarUrl());
+        }
+        
         // Getters
         public Long getId() { return id; }
         public String getProductId() { return productId; }
@@ -345,9 +475,13 @@ public class ProductReviewController {
             private String avatarUrl;
             
             public UserInfo(User user) {
-                this.id = user.getId();
-                this.fullName = user.getFullName();
-                this.avatarUrl = user.getAvatarUrl();
+                this(user.getId(), user.getFullName(), user.getAvatarUrl());
+            }
+            
+            public UserInfo(Long id, String fullName, String avatarUrl) {
+                this.id = id;
+                this.fullName = fullName;
+                this.avatarUrl = avatarUrl;
             }
             
             // Getters
@@ -1,6 +1,8 @@
 package com.sanekey.controller;
 
 import com.sanekey.model.User;
+import com.sanekey.model.UserSnapshot;
+import com.sanekey.service.TokenRevocationService;
 import com.sanekey.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -21,6 +23,9 @@ public class UserController {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+    
     /**
      * Get current user profile
      */
@@ -28,7 +33,7 @@ public class UserController {
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
     public ResponseEntity<?> getUserProfile(Authentication authentication) {
         try {
-            User user = (User) authentication.getPrincipal();
+            UserSnapshot user = userService.getCurrentUserSnapshot(authentication);
             return ResponseEntity.ok(new UserResponse(user));
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
@@ -46,7 +51,7 @@ public class UserController {
             @RequestBody UpdateProfileRequest request,
             Authentication authentication) {
         try {
-            User currentUser = (User) authentication.getPrincipal();
+            User currentUser = userService.getCurrentUser(authentication);
             
             User updatedUser = userService.updateUserProfile(
                 currentUser.getId(),
@@ -76,7 +81,7 @@ public class UserController {
             @RequestBody ChangePasswordRequest request,
             Authentication authentication) {
         try {
-            User currentUser = (User) authentication.getPrincipal();
+            User currentUser = userService.getCurrentUser(authentication);
             
             userService.changePassword(
                 currentUser.getId(),
@@ -101,11 +106,17 @@ public class UserController {
      */
     @PutMapping("/deactivate")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
-    public ResponseEntity<?> deactivateAccount(Authentication authentication) {
+    public ResponseEntity<?> deactivateAccount(
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            Authentication authentication) {
         try {
-            User currentUser = (User) authentication.getPrincipal();
+            User currentUser = userService.getCurrentUser(authentication);
             userService.deactivateUser(currentUser.getId());
             
+            if (authHeader != null && authHeader.startsWith("Bearer ")) {
+                tokenRevocationService.revokeToken(authHeader.substring(7));
+            }
+            
             Map<String, String> response = new HashMap<>();
             response.put("message", "Account deactivated successfully");
             
@@ -146,7 +157,7 @@ public class UserController {
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> getUserById(@PathVariable Long id) {
         try {
-            User user = userService.findById(id)
+            UserSnapshot user = userService.findSnapshotById(id)
                     .orElseThrow(() -> new RuntimeException("User not found"));
             
             return ResponseEntity.ok(new UserResponse(user));
@@ -244,6 +255,15 @@ public class UserController {
             this.isActive = user.getIsActive();
         }
         
+        public UserResponse(UserSnapshot user) {
+            this.id = user.getId();
+            this.email = user.getEmail();
+            this.fullName = user.getFullName();
+            this.avatarUrl = user.getAvatarUrl();
+            this.role = user.getRole();
+            this.isActive = user.getIsActive();
+        }
+        
         // Getters
         public Long getId() { return id; }
         public String getEmail() { return email; }
@@ -0,0 +1,14 @@
+package com.sanekey.journal;
+
+/**
+ * A point in the journal: the segment (named by its first sequence) and a
+ * byte offset within it
+ */
+public record JournalPosition(long segment, int offset) {
+
+    public static final JournalPosition START = new JournalPosition(0, 0);
+
+    public boolean isBefore(JournalPosition other) {
+        return segment < other.segment || (segment == other.segment && offset < other.offset);
+    }
+}
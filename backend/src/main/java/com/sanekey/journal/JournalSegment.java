@@ -0,0 +1,225 @@
+package com.sanekey.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.CRC32C;
+
+/**
+ * One fixed-size, memory-mapped journal file, named after the sequence of
+ * its first record. Records are framed as [int bodyLength][int crc32c][body]
+ * and a zero length marks the end of the data; the file is zero-filled when
+ * created, so unwritten space always reads as the end.
+ *
+ * Only the journal writer thread appends. Readers see a record once the
+ * writer has published a commit point past it.
+ */
+public class JournalSegment implements AutoCloseable {
+
+    static final String SUFFIX = ".seg";
+
+    private static final int FRAME_BYTES = 8;
+
+    private final long firstSequence;
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    // Written by the writer thread only; readers use the published commit point
+    private int position;
+    private long lastSequence;
+
+    private JournalSegment(long firstSequence, Path file, FileChannel channel, int capacity) throws IOException {
+        this.firstSequence = firstSequence;
+        this.file = file;
+        this.channel = channel;
+        this.capacity = capacity;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        this.lastSequence = firstSequence - 1;
+    }
+
+    public static Path fileFor(Path directory, long firstSequence) {
+        return directory.resolve(String.format("%020d", firstSequence) + SUFFIX);
+    }
+
+    public static boolean isSegmentFile(Path file) {
+        return file.getFileName().toString().endsWith(SUFFIX);
+    }
+
+    public static long firstSequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Create a new, empty segment
+     */
+    public static JournalSegment create(Path directory, long firstSequence, int capacity) throws IOException {
+        Path file = fileFor(directory, firstSequence);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new JournalSegment(firstSequence, file, channel, capacity);
+    }
+
+    /**
+     * Open an existing segment and find the end of its valid records. With
+     * repair set, anything after that end (a record torn by a crash, or the
+     * unacknowledged rest of its batch) is zeroed so it can be appended to.
+     */
+    public static JournalSegment open(Path file, boolean repair) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int capacity = (int) channel.size();
+        JournalSegment segment = new JournalSegment(firstSequenceOf(file), file, channel, capacity);
+        segment.recover(repair);
+        return segment;
+    }
+
+    private void recover(boolean repair) {
+        ByteBuffer view = buffer.duplicate();
+        int offset = 0;
+        long sequence = firstSequence - 1;
+        while (true) {
+            int next = validRecordEnd(view, offset);
+            if (next < 0) {
+                break;
+            }
+            sequence = view.getLong(offset + FRAME_BYTES);
+            offset = next;
+        }
+        position = offset;
+        lastSequence = sequence;
+
+        if (repair) {
+            int dirtyEnd = offset;
+            for (int i = capacity - 1; i >= offset; i--) {
+                if (view.get(i) != 0) {
+                    dirtyEnd = i + 1;
+                    break;
+                }
+            }
+            if (dirtyEnd > offset) {
+                for (int i = offset; i < dirtyEnd; i++) {
+                    view.put(i, (byte) 0);
+                }
+                buffer.force(offset, dirtyEnd - offset);
+            }
+        }
+    }
+
+    /**
+     * End offset of the record at offset if it is complete and intact, else -1
+     */
+    private int validRecordEnd(ByteBuffer view, int offset) {
+        if (offset + FRAME_BYTES > capacity) {
+            return -1;
+        }
+        int length = view.getInt(offset);
+        if (length < PaymentJournalEntry.FIXED_BYTES || offset + FRAME_BYTES + length > capacity) {
+            return -1;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(view.slice(offset + FRAME_BYTES, length));
+        if ((int) crc.getValue() != view.getInt(offset + 4)) {
+            return -1;
+        }
+        return offset + FRAME_BYTES + length;
+    }
+
+    /**
+     * Append a record; returns false, writing nothing, when it does not fit.
+     * The body and checksum are written before the length, so a record
+     * becomes visible to a scan only once it is complete.
+     */
+    public boolean append(PaymentJournalEntry entry) {
+        byte[] detail = entry.detailBytes();
+        int length = PaymentJournalEntry.FIXED_BYTES + detail.length;
+        if (position + FRAME_BYTES + length > capacity) {
+            return false;
+        }
+        ByteBuffer body = buffer.slice(position + FRAME_BYTES, length);
+        entry.encode(body, detail);
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(position + FRAME_BYTES, length));
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, length);
+
+        position += FRAME_BYTES + length;
+        lastSequence = entry.sequence();
+        return true;
+    }
+
+    /**
+     * Flush the given byte range to the storage device
+     */
+    public void force(int from, int to) {
+        if (to > from) {
+            buffer.force(from, to - from);
+        }
+    }
+
+    /**
+     * Decode the records between offset and limit, at most maxRecords of
+     * them, adding those accepted by filter to out. Returns the offset after
+     * the last record read.
+     */
+    public int read(int offset, int limit, int maxRecords, Predicate<PaymentJournalEntry> filter,
+                    List<PaymentJournalEntry> out) {
+        ByteBuffer view = buffer.duplicate();
+        int read = 0;
+        while (read < maxRecords && offset + FRAME_BYTES <= limit) {
+            int length = view.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            PaymentJournalEntry entry = PaymentJournalEntry.decode(view.slice(offset + FRAME_BYTES, length));
+            if (filter == null || filter.test(entry)) {
+                out.add(entry);
+            }
+            offset += FRAME_BYTES + length;
+            read++;
+        }
+        return offset;
+    }
+
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Close and remove the file. The mapping stays valid until collected,
+     * so a reader still holding this segment is not affected.
+     */
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,61 @@
+package com.sanekey.journal;
+
+import com.sanekey.model.Payment;
+import com.sanekey.model.PaymentAuditEvent;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One payment event as stored in a journal segment. The body layout is
+ * [long sequence][long paymentId][long occurredAtMillis][byte type]
+ * [byte fromStatus][byte toStatus][short detailLength][detail UTF-8];
+ * statuses are stored by their code, with 0 for none.
+ */
+public record PaymentJournalEntry(long sequence, long paymentId, long occurredAtMillis,
+                                  PaymentAuditEvent.EventType type,
+                                  Payment.PaymentStatus fromStatus, Payment.PaymentStatus toStatus,
+                                  String detail) {
+
+    static final int FIXED_BYTES = 8 + 8 + 8 + 1 + 1 + 1 + 2;
+
+    byte[] detailBytes() {
+        return detail != null ? detail.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    }
+
+    void encode(ByteBuffer buffer, byte[] detailBytes) {
+        buffer.putLong(sequence);
+        buffer.putLong(paymentId);
+        buffer.putLong(occurredAtMillis);
+        buffer.put(type.getCode());
+        buffer.put(statusCode(fromStatus));
+        buffer.put(statusCode(toStatus));
+        buffer.putShort((short) detailBytes.length);
+        buffer.put(detailBytes);
+    }
+
+    static PaymentJournalEntry decode(ByteBuffer buffer) {
+        long sequence = buffer.getLong();
+        long paymentId = buffer.getLong();
+        long occurredAtMillis = buffer.getLong();
+        PaymentAuditEvent.EventType type = PaymentAuditEvent.EventType.fromCode(buffer.get());
+        Payment.PaymentStatus from = status(buffer.get());
+        Payment.PaymentStatus to = status(buffer.get());
+        int detailLength = Short.toUnsignedInt(buffer.getShort());
+        String detail = null;
+        if (detailLength > 0) {
+            byte[] bytes = new byte[detailLength];
+            buffer.get(bytes);
+            detail = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new PaymentJournalEntry(sequence, paymentId, occurredAtMillis, type, from, to, detail);
+    }
+
+    private static byte statusCode(Payment.PaymentStatus status) {
+        return (byte) (status != null ? status.getCode() : 0);
+    }
+
+    private static Payment.PaymentStatus status(byte code) {
+        return code == 0 ? null : Payment.PaymentStatus.fromCode(code);
+    }
+}
@@ -6,9 +6,22 @@ import jakarta.validation.constraints.NotNull;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
 
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", indexes = {
+    @Index(name = "idx_payments_user_created", columnList = "user_id, created_at, id"),
+    @Index(name = "idx_payments_status_created", columnList = "status, created_at, id"),
+    @Index(name = "idx_payments_status_method_created", columnList = "status, method, created_at, id"),
+    @Index(name = "idx_payments_method_created", columnList = "method, created_at, id"),
+    @Index(name = "idx_payments_created", columnList = "created_at, id"),
+    @Index(name = "idx_payments_stripe_intent", columnList = "stripe_payment_intent_id"),
+    @Index(name = "idx_payments_paypal_order", columnList = "paypal_order_id")
+})
 public class Payment {
     
     @Id
@@ -58,6 +71,18 @@ public class Payment {
     @Column(name = "completed_at")
     private LocalDateTime completedAt;
     
+    // Reconciliation lease: the node working on this payment and until when
+    @Column(name = "reconcile_lease_owner", length = 64)
+    private String reconcileLeaseOwner;
+    
+    @Column(name = "reconcile_lease_until")
+    private LocalDateTime reconcileLeaseUntil;
+    
+    // Bumped by every status change, including the conditional bulk updates
+    @Version
+    @Column(nullable = false, columnDefinition = "BIGINT DEFAULT 0")
+    private Long version = 0L;
+    
     // Constructors
     public Payment() {}
     
@@ -178,6 +203,30 @@ public class Payment {
         this.completedAt = completedAt;
     }
     
+    public String getReconcileLeaseOwner() {
+        return reconcileLeaseOwner;
+    }
+    
+    public void setReconcileLeaseOwner(String reconcileLeaseOwner) {
+        this.reconcileLeaseOwner = reconcileLeaseOwner;
+    }
+    
+    public LocalDateTime getReconcileLeaseUntil() {
+        return reconcileLeaseUntil;
+    }
+    
+    public void setReconcileLeaseUntil(LocalDateTime reconcileLeaseUntil) {
+        this.reconcileLeaseUntil = reconcileLeaseUntil;
+    }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -189,8 +238,64 @@ public class Payment {
         updatedAt = LocalDateTime.now();
     }
     
+    /**
+     * Payment statuses. The code is what the payment journal stores, so codes
+     * must never be reused.
+     */
     public enum PaymentStatus {
-        PENDING, PROCESSING, COMPLETED, FAILED, CANCELLED, REFUNDED
+        PENDING(1),
+        PROCESSING(2),
+        COMPLETED(3),
+        FAILED(4),
+        CANCELLED(5),
+        REFUNDED(6);
+        
+        private static final Map<PaymentStatus, Set<PaymentStatus>> SOURCES = new EnumMap<>(PaymentStatus.class);
+        
+        // The payment state machine: every allowed transition is listed here
+        static {
+            allow(PENDING, PROCESSING, COMPLETED, FAILED, CANCELLED);
+            allow(PROCESSING, COMPLETED, FAILED, CANCELLED);
+            // A retried payment can still succeed after an earlier failure
+            allow(FAILED, COMPLETED);
+            allow(COMPLETED, REFUNDED);
+        }
+        
+        private final byte code;
+        
+        PaymentStatus(int code) {
+            this.code = (byte) code;
+        }
+        
+        public byte getCode() {
+            return code;
+        }
+        
+        public static PaymentStatus fromCode(byte code) {
+            for (PaymentStatus status : values()) {
+                if (status.code == code) {
+                    return status;
+                }
+            }
+            throw new IllegalArgumentException("Unknown payment status " + code);
+        }
+        
+        private static void allow(PaymentStatus from, PaymentStatus... targets) {
+            for (PaymentStatus target : targets) {
+                SOURCES.computeIfAbsent(target, status -> EnumSet.noneOf(PaymentStatus.class)).add(from);
+            }
+        }
+        
+        public boolean canTransitionTo(PaymentStatus target) {
+            return target != null && sourcesOf(target).contains(this);
+        }
+        
+        /**
+         * Statuses a payment may be in to move to the target status
+         */
+        public static Set<PaymentStatus> sourcesOf(PaymentStatus target) {
+            return Collections.unmodifiableSet(SOURCES.getOrDefault(target, EnumSet.noneOf(PaymentStatus.class)));
+        }
     }
     
     public enum PaymentMethod {
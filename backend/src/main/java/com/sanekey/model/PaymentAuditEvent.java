@@ -0,0 +1,132 @@
+package com.sanekey.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One entry of a payment's history, shipped from the local payment journal.
+ * (journal_node, journal_sequence) identifies the journal record, so
+ * shipping the same record twice is harmless.
+ */
+@Entity
+@Table(name = "payment_audit_events",
+       uniqueConstraints = @UniqueConstraint(name = "uk_payment_audit_journal", columnNames = {"journal_node", "journal_sequence"}),
+       indexes = @Index(name = "idx_payment_audit_payment", columnList = "payment_id, occurred_at"))
+public class PaymentAuditEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "journal_node", length = 64, nullable = false)
+    private String journalNode;
+
+    @Column(name = "journal_sequence", nullable = false)
+    private Long journalSequence;
+
+    @Column(name = "payment_id", nullable = false)
+    private Long paymentId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", length = 20, nullable = false)
+    private EventType eventType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "from_status", length = 20)
+    private Payment.PaymentStatus fromStatus;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "to_status", length = 20)
+    private Payment.PaymentStatus toStatus;
+
+    @Column(length = 512)
+    private String detail;
+
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+
+    // Null for entries still only in the local journal
+    @Column(name = "shipped_at")
+    private LocalDateTime shippedAt;
+
+    // Constructors
+    public PaymentAuditEvent() {}
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getJournalNode() { return journalNode; }
+    public void setJournalNode(String journalNode) { this.journalNode = journalNode; }
+
+    public Long getJournalSequence() { return journalSequence; }
+    public void setJournalSequence(Long journalSequence) { this.journalSequence = journalSequence; }
+
+    public Long getPaymentId() { return paymentId; }
+    public void setPaymentId(Long paymentId) { this.paymentId = paymentId; }
+
+    public EventType getEventType() { return eventType; }
+    public void setEventType(EventType eventType) { this.eventType = eventType; }
+
+    public Payment.PaymentStatus getFromStatus() { return fromStatus; }
+    public void setFromStatus(Payment.PaymentStatus fromStatus) { this.fromStatus = fromStatus; }
+
+    public Payment.PaymentStatus getToStatus() { return toStatus; }
+    public void setToStatus(Payment.PaymentStatus toStatus) { this.toStatus = toStatus; }
+
+    public String getDetail() { return detail; }
+    public void setDetail(String detail) { this.detail = detail; }
+
+    public LocalDateTime getOccurredAt() { return occurredAt; }
+    public void setOccurredAt(LocalDateTime occurredAt) { this.occurredAt = occurredAt; }
+
+    public LocalDateTime getShippedAt() { return shippedAt; }
+    public void setShippedAt(LocalDateTime shippedAt) { this.shippedAt = shippedAt; }
+
+    /**
+     * Journal event types. The code is what the journal stores, so codes
+     * must never be reused.
+     */
+    public enum EventType {
+        CREATED(1),
+        GATEWAY_CALL(2),
+        CONFIRMED(3),
+        FAILED(4),
+        CANCELLED(5),
+        REFUNDED(6),
+        STATUS_CHANGED(7);
+
+        private final byte code;
+
+        EventType(int code) {
+            this.code = (byte) code;
+        }
+
+        public byte getCode() {
+            return code;
+        }
+
+        public static EventType fromCode(byte code) {
+            for (EventType type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown payment event type " + code);
+        }
+
+        /**
+         * The event recorded when a payment moves to the given status
+         */
+        public static EventType forTransitionTo(Payment.PaymentStatus status) {
+            switch (status) {
+                case COMPLETED: return CONFIRMED;
+                case FAILED: return FAILED;
+                case CANCELLED: return CANCELLED;
+                case REFUNDED: return REFUNDED;
+                default: return STATUS_CHANGED;
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.sanekey.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Pre-aggregated payment counts and amounts per period, currency, method and status,
+ * maintained incrementally by RevenueRollupService
+ */
+@Entity
+@Table(name = "payment_revenue_rollups")
+public class PaymentRevenueRollup {
+    
+    public static final String PERIOD_DAY = "DAY";
+    public static final String PERIOD_MONTH = "MONTH";
+    
+    @EmbeddedId
+    private Key id;
+    
+    @Column(name = "payment_count", nullable = false)
+    private Long paymentCount = 0L;
+    
+    @Column(name = "amount_sum", precision = 19, scale = 2, nullable = false)
+    private BigDecimal amountSum = BigDecimal.ZERO;
+    
+    // Constructors
+    public PaymentRevenueRollup() {}
+    
+    // Getters and Setters
+    public Key getId() { return id; }
+    public void setId(Key id) { this.id = id; }
+    
+    public Long getPaymentCount() { return paymentCount; }
+    public void setPaymentCount(Long paymentCount) { this.paymentCount = paymentCount; }
+    
+    public BigDecimal getAmountSum() { return amountSum; }
+    public void setAmountSum(BigDecimal amountSum) { this.amountSum = amountSum; }
+    
+    @Embeddable
+    public static class Key implements Serializable {
+        
+        @Column(name = "period_type", length = 5)
+        private String periodType;
+        
+        @Column(name = "period_start")
+        private LocalDate periodStart;
+        
+        @Column(length = 3)
+        private String currency;
+        
+        @Column(length = 20)
+        private String method;
+        
+        @Column(length = 20)
+        private String status;
+        
+        public Key() {}
+        
+        public String getPeriodType() { return periodType; }
+        public LocalDate getPeriodStart() { return periodStart; }
+        public String getCurrency() { return currency; }
+        public String getMethod() { return method; }
+        public String getStatus() { return status; }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            return Objects.equals(periodType, key.periodType)
+                    && Objects.equals(periodStart, key.periodStart)
+                    && Objects.equals(currency, key.currency)
+                    && Objects.equals(method, key.method)
+                    && Objects.equals(status, key.status);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(periodType, periodStart, currency, method, status);
+        }
+    }
+}
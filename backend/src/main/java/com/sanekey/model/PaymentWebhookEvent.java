@@ -0,0 +1,96 @@
+package com.sanekey.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Durable inbox entry for a verified Stripe/PayPal webhook, drained in batches
+ * by PaymentWebhookApplier
+ */
+@Entity
+@Table(name = "payment_webhook_events",
+       uniqueConstraints = @UniqueConstraint(name = "uk_webhook_gateway_event", columnNames = {"gateway", "event_id"}),
+       indexes = @Index(name = "idx_webhook_state_due", columnList = "state, next_attempt_at, id"))
+public class PaymentWebhookEvent {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    private Payment.PaymentMethod gateway;
+    
+    @Column(name = "event_id", nullable = false)
+    private String eventId;
+    
+    @Column(name = "event_type", length = 100)
+    private String eventType;
+    
+    // Stripe payment intent id or PayPal order id
+    @Column(name = "reference")
+    private String reference;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "target_status", length = 20)
+    private Payment.PaymentStatus targetStatus;
+    
+    @Column(name = "occurred_at")
+    private LocalDateTime occurredAt;
+    
+    @Column(name = "received_at")
+    private LocalDateTime receivedAt;
+    
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+    
+    // Not drained before this; pushed back while the event waits for its payment
+    @Column(name = "next_attempt_at", nullable = false, columnDefinition = "DATETIME(6) DEFAULT CURRENT_TIMESTAMP(6)")
+    private LocalDateTime nextAttemptAt;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    private State state = State.RECEIVED;
+    
+    // Constructors
+    public PaymentWebhookEvent() {}
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public Payment.PaymentMethod getGateway() { return gateway; }
+    public void setGateway(Payment.PaymentMethod gateway) { this.gateway = gateway; }
+    
+    public String getEventId() { return eventId; }
+    public void setEventId(String eventId) { this.eventId = eventId; }
+    
+    public String getEventType() { return eventType; }
+    public void setEventType(String eventType) { this.eventType = eventType; }
+    
+    public String getReference() { return reference; }
+    public void setReference(String reference) { this.reference = reference; }
+    
+    public Payment.PaymentStatus getTargetStatus() { return targetStatus; }
+    public void setTargetStatus(Payment.PaymentStatus targetStatus) { this.targetStatus = targetStatus; }
+    
+    public LocalDateTime getOccurredAt() { return occurredAt; }
+    public void setOccurredAt(LocalDateTime occurredAt) { this.occurredAt = occurredAt; }
+    
+    public LocalDateTime getReceivedAt() { return receivedAt; }
+    public void setReceivedAt(LocalDateTime receivedAt) { this.receivedAt = receivedAt; }
+    
+    public LocalDateTime getProcessedAt() { return processedAt; }
+    public void setProcessedAt(LocalDateTime processedAt) { this.processedAt = processedAt; }
+    
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+    
+    public State getState() { return state; }
+    public void setState(State state) { this.state = state; }
+    
+    public enum State {
+        RECEIVED, APPLIED, IGNORED
+    }
+}
@@ -0,0 +1,83 @@
+package com.sanekey.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Per-product review count, rating sum and star distribution, maintained
+ * incrementally by ProductReviewService
+ */
+@Entity
+@Table(name = "product_rating_stats")
+public class ProductRatingStats {
+    
+    @Id
+    @Column(name = "product_id")
+    private String productId;
+    
+    @Column(name = "review_count", nullable = false)
+    private Long reviewCount = 0L;
+    
+    @Column(name = "rating_sum", nullable = false)
+    private Long ratingSum = 0L;
+    
+    @Column(name = "stars_1", nullable = false)
+    private Long stars1 = 0L;
+    
+    @Column(name = "stars_2", nullable = false)
+    private Long stars2 = 0L;
+    
+    @Column(name = "stars_3", nullable = false)
+    private Long stars3 = 0L;
+    
+    @Column(name = "stars_4", nullable = false)
+    private Long stars4 = 0L;
+    
+    @Column(name = "stars_5", nullable = false)
+    private Long stars5 = 0L;
+    
+    // Constructors
+    public ProductRatingStats() {}
+    
+    /**
+     * Number of reviews with the given star rating
+     */
+    public long countFor(int rating) {
+        switch (rating) {
+            case 1: return stars1;
+            case 2: return stars2;
+            case 3: return stars3;
+            case 4: return stars4;
+            case 5: return stars5;
+            default: return 0L;
+        }
+    }
+    
+    public double getAverageRating() {
+        return reviewCount > 0 ? (double) ratingSum / reviewCount : 0.0;
+    }
+    
+    // Getters and Setters
+    public String getProductId() { return productId; }
+    public void setProductId(String productId) { this.productId = productId; }
+    
+    public Long getReviewCount() { return reviewCount; }
+    public void setReviewCount(Long reviewCount) { this.reviewCount = reviewCount; }
+    
+    public Long getRatingSum() { return ratingSum; }
+    public void setRatingSum(Long ratingSum) { this.ratingSum = ratingSum; }
+    
+    public Long getStars1() { return stars1; }
+    public void setStars1(Long stars1) { this.stars1 = stars1; }
+    
+    public Long getStars2() { return stars2; }
+    public void setStars2(Long stars2) { this.stars2 = stars2; }
+    
+    public Long getStars3() { return stars3; }
+    public void setStars3(Long stars3) { this.stars3 = stars3; }
+    
+    public Long getStars4() { return stars4; }
+    public void setStars4(Long stars4) { this.stars4 = stars4; }
+    
+    public Long getStars5() { return stars5; }
+    public void setStars5(Long stars5) { this.stars5 = stars5; }
+}
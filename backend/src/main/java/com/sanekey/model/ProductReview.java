@@ -10,7 +10,15 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "product_reviews")
+@Table(name = "product_reviews", indexes = {
+    @Index(name = "idx_reviews_product_created", columnList = "product_id, created_at, id"),
+    @Index(name = "idx_reviews_product_helpful", columnList = "product_id, helpful_count, id"),
+    @Index(name = "idx_reviews_product_rating", columnList = "product_id, rating, created_at, id"),
+    @Index(name = "idx_reviews_product_rating_low", columnList = "product_id, rating ASC, created_at DESC, id DESC"),
+    @Index(name = "idx_reviews_product_verified", columnList = "product_id, is_verified, created_at, id"),
+    @Index(name = "idx_reviews_user_created", columnList = "user_id, created_at, id"),
+    @Index(name = "idx_reviews_updated", columnList = "updated_at, id")
+})
 public class ProductReview {
     
     @Id
@@ -0,0 +1,45 @@
+package com.sanekey.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tombstone of a deleted review, so that every node's in-memory review
+ * search indexes drop it too, not just the node that deleted it
+ */
+@Entity
+@Table(name = "review_deletions", indexes = {
+    @Index(name = "idx_review_deletions_deleted", columnList = "deleted_at, review_id")
+})
+public class ReviewDeletion {
+    
+    @Id
+    @Column(name = "review_id")
+    private Long reviewId;
+    
+    @Column(name = "product_id", nullable = false)
+    private String productId;
+    
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+    
+    // Constructors
+    public ReviewDeletion() {}
+    
+    public ReviewDeletion(Long reviewId, String productId, LocalDateTime deletedAt) {
+        this.reviewId = reviewId;
+        this.productId = productId;
+        this.deletedAt = deletedAt;
+    }
+    
+    // Getters and Setters
+    public Long getReviewId() { return reviewId; }
+    public void setReviewId(Long reviewId) { this.reviewId = reviewId; }
+    
+    public String getProductId() { return productId; }
+    public void setProductId(String productId) { this.productId = productId; }
+    
+    public LocalDateTime getDeletedAt() { return deletedAt; }
+    public void setDeletedAt(LocalDateTime deletedAt) { this.deletedAt = deletedAt; }
+}
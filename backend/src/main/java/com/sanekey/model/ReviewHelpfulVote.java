@@ -0,0 +1,59 @@
+package com.sanekey.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * One user's helpful vote on a review. The primary key is what makes a vote
+ * count once, across nodes and restarts.
+ */
+@Entity
+@Table(name = "review_helpful_votes")
+public class ReviewHelpfulVote {
+    
+    @EmbeddedId
+    private Key id;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    // Constructors
+    public ReviewHelpfulVote() {}
+    
+    // Getters and Setters
+    public Key getId() { return id; }
+    public void setId(Key id) { this.id = id; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    @Embeddable
+    public static class Key implements Serializable {
+        
+        @Column(name = "review_id")
+        private Long reviewId;
+        
+        @Column(name = "user_id")
+        private Long userId;
+        
+        public Key() {}
+        
+        public Long getReviewId() { return reviewId; }
+        public Long getUserId() { return userId; }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            return Objects.equals(reviewId, key.reviewId) && Objects.equals(userId, key.userId);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(reviewId, userId);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.sanekey.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Read-only row of a review listing: the review's columns, its author's
+ * public profile fields and its image urls, loaded without hydrating
+ * ProductReview or User entities
+ */
+public final class ReviewView {
+    
+    private final Long id;
+    private final String productId;
+    private final Integer rating;
+    private final String title;
+    private final String comment;
+    private final Boolean isVerified;
+    private final Integer helpfulCount;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+    private final Long userId;
+    private final String userFullName;
+    private final String userAvatarUrl;
+    
+    // Filled in by one batched query after the page is loaded
+    private List<String> images = List.of();
+    
+    public ReviewView(Long id, String productId, Integer rating, String title, String comment,
+                      Boolean isVerified, Integer helpfulCount, LocalDateTime createdAt, LocalDateTime updatedAt,
+                      Long userId, String userFullName, String userAvatarUrl) {
+        this.id = id;
+        this.productId = productId;
+        this.rating = rating;
+        this.title = title;
+        this.comment = comment;
+        this.isVerified = isVerified;
+        this.helpfulCount = helpfulCount;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.userId = userId;
+        this.userFullName = userFullName;
+        this.userAvatarUrl = userAvatarUrl;
+    }
+    
+    // Getters
+    public Long getId() { return id; }
+    public String getProductId() { return productId; }
+    public Integer getRating() { return rating; }
+    public String getTitle() { return title; }
+    public String getComment() { return comment; }
+    public Boolean getIsVerified() { return isVerified; }
+    public Integer getHelpfulCount() { return helpfulCount; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public Long getUserId() { return userId; }
+    public String getUserFullName() { return userFullName; }
+    public String getUserAvatarUrl() { return userAvatarUrl; }
+    public List<String> getImages() { return images; }
+    
+    public void setImages(List<String> images) { this.images = images; }
+}
@@ -0,0 +1,42 @@
+package com.sanekey.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "revoked_tokens", indexes = {
+    @Index(name = "idx_revoked_tokens_expires_at", columnList = "expires_at"),
+    @Index(name = "idx_revoked_tokens_revoked_at", columnList = "revoked_at")
+})
+public class RevokedToken {
+    
+    @Id
+    @Column(length = 64)
+    private String jti;
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+    
+    @Column(name = "revoked_at", nullable = false)
+    private LocalDateTime revokedAt;
+    
+    // Constructors
+    public RevokedToken() {}
+    
+    public RevokedToken(String jti, LocalDateTime expiresAt) {
+        this.jti = jti;
+        this.expiresAt = expiresAt;
+        this.revokedAt = LocalDateTime.now();
+    }
+    
+    // Getters and Setters
+    public String getJti() { return jti; }
+    public void setJti(String jti) { this.jti = jti; }
+    
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+    
+    public LocalDateTime getRevokedAt() { return revokedAt; }
+    public void setRevokedAt(LocalDateTime revokedAt) { this.revokedAt = revokedAt; }
+}
@@ -14,9 +14,13 @@ import java.util.Collection;
 import java.util.List;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users",
+       uniqueConstraints = @UniqueConstraint(name = User.EMAIL_UNIQUE_KEY, columnNames = "email"))
 public class User implements UserDetails {
 
+    // Sign-up maps a violation of this key, and only this one, to "Email Taken"
+    public static final String EMAIL_UNIQUE_KEY = "uk_users_email";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -24,7 +28,7 @@ public class User implements UserDetails {
     @NotBlank
     @Size(max = 50)
     @Email
-    @Column(unique = true, nullable = false)
+    @Column(nullable = false)
     private String email;
 
     @NotBlank
@@ -54,6 +58,10 @@ public class User implements UserDetails {
     @Column(name = "is_active")
     private Boolean isActive = true;
 
+    // Bumped on password change / deactivation to invalidate issued JWTs
+    @Column(name = "token_version", nullable = false)
+    private Integer tokenVersion = 0;
+
     // Constructors
     public User() {}
 
@@ -132,10 +140,14 @@ public class User implements UserDetails {
 
     public LocalDateTime getCreatedAt() { return createdAt; }
     public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
 
     public Boolean getIsActive() { return isActive; }
     public void setIsActive(Boolean isActive) { this.isActive = isActive; }
 
+    public Integer getTokenVersion() { return tokenVersion != null ? tokenVersion : 0; }
+    public void setTokenVersion(Integer tokenVersion) { this.tokenVersion = tokenVersion; }
+
     public enum Role {
         USER, ADMIN
     }
@@ -0,0 +1,48 @@
+package com.sanekey.model;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Per-user lifetime payment totals, maintained incrementally by RevenueRollupService
+ */
+@Entity
+@Table(name = "user_payment_totals")
+public class UserPaymentTotal {
+    
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+    
+    @Column(name = "completed_count", nullable = false)
+    private Long completedCount = 0L;
+    
+    @Column(name = "completed_amount", precision = 19, scale = 2, nullable = false)
+    private BigDecimal completedAmount = BigDecimal.ZERO;
+    
+    @Column(name = "refunded_count", nullable = false)
+    private Long refundedCount = 0L;
+    
+    @Column(name = "refunded_amount", precision = 19, scale = 2, nullable = false)
+    private BigDecimal refundedAmount = BigDecimal.ZERO;
+    
+    // Constructors
+    public UserPaymentTotal() {}
+    
+    // Getters and Setters
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    
+    public Long getCompletedCount() { return completedCount; }
+    public void setCompletedCount(Long completedCount) { this.completedCount = completedCount; }
+    
+    public BigDecimal getCompletedAmount() { return completedAmount; }
+    public void setCompletedAmount(BigDecimal completedAmount) { this.completedAmount = completedAmount; }
+    
+    public Long getRefundedCount() { return refundedCount; }
+    public void setRefundedCount(Long refundedCount) { this.refundedCount = refundedCount; }
+    
+    public BigDecimal getRefundedAmount() { return refundedAmount; }
+    public void setRefundedAmount(BigDecimal refundedAmount) { this.refundedAmount = refundedAmount; }
+}
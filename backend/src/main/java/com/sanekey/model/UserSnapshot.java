@@ -0,0 +1,42 @@
+package com.sanekey.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Detached, immutable copy of a user's profile fields, safe to share from caches
+ */
+public final class UserSnapshot {
+    
+    private final Long id;
+    private final String email;
+    private final String fullName;
+    private final String avatarUrl;
+    private final User.Role role;
+    private final Boolean isActive;
+    private final LocalDateTime createdAt;
+    
+    public UserSnapshot(Long id, String email, String fullName, String avatarUrl,
+                        User.Role role, Boolean isActive, LocalDateTime createdAt) {
+        this.id = id;
+        this.email = email;
+        this.fullName = fullName;
+        this.avatarUrl = avatarUrl;
+        this.role = role;
+        this.isActive = isActive;
+        this.createdAt = createdAt;
+    }
+    
+    public static UserSnapshot of(User user) {
+        return new UserSnapshot(user.getId(), user.getEmail(), user.getFullName(), user.getAvatarUrl(),
+                user.getRole(), user.getIsActive(), user.getCreatedAt());
+    }
+    
+    // Getters
+    public Long getId() { return id; }
+    public String getEmail() { return email; }
+    public String getFullName() { return fullName; }
+    public String getAvatarUrl() { return avatarUrl; }
+    public User.Role getRole() { return role; }
+    public Boolean getIsActive() { return isActive; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+}
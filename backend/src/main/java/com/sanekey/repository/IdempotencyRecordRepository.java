@@ -0,0 +1,74 @@
+package com.sanekey.repository;
+
+import com.sanekey.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+    
+    /**
+     * Find the record for a user's key
+     */
+    Optional<IdempotencyRecord> findByUserIdAndIdempotencyKey(Long userId, String idempotencyKey);
+    
+    /**
+     * Claim a key for a running request; returns 0 if the key is already taken
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO idempotency_keys " +
+                   "(user_id, idempotency_key, request_hash, created_at, expires_at) " +
+                   "VALUES (:userId, :key, :requestHash, :now, :expiresAt)",
+           nativeQuery = true)
+    int claim(@Param("userId") Long userId,
+              @Param("key") String key,
+              @Param("requestHash") String requestHash,
+              @Param("now") LocalDateTime now,
+              @Param("expiresAt") LocalDateTime expiresAt);
+    
+    /**
+     * Store the response of the request holding the claim
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE IdempotencyRecord r SET r.responseStatus = :status, r.responseBody = :body " +
+           "WHERE r.userId = :userId AND r.idempotencyKey = :key AND r.responseStatus IS NULL")
+    int complete(@Param("userId") Long userId,
+                 @Param("key") String key,
+                 @Param("status") int status,
+                 @Param("body") String body);
+    
+    /**
+     * Release a claim so the request can be retried
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.userId = :userId AND r.idempotencyKey = :key " +
+           "AND r.responseStatus IS NULL")
+    int release(@Param("userId") Long userId, @Param("key") String key);
+    
+    /**
+     * Drop a claim left behind by a request that never finished
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.userId = :userId AND r.idempotencyKey = :key " +
+           "AND r.responseStatus IS NULL AND r.createdAt < :cutoff")
+    int releaseStale(@Param("userId") Long userId, @Param("key") String key, @Param("cutoff") LocalDateTime cutoff);
+    
+    /**
+     * Purge expired keys
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,27 @@
+package com.sanekey.repository;
+
+import com.sanekey.model.PaymentAuditEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PaymentAuditEventRepository extends JpaRepository<PaymentAuditEvent, Long>, PaymentAuditEventShipping {
+    
+    /**
+     * A payment's shipped history, oldest first
+     */
+    @Query("SELECT e FROM PaymentAuditEvent e WHERE e.paymentId = :paymentId " +
+           "ORDER BY e.occurredAt, e.journalNode, e.journalSequence")
+    List<PaymentAuditEvent> findHistory(@Param("paymentId") Long paymentId);
+    
+    /**
+     * Highest journal sequence shipped from a node, so a node whose journal
+     * directory was lost does not reuse sequences
+     */
+    @Query("SELECT MAX(e.journalSequence) FROM PaymentAuditEvent e WHERE e.journalNode = :node")
+    Long findMaxSequence(@Param("node") String node);
+}
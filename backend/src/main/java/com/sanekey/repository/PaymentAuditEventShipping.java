@@ -0,0 +1,16 @@
+package com.sanekey.repository;
+
+import com.sanekey.model.PaymentAuditEvent;
+
+import java.util.List;
+
+/**
+ * Batch loading of journal records, mixed into PaymentAuditEventRepository
+ */
+public interface PaymentAuditEventShipping {
+    
+    /**
+     * Insert a batch in one statement; records already shipped are skipped
+     */
+    int insertIgnoreBatch(List<PaymentAuditEvent> events);
+}
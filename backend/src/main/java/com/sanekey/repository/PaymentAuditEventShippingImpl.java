@@ -0,0 +1,46 @@
+package com.sanekey.repository;
+
+import com.sanekey.model.PaymentAuditEvent;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import java.util.List;
+
+public class PaymentAuditEventShippingImpl implements PaymentAuditEventShipping {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public int insertIgnoreBatch(List<PaymentAuditEvent> events) {
+        if (events.isEmpty()) {
+            return 0;
+        }
+        StringBuilder sql = new StringBuilder("INSERT IGNORE INTO payment_audit_events (journal_node, journal_sequence, " +
+                "payment_id, event_type, from_status, to_status, detail, occurred_at, shipped_at) VALUES ");
+        for (int i = 0; i < events.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("(:node").append(i).append(", :seq").append(i).append(", :payment").append(i)
+               .append(", :type").append(i).append(", :from").append(i).append(", :to").append(i)
+               .append(", :detail").append(i).append(", :occurred").append(i).append(", :shipped").append(i).append(")");
+        }
+        
+        Query query = entityManager.createNativeQuery(sql.toString());
+        for (int i = 0; i < events.size(); i++) {
+            PaymentAuditEvent event = events.get(i);
+            query.setParameter("node" + i, event.getJournalNode());
+            query.setParameter("seq" + i, event.getJournalSequence());
+            query.setParameter("payment" + i, event.getPaymentId());
+            query.setParameter("type" + i, event.getEventType().name());
+            query.setParameter("from" + i, event.getFromStatus() != null ? event.getFromStatus().name() : null);
+            query.setParameter("to" + i, event.getToStatus() != null ? event.getToStatus().name() : null);
+            query.setParameter("detail" + i, event.getDetail());
+            query.setParameter("occurred" + i, event.getOccurredAt());
+            query.setParameter("shipped" + i, event.getShippedAt());
+        }
+        return query.executeUpdate();
+    }
+}
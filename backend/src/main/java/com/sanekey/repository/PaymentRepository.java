@@ -2,28 +2,71 @@ package com.sanekey.repository;
 
 import com.sanekey.model.Payment;
 import com.sanekey.model.User;
+import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface PaymentRepository extends JpaRepository<Payment, Long> {
+public interface PaymentRepository extends JpaRepository<Payment, Long>, PaymentSearchRepository {
     
     /**
-     * Find payments by user
+     * First keyset page of a user's payments, newest first
      */
-    List<Payment> findByUserOrderByCreatedAtDesc(User user);
+    @Query("SELECT p FROM Payment p WHERE p.user.id = :userId " +
+           "AND (:status IS NULL OR p.status = :status) AND (:method IS NULL OR p.method = :method) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Payment> findUserPaymentsPage(@Param("userId") Long userId,
+                                       @Param("status") Payment.PaymentStatus status,
+                                       @Param("method") Payment.PaymentMethod method,
+                                       Pageable pageable);
     
     /**
-     * Find payments by user ID
+     * Keyset page of a user's payments after the (createdAt, id) cursor
      */
-    List<Payment> findByUserIdOrderByCreatedAtDesc(Long userId);
+    @Query("SELECT p FROM Payment p WHERE p.user.id = :userId " +
+           "AND (:status IS NULL OR p.status = :status) AND (:method IS NULL OR p.method = :method) " +
+           "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Payment> findUserPaymentsPageAfter(@Param("userId") Long userId,
+                                            @Param("status") Payment.PaymentStatus status,
+                                            @Param("method") Payment.PaymentMethod method,
+                                            @Param("createdAt") LocalDateTime createdAt,
+                                            @Param("id") Long id,
+                                            Pageable pageable);
+    
+    /**
+     * First keyset page of all payments, newest first
+     */
+    @Query("SELECT p FROM Payment p " +
+           "WHERE (:status IS NULL OR p.status = :status) AND (:method IS NULL OR p.method = :method) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Payment> findPaymentsPage(@Param("status") Payment.PaymentStatus status,
+                                   @Param("method") Payment.PaymentMethod method,
+                                   Pageable pageable);
+    
+    /**
+     * Keyset page of all payments after the (createdAt, id) cursor
+     */
+    @Query("SELECT p FROM Payment p " +
+           "WHERE (:status IS NULL OR p.status = :status) AND (:method IS NULL OR p.method = :method) " +
+           "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Payment> findPaymentsPageAfter(@Param("status") Payment.PaymentStatus status,
+                                        @Param("method") Payment.PaymentMethod method,
+                                        @Param("createdAt") LocalDateTime createdAt,
+                                        @Param("id") Long id,
+                                        Pageable pageable);
     
     /**
      * Find payment by transaction ID
@@ -41,35 +84,118 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     Optional<Payment> findByPaypalOrderId(String paypalOrderId);
     
     /**
-     * Find payments by status
+     * Attach the Stripe intent to a payment that is still PENDING
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Payment p SET p.stripePaymentIntentId = :intentId, p.updatedAt = :now, p.version = p.version + 1 " +
+           "WHERE p.id = :id AND p.status = com.sanekey.model.Payment.PaymentStatus.PENDING")
+    int attachStripePaymentIntent(@Param("id") Long id, @Param("intentId") String intentId,
+                                  @Param("now") LocalDateTime now);
+    
+    /**
+     * Attach the PayPal order to a payment that is still PENDING
      */
-    List<Payment> findByStatusOrderByCreatedAtDesc(Payment.PaymentStatus status);
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Payment p SET p.paypalOrderId = :orderId, p.updatedAt = :now, p.version = p.version + 1 " +
+           "WHERE p.id = :id AND p.status = com.sanekey.model.Payment.PaymentStatus.PENDING")
+    int attachPaypalOrder(@Param("id") Long id, @Param("orderId") String orderId,
+                          @Param("now") LocalDateTime now);
     
     /**
-     * Find payments by method
+     * Mark a payment FAILED only if it is still PENDING
      */
-    List<Payment> findByMethodOrderByCreatedAtDesc(Payment.PaymentMethod method);
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Payment p SET p.status = com.sanekey.model.Payment.PaymentStatus.FAILED, p.updatedAt = :now, p.version = p.version + 1 " +
+           "WHERE p.id = :id AND p.status = com.sanekey.model.Payment.PaymentStatus.PENDING")
+    int failIfPending(@Param("id") Long id, @Param("now") LocalDateTime now);
     
     /**
-     * Find payments within date range
+     * Move a payment to a new status if it is still in one of the allowed
+     * source statuses at the version it was read at
      */
-    List<Payment> findByCreatedAtBetweenOrderByCreatedAtDesc(LocalDateTime startDate, LocalDateTime endDate);
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Payment p SET p.status = :to, p.updatedAt = :now, p.version = p.version + 1 " +
+           "WHERE p.id = :id AND p.status IN :from AND p.version = :version")
+    int transitionStatus(@Param("id") Long id, @Param("to") Payment.PaymentStatus to,
+                         @Param("from") Collection<Payment.PaymentStatus> from,
+                         @Param("version") Long version, @Param("now") LocalDateTime now);
     
     /**
-     * Find payments by user and status
+     * Same as transitionStatus for COMPLETED, also stamping completedAt
      */
-    List<Payment> findByUserAndStatusOrderByCreatedAtDesc(User user, Payment.PaymentStatus status);
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Payment p SET p.status = com.sanekey.model.Payment.PaymentStatus.COMPLETED, " +
+           "p.completedAt = :now, p.updatedAt = :now, p.version = p.version + 1 " +
+           "WHERE p.id = :id AND p.status IN :from AND p.version = :version")
+    int transitionToCompleted(@Param("id") Long id, @Param("from") Collection<Payment.PaymentStatus> from,
+                              @Param("version") Long version, @Param("now") LocalDateTime now);
     
     /**
-     * Find payments by amount range
+     * Next keyset chunk of payments in one status that reconciliation may
+     * claim: created in [from, to), carrying a gateway reference and not
+     * leased. Rows another node is claiming are skipped.
      */
-    List<Payment> findByAmountBetweenOrderByCreatedAtDesc(BigDecimal minAmount, BigDecimal maxAmount);
+    @Query(value = "SELECT id FROM payments WHERE status = :status " +
+                   "AND created_at >= :from AND created_at < :to " +
+                   "AND (created_at > :afterCreatedAt OR (created_at = :afterCreatedAt AND id > :afterId)) " +
+                   "AND (stripe_payment_intent_id IS NOT NULL OR paypal_order_id IS NOT NULL) " +
+                   "AND (reconcile_lease_until IS NULL OR reconcile_lease_until < :now) " +
+                   "ORDER BY created_at, id LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<Long> lockReconcileCandidates(@Param("status") String status,
+                                       @Param("from") LocalDateTime from,
+                                       @Param("to") LocalDateTime to,
+                                       @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                       @Param("afterId") Long afterId,
+                                       @Param("now") LocalDateTime now,
+                                       @Param("limit") int limit);
     
     /**
-     * Get total amount by user
+     * Lease a chunk of payments to one reconciliation node
      */
-    @Query("SELECT SUM(p.amount) FROM Payment p WHERE p.user = :user AND p.status = 'COMPLETED'")
-    BigDecimal getTotalAmountByUser(@Param("user") User user);
+    @Modifying
+    @Query(value = "UPDATE payments SET reconcile_lease_owner = :owner, reconcile_lease_until = :until " +
+                   "WHERE id IN :ids",
+           nativeQuery = true)
+    int leaseForReconciliation(@Param("ids") Collection<Long> ids, @Param("owner") String owner,
+                               @Param("until") LocalDateTime until);
+    
+    /**
+     * Lock a batch of payments by id
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Payment p WHERE p.id IN :ids")
+    List<Payment> lockByIds(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Lock the payments behind a batch of Stripe payment intents
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Payment p WHERE p.stripePaymentIntentId IN :intentIds")
+    List<Payment> lockByStripePaymentIntentIds(@Param("intentIds") Collection<String> intentIds);
+    
+    /**
+     * Lock the payments behind a batch of PayPal orders
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Payment p WHERE p.paypalOrderId IN :orderIds")
+    List<Payment> lockByPaypalOrderIds(@Param("orderIds") Collection<String> orderIds);
+    
+    /**
+     * Mark a batch of payments COMPLETED in one statement
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Payment p SET p.status = com.sanekey.model.Payment.PaymentStatus.COMPLETED, " +
+           "p.completedAt = :now, p.updatedAt = :now, p.version = p.version + 1 WHERE p.id IN :ids")
+    int completeByIds(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+    
+    /**
+     * Move a batch of payments to a non-completed status in one statement
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Payment p SET p.status = :status, p.updatedAt = :now, p.version = p.version + 1 WHERE p.id IN :ids")
+    int updateStatusByIds(@Param("ids") Collection<Long> ids, @Param("status") Payment.PaymentStatus status,
+                          @Param("now") LocalDateTime now);
     
     /**
      * Get total amount by status
@@ -92,22 +218,4 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
      */
     @Query("SELECT p FROM Payment p WHERE p.createdAt >= :date ORDER BY p.createdAt DESC")
     List<Payment> findRecentPayments(@Param("date") LocalDateTime date);
-    
-    /**
-     * Find failed payments that can be retried
-     */
-    @Query("SELECT p FROM Payment p WHERE p.status = 'FAILED' AND p.createdAt >= :date ORDER BY p.createdAt DESC")
-    List<Payment> findRetryableFailedPayments(@Param("date") LocalDateTime date);
-    
-    /**
-     * Get monthly revenue
-     */
-    @Query("SELECT SUM(p.amount) FROM Payment p WHERE p.status = 'COMPLETED' AND YEAR(p.completedAt) = :year AND MONTH(p.completedAt) = :month")
-    BigDecimal getMonthlyRevenue(@Param("year") int year, @Param("month") int month);
-    
-    /**
-     * Get daily revenue
-     */
-    @Query("SELECT SUM(p.amount) FROM Payment p WHERE p.status = 'COMPLETED' AND DATE(p.completedAt) = DATE(:date)")
-    BigDecimal getDailyRevenue(@Param("date") LocalDateTime date);
 }
\ No newline at end of file
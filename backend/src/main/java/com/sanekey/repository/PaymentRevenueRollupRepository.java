@@ -0,0 +1,111 @@
+package com.sanekey.repository;
+
+import com.sanekey.model.PaymentRevenueRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Repository
+public interface PaymentRevenueRollupRepository extends JpaRepository<PaymentRevenueRollup, PaymentRevenueRollup.Key> {
+    
+    String AGGREGATED = "('COMPLETED', 'REFUNDED', 'FAILED', 'CANCELLED')";
+    
+    // Completed payments count on the day they completed, the others on their last update
+    String EVENT_AT = "CASE WHEN p.status = 'COMPLETED' THEN COALESCE(p.completed_at, p.updated_at) ELSE p.updated_at END";
+    
+    /**
+     * Apply a count/amount delta to one rollup row, creating it if needed
+     */
+    @Modifying
+    @Query(value = "INSERT INTO payment_revenue_rollups " +
+                   "(period_type, period_start, currency, method, status, payment_count, amount_sum) " +
+                   "VALUES (:periodType, :periodStart, :currency, :method, :status, :countDelta, :amountDelta) " +
+                   "ON DUPLICATE KEY UPDATE payment_count = payment_count + :countDelta, " +
+                   "amount_sum = amount_sum + :amountDelta",
+           nativeQuery = true)
+    void applyDelta(@Param("periodType") String periodType,
+                    @Param("periodStart") LocalDate periodStart,
+                    @Param("currency") String currency,
+                    @Param("method") String method,
+                    @Param("status") String status,
+                    @Param("countDelta") long countDelta,
+                    @Param("amountDelta") BigDecimal amountDelta);
+    
+    /**
+     * Sum amounts for one period and status across currencies and methods
+     */
+    @Query("SELECT SUM(r.amountSum) FROM PaymentRevenueRollup r " +
+           "WHERE r.id.periodType = :periodType AND r.id.periodStart = :periodStart AND r.id.status = :status")
+    BigDecimal sumAmount(@Param("periodType") String periodType,
+                         @Param("periodStart") LocalDate periodStart,
+                         @Param("status") String status);
+    
+    /**
+     * Sum counts for one period and status across currencies and methods
+     */
+    @Query("SELECT SUM(r.paymentCount) FROM PaymentRevenueRollup r " +
+           "WHERE r.id.periodType = :periodType AND r.id.periodStart = :periodStart AND r.id.status = :status")
+    Long sumCount(@Param("periodType") String periodType,
+                  @Param("periodStart") LocalDate periodStart,
+                  @Param("status") String status);
+    
+    /**
+     * Recompute daily rollups from raw payments, overwriting existing rows.
+     * Completed payments are bucketed by completion time; refunds, failures
+     * and cancellations by last update.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO payment_revenue_rollups " +
+                   "(period_type, period_start, currency, method, status, payment_count, amount_sum) " +
+                   "SELECT 'DAY', DATE(t.event_at), t.currency, t.method, t.status, COUNT(*), SUM(t.amount) " +
+                   "FROM (SELECT " + EVENT_AT + " AS event_at, p.currency, COALESCE(p.method, 'UNKNOWN') AS method, " +
+                   "p.status, p.amount FROM payments p WHERE p.status IN " + AGGREGATED + ") t " +
+                   "GROUP BY DATE(t.event_at), t.currency, t.method, t.status " +
+                   "ON DUPLICATE KEY UPDATE payment_count = VALUES(payment_count), amount_sum = VALUES(amount_sum)",
+           nativeQuery = true)
+    int rebuildDaily();
+    
+    /**
+     * Remove daily rows for buckets no payment falls into any more
+     */
+    @Modifying
+    @Query(value = "DELETE r FROM payment_revenue_rollups r " +
+                   "LEFT JOIN (SELECT DISTINCT DATE(" + EVENT_AT + ") AS day, p.currency, " +
+                   "COALESCE(p.method, 'UNKNOWN') AS method, p.status FROM payments p " +
+                   "WHERE p.status IN " + AGGREGATED + ") t " +
+                   "ON t.day = r.period_start AND t.currency = r.currency AND t.method = r.method AND t.status = r.status " +
+                   "WHERE r.period_type = 'DAY' AND t.day IS NULL",
+           nativeQuery = true)
+    int deleteStaleDaily();
+    
+    /**
+     * Recompute monthly rollups from the daily rows, overwriting existing rows
+     */
+    @Modifying
+    @Query(value = "INSERT INTO payment_revenue_rollups " +
+                   "(period_type, period_start, currency, method, status, payment_count, amount_sum) " +
+                   "SELECT 'MONTH', r.month_start, r.currency, r.method, r.status, SUM(r.payment_count), SUM(r.amount_sum) " +
+                   "FROM (SELECT DATE_FORMAT(period_start, '%Y-%m-01') AS month_start, currency, method, status, " +
+                   "payment_count, amount_sum FROM payment_revenue_rollups WHERE period_type = 'DAY') r " +
+                   "GROUP BY r.month_start, r.currency, r.method, r.status " +
+                   "ON DUPLICATE KEY UPDATE payment_count = VALUES(payment_count), amount_sum = VALUES(amount_sum)",
+           nativeQuery = true)
+    int rebuildMonthlyFromDaily();
+    
+    /**
+     * Remove monthly rows no daily row rolls up into any more
+     */
+    @Modifying
+    @Query(value = "DELETE r FROM payment_revenue_rollups r " +
+                   "LEFT JOIN (SELECT DISTINCT DATE(DATE_FORMAT(period_start, '%Y-%m-01')) AS month_start, " +
+                   "currency, method, status FROM payment_revenue_rollups WHERE period_type = 'DAY') d " +
+                   "ON d.month_start = r.period_start AND d.currency = r.currency AND d.method = r.method AND d.status = r.status " +
+                   "WHERE r.period_type = 'MONTH' AND d.month_start IS NULL",
+           nativeQuery = true)
+    int deleteStaleMonthly();
+}
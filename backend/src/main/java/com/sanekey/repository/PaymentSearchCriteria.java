@@ -0,0 +1,93 @@
+package com.sanekey.repository;
+
+import com.sanekey.model.Payment;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Filters for the admin payment search. Every field is optional and they
+ * combine with AND; amounts are inclusive, the date range is [createdFrom, createdTo).
+ */
+public class PaymentSearchCriteria {
+
+    private Payment.PaymentStatus status;
+
+    private Payment.PaymentMethod method;
+
+    private BigDecimal minAmount;
+
+    private BigDecimal maxAmount;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdFrom;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdTo;
+
+    private Long userId;
+
+    private String currency;
+
+    /**
+     * Reject ranges that can never match
+     */
+    public void validate() {
+        if (minAmount != null && maxAmount != null && minAmount.compareTo(maxAmount) > 0) {
+            throw new IllegalArgumentException("minAmount must not be greater than maxAmount");
+        }
+        if (createdFrom != null && createdTo != null && !createdFrom.isBefore(createdTo)) {
+            throw new IllegalArgumentException("createdFrom must be before createdTo");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PaymentSearchCriteria that)) return false;
+        return status == that.status && method == that.method
+                && Objects.equals(normalize(minAmount), normalize(that.minAmount))
+                && Objects.equals(normalize(maxAmount), normalize(that.maxAmount))
+                && Objects.equals(createdFrom, that.createdFrom) && Objects.equals(createdTo, that.createdTo)
+                && Objects.equals(userId, that.userId) && Objects.equals(getCurrency(), that.getCurrency());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(status, method, normalize(minAmount), normalize(maxAmount),
+                createdFrom, createdTo, userId, getCurrency());
+    }
+
+    private static BigDecimal normalize(BigDecimal amount) {
+        return amount != null ? amount.stripTrailingZeros() : null;
+    }
+
+    // Getters and Setters
+    public Payment.PaymentStatus getStatus() { return status; }
+    public void setStatus(Payment.PaymentStatus status) { this.status = status; }
+
+    public Payment.PaymentMethod getMethod() { return method; }
+    public void setMethod(Payment.PaymentMethod method) { this.method = method; }
+
+    public BigDecimal getMinAmount() { return minAmount; }
+    public void setMinAmount(BigDecimal minAmount) { this.minAmount = minAmount; }
+
+    public BigDecimal getMaxAmount() { return maxAmount; }
+    public void setMaxAmount(BigDecimal maxAmount) { this.maxAmount = maxAmount; }
+
+    public LocalDateTime getCreatedFrom() { return createdFrom; }
+    public void setCreatedFrom(LocalDateTime createdFrom) { this.createdFrom = createdFrom; }
+
+    public LocalDateTime getCreatedTo() { return createdTo; }
+    public void setCreatedTo(LocalDateTime createdTo) { this.createdTo = createdTo; }
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public String getCurrency() {
+        return currency == null || currency.isBlank() ? null : currency.trim().toUpperCase();
+    }
+    public void setCurrency(String currency) { this.currency = currency; }
+}
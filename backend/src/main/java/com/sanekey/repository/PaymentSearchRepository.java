@@ -0,0 +1,32 @@
+package com.sanekey.repository;
+
+import com.sanekey.model.Payment;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Dynamic payment search, mixed into PaymentRepository
+ */
+public interface PaymentSearchRepository {
+
+    /**
+     * One keyset page, newest first, after the (createdAt, id) cursor when it is set
+     */
+    List<Payment> search(PaymentSearchCriteria criteria, LocalDateTime afterCreatedAt, Long afterId, int limit);
+
+    /**
+     * Exact number of matches, or null if counting took longer than timeoutMs
+     */
+    Long countExact(PaymentSearchCriteria criteria, long timeoutMs);
+
+    /**
+     * The optimizer's row estimate for the search, from EXPLAIN
+     */
+    long countApproximate(PaymentSearchCriteria criteria);
+
+    /**
+     * The index the search runs on
+     */
+    String indexFor(PaymentSearchCriteria criteria);
+}
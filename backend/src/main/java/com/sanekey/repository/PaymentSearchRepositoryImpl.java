@@ -0,0 +1,149 @@
+package com.sanekey.repository;
+
+import com.sanekey.model.Payment;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import jakarta.persistence.Query;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the admin payment search as native SQL so the index can be pinned.
+ * Every plan walks a (..., created_at, id) index in order, so the keyset
+ * ORDER BY needs no sort and a page reads about limit matching rows. The
+ * equality filters pick the index prefix; amount and currency, and
+ * status/method when a narrower prefix is used, are checked on the rows
+ * as they are read.
+ */
+public class PaymentSearchRepositoryImpl implements PaymentSearchRepository {
+
+    static final String INDEX_USER = "idx_payments_user_created";
+    static final String INDEX_STATUS_METHOD = "idx_payments_status_method_created";
+    static final String INDEX_STATUS = "idx_payments_status_created";
+    static final String INDEX_METHOD = "idx_payments_method_created";
+    static final String INDEX_CREATED = "idx_payments_created";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Payment> search(PaymentSearchCriteria criteria, LocalDateTime afterCreatedAt, Long afterId, int limit) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        StringBuilder sql = new StringBuilder("SELECT * FROM payments FORCE INDEX (")
+                .append(indexFor(criteria)).append(")");
+        where(sql, params, criteria);
+        if (afterCreatedAt != null) {
+            sql.append(" AND (created_at < :afterCreatedAt OR (created_at = :afterCreatedAt AND id < :afterId))");
+            params.put("afterCreatedAt", afterCreatedAt);
+            params.put("afterId", afterId);
+        }
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT :limit");
+        params.put("limit", limit);
+
+        Query query = entityManager.createNativeQuery(sql.toString(), Payment.class);
+        params.forEach(query::setParameter);
+        @SuppressWarnings("unchecked")
+        List<Payment> rows = query.getResultList();
+        return rows;
+    }
+
+    @Override
+    public Long countExact(PaymentSearchCriteria criteria, long timeoutMs) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        StringBuilder sql = new StringBuilder("SELECT /*+ MAX_EXECUTION_TIME(")
+                .append(Math.max(1, timeoutMs)).append(") */ COUNT(*) FROM payments FORCE INDEX (")
+                .append(indexFor(criteria)).append(")");
+        where(sql, params, criteria);
+
+        Query query = entityManager.createNativeQuery(sql.toString());
+        params.forEach(query::setParameter);
+        try {
+            return ((Number) query.getSingleResult()).longValue();
+        } catch (PersistenceException e) {
+            // MySQL aborts the statement once MAX_EXECUTION_TIME is exceeded
+            return null;
+        }
+    }
+
+    @Override
+    public long countApproximate(PaymentSearchCriteria criteria) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        StringBuilder sql = new StringBuilder("EXPLAIN SELECT id FROM payments FORCE INDEX (")
+                .append(indexFor(criteria)).append(")");
+        where(sql, params, criteria);
+
+        Query query = entityManager.createNativeQuery(sql.toString());
+        params.forEach(query::setParameter);
+        @SuppressWarnings("unchecked")
+        List<Object[]> plan = query.getResultList();
+        if (plan.isEmpty()) {
+            return 0;
+        }
+        // Traditional EXPLAIN columns: ..., key(6), key_len, ref, rows(9), filtered(10), Extra
+        Object[] row = plan.get(0);
+        double rows = row[9] != null ? ((Number) row[9]).doubleValue() : 0;
+        double filtered = row[10] != null ? ((Number) row[10]).doubleValue() : 100;
+        return Math.round(rows * filtered / 100);
+    }
+
+    @Override
+    public String indexFor(PaymentSearchCriteria criteria) {
+        if (criteria.getUserId() != null) {
+            return INDEX_USER;
+        }
+        if (criteria.getStatus() != null && criteria.getMethod() != null) {
+            return INDEX_STATUS_METHOD;
+        }
+        if (criteria.getStatus() != null) {
+            return INDEX_STATUS;
+        }
+        if (criteria.getMethod() != null) {
+            return INDEX_METHOD;
+        }
+        return INDEX_CREATED;
+    }
+
+    /**
+     * Append the filter predicates; index prefix columns first so the
+     * statement reads the same way as the plan
+     */
+    private static void where(StringBuilder sql, Map<String, Object> params, PaymentSearchCriteria criteria) {
+        sql.append(" WHERE 1 = 1");
+        if (criteria.getUserId() != null) {
+            sql.append(" AND user_id = :userId");
+            params.put("userId", criteria.getUserId());
+        }
+        if (criteria.getStatus() != null) {
+            sql.append(" AND status = :status");
+            params.put("status", criteria.getStatus().name());
+        }
+        if (criteria.getMethod() != null) {
+            sql.append(" AND method = :method");
+            params.put("method", criteria.getMethod().name());
+        }
+        if (criteria.getCreatedFrom() != null) {
+            sql.append(" AND created_at >= :createdFrom");
+            params.put("createdFrom", criteria.getCreatedFrom());
+        }
+        if (criteria.getCreatedTo() != null) {
+            sql.append(" AND created_at < :createdTo");
+            params.put("createdTo", criteria.getCreatedTo());
+        }
+        if (criteria.getMinAmount() != null) {
+            sql.append(" AND amount >= :minAmount");
+            params.put("minAmount", criteria.getMinAmount());
+        }
+        if (criteria.getMaxAmount() != null) {
+            sql.append(" AND amount <= :maxAmount");
+            params.put("maxAmount", criteria.getMaxAmount());
+        }
+        if (criteria.getCurrency() != null) {
+            sql.append(" AND currency = :currency");
+            params.put("currency", criteria.getCurrency());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.sanekey.repository;
+
+import com.sanekey.model.PaymentWebhookEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PaymentWebhookEventRepository extends JpaRepository<PaymentWebhookEvent, Long> {
+    
+    /**
+     * Append an event to the inbox; duplicates of (gateway, event_id) are ignored and return 0
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO payment_webhook_events " +
+                   "(gateway, event_id, event_type, reference, target_status, occurred_at, received_at, next_attempt_at, state) " +
+                   "VALUES (:gateway, :eventId, :eventType, :reference, :targetStatus, :occurredAt, :receivedAt, :receivedAt, 'RECEIVED')",
+           nativeQuery = true)
+    int insertIgnore(@Param("gateway") String gateway,
+                     @Param("eventId") String eventId,
+                     @Param("eventType") String eventType,
+                     @Param("reference") String reference,
+                     @Param("targetStatus") String targetStatus,
+                     @Param("occurredAt") LocalDateTime occurredAt,
+                     @Param("receivedAt") LocalDateTime receivedAt);
+    
+    /**
+     * Claim the unprocessed events that are due, oldest first; rows locked by
+     * another node are skipped
+     */
+    @Query(value = "SELECT * FROM payment_webhook_events WHERE state = 'RECEIVED' AND next_attempt_at <= :now " +
+                   "ORDER BY next_attempt_at, id LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<PaymentWebhookEvent> lockPendingBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+    
+    /**
+     * Push events back so later drains skip them until the given time
+     */
+    @Modifying
+    @Query("UPDATE PaymentWebhookEvent e SET e.nextAttemptAt = :nextAttemptAt WHERE e.id IN :ids")
+    int defer(@Param("ids") Collection<Long> ids, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+    
+    /**
+     * Mark a set of events as processed in one statement
+     */
+    @Modifying
+    @Query("UPDATE PaymentWebhookEvent e SET e.state = :state, e.processedAt = :now WHERE e.id IN :ids")
+    int markProcessed(@Param("ids") Collection<Long> ids,
+                      @Param("state") PaymentWebhookEvent.State state,
+                      @Param("now") LocalDateTime now);
+    
+    /**
+     * Count events still waiting to be applied
+     */
+    long countByState(PaymentWebhookEvent.State state);
+}
@@ -0,0 +1,76 @@
+package com.sanekey.repository;
+
+import com.sanekey.model.ProductRatingStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProductRatingStatsRepository extends JpaRepository<ProductRatingStats, String> {
+    
+    /**
+     * Apply count, sum and per-star deltas to a product's stats, creating the row if needed
+     */
+    @Modifying
+    @Query(value = "INSERT INTO product_rating_stats " +
+                   "(product_id, review_count, rating_sum, stars_1, stars_2, stars_3, stars_4, stars_5) " +
+                   "VALUES (:productId, :count, :sum, :stars1, :stars2, :stars3, :stars4, :stars5) " +
+                   "ON DUPLICATE KEY UPDATE review_count = review_count + :count, " +
+                   "rating_sum = rating_sum + :sum, " +
+                   "stars_1 = stars_1 + :stars1, stars_2 = stars_2 + :stars2, stars_3 = stars_3 + :stars3, " +
+                   "stars_4 = stars_4 + :stars4, stars_5 = stars_5 + :stars5",
+           nativeQuery = true)
+    void applyDelta(@Param("productId") String productId,
+                    @Param("count") long count,
+                    @Param("sum") long sum,
+                    @Param("stars1") long stars1,
+                    @Param("stars2") long stars2,
+                    @Param("stars3") long stars3,
+                    @Param("stars4") long stars4,
+                    @Param("stars5") long stars5);
+    
+    /**
+     * Next batch of reviewed product ids after afterId, in order
+     */
+    @Query(value = "SELECT DISTINCT product_id FROM product_reviews WHERE product_id > :afterId " +
+                   "ORDER BY product_id LIMIT :limit",
+           nativeQuery = true)
+    List<String> findReviewedProductIdsAfter(@Param("afterId") String afterId, @Param("limit") int limit);
+    
+    /**
+     * Next batch of product ids that have a stats row after afterId, in order
+     */
+    @Query(value = "SELECT product_id FROM product_rating_stats WHERE product_id > :afterId " +
+                   "ORDER BY product_id LIMIT :limit",
+           nativeQuery = true)
+    List<String> findStatsProductIdsAfter(@Param("afterId") String afterId, @Param("limit") int limit);
+    
+    /**
+     * Recompute the stats of some products from their reviews, overwriting their rows
+     */
+    @Modifying
+    @Query(value = "INSERT INTO product_rating_stats " +
+                   "(product_id, review_count, rating_sum, stars_1, stars_2, stars_3, stars_4, stars_5) " +
+                   "SELECT r.product_id, COUNT(*), SUM(r.rating), " +
+                   "SUM(r.rating = 1), SUM(r.rating = 2), SUM(r.rating = 3), SUM(r.rating = 4), SUM(r.rating = 5) " +
+                   "FROM product_reviews r WHERE r.product_id IN (:productIds) GROUP BY r.product_id " +
+                   "ON DUPLICATE KEY UPDATE review_count = VALUES(review_count), rating_sum = VALUES(rating_sum), " +
+                   "stars_1 = VALUES(stars_1), stars_2 = VALUES(stars_2), stars_3 = VALUES(stars_3), " +
+                   "stars_4 = VALUES(stars_4), stars_5 = VALUES(stars_5)",
+           nativeQuery = true)
+    int rebuild(@Param("productIds") Collection<String> productIds);
+    
+    /**
+     * Remove the stats of those products that have no reviews left
+     */
+    @Modifying
+    @Query(value = "DELETE FROM product_rating_stats WHERE product_id IN (:productIds) " +
+                   "AND NOT EXISTS (SELECT 1 FROM product_reviews r WHERE r.product_id = product_rating_stats.product_id)",
+           nativeQuery = true)
+    int deleteUnreviewed(@Param("productIds") Collection<String> productIds);
+}
@@ -0,0 +1,30 @@
+package com.sanekey.repository;
+
+import com.sanekey.model.ReviewView;
+
+import java.util.List;
+
+/**
+ * Keyset-paginated product review listings, mixed into ProductReviewRepository
+ */
+public interface ProductReviewPageRepository {
+
+    /**
+     * One page of a product's reviews in the given order, optionally only
+     * those with one star rating, after the cursor keys when they are set.
+     * Images are not loaded; see attachImages.
+     */
+    List<ReviewView> findProductReviewsPage(String productId, Integer rating, ReviewSort sort,
+                                            Object[] after, int limit);
+
+    /**
+     * Reviews by id, in the order of the ids; ids with no review are skipped.
+     * Images are not loaded; see attachImages.
+     */
+    List<ReviewView> findReviewViews(List<Long> ids);
+
+    /**
+     * Load the images of all the given reviews with one query
+     */
+    void attachImages(List<ReviewView> reviews);
+}
@@ -0,0 +1,173 @@
+package com.sanekey.repository;
+
+import com.sanekey.model.ReviewView;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds review listings as native SQL so the index matching the sort can
+ * be pinned. A rating filter on the newest-first listing switches to the
+ * (product_id, rating, created_at, id) index, which serves that order too.
+ *
+ * Rows come back as ReviewView with the author's fields joined in, so a
+ * page is one query for the reviews and one for their images.
+ */
+public class ProductReviewPageRepositoryImpl implements ProductReviewPageRepository {
+
+    private static final String COLUMNS = "r.id, r.product_id, r.rating, r.title, r.comment, r.is_verified, " +
+            "r.helpful_count, r.created_at, r.updated_at, u.id, u.full_name, u.avatar_url";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ReviewView> findProductReviewsPage(String productId, Integer rating, ReviewSort sort,
+                                                   Object[] after, int limit) {
+        String index = rating != null && sort == ReviewSort.NEWEST
+                ? ReviewSort.HIGHEST_RATING.getIndex()
+                : sort.getIndex();
+        Map<String, Object> params = new LinkedHashMap<>();
+        StringBuilder sql = new StringBuilder("SELECT ").append(COLUMNS)
+                .append(" FROM product_reviews r FORCE INDEX (").append(index).append(")")
+                .append(" JOIN users u ON u.id = r.user_id WHERE r.product_id = :productId");
+        params.put("productId", productId);
+        if (rating != null) {
+            sql.append(" AND r.rating = :rating");
+            params.put("rating", rating);
+        }
+        if (after != null) {
+            sql.append(" AND ");
+            appendAfter(sql, params, sort.getOrders(), after);
+        }
+
+        sql.append(" ORDER BY ");
+        List<ReviewSort.Order> orders = sort.getOrders();
+        for (int i = 0; i < orders.size(); i++) {
+            ReviewSort.Order order = orders.get(i);
+            sql.append(i > 0 ? ", " : "").append("r.").append(order.key().getColumn())
+               .append(order.descending() ? " DESC" : " ASC");
+        }
+        sql.append(" LIMIT :limit");
+        params.put("limit", limit);
+
+        Query query = entityManager.createNativeQuery(sql.toString());
+        params.forEach(query::setParameter);
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = query.getResultList();
+        List<ReviewView> reviews = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            reviews.add(toView(row));
+        }
+        return reviews;
+    }
+
+    @Override
+    public List<ReviewView> findReviewViews(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager
+                .createNativeQuery("SELECT " + COLUMNS + " FROM product_reviews r JOIN users u ON u.id = r.user_id " +
+                        "WHERE r.id IN (:ids)")
+                .setParameter("ids", ids)
+                .getResultList();
+        Map<Long, ReviewView> byId = new HashMap<>();
+        for (Object[] row : rows) {
+            ReviewView review = toView(row);
+            byId.put(review.getId(), review);
+        }
+        List<ReviewView> reviews = new ArrayList<>(byId.size());
+        for (Long id : ids) {
+            ReviewView review = byId.get(id);
+            if (review != null) {
+                reviews.add(review);
+            }
+        }
+        return reviews;
+    }
+
+    @Override
+    public void attachImages(List<ReviewView> reviews) {
+        if (reviews.isEmpty()) {
+            return;
+        }
+        Map<Long, ReviewView> byId = new HashMap<>();
+        Map<Long, List<String>> images = new HashMap<>();
+        for (ReviewView review : reviews) {
+            byId.put(review.getId(), review);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager
+                .createNativeQuery("SELECT review_id, image_url FROM review_images WHERE review_id IN (:ids)")
+                .setParameter("ids", byId.keySet())
+                .getResultList();
+        for (Object[] row : rows) {
+            images.computeIfAbsent(toLong(row[0]), id -> new ArrayList<>()).add((String) row[1]);
+        }
+        byId.forEach((id, review) -> review.setImages(images.getOrDefault(id, List.of())));
+    }
+
+    /**
+     * Rows strictly after the cursor in sort order: (k1 past v1) OR
+     * (k1 = v1 AND k2 past v2) OR ...
+     */
+    private static void appendAfter(StringBuilder sql, Map<String, Object> params,
+                                    List<ReviewSort.Order> orders, Object[] after) {
+        sql.append('(');
+        for (int i = 0; i < orders.size(); i++) {
+            if (i > 0) {
+                sql.append(" OR ");
+            }
+            sql.append('(');
+            for (int j = 0; j < i; j++) {
+                sql.append("r.").append(orders.get(j).key().getColumn()).append(" = :after").append(j).append(" AND ");
+            }
+            ReviewSort.Order order = orders.get(i);
+            sql.append("r.").append(order.key().getColumn()).append(order.descending() ? " < " : " > ")
+               .append(":after").append(i).append(')');
+        }
+        sql.append(')');
+        for (int i = 0; i < orders.size(); i++) {
+            params.put("after" + i, after[i]);
+        }
+    }
+
+    private static ReviewView toView(Object[] row) {
+        return new ReviewView(toLong(row[0]), (String) row[1], toInteger(row[2]), (String) row[3],
+                (String) row[4], toBoolean(row[5]), toInteger(row[6]), toDateTime(row[7]), toDateTime(row[8]),
+                toLong(row[9]), (String) row[10], (String) row[11]);
+    }
+
+    private static Long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : null;
+    }
+
+    private static Integer toInteger(Object value) {
+        return value != null ? ((Number) value).intValue() : null;
+    }
+
+    private static Boolean toBoolean(Object value) {
+        if (value instanceof Number number) {
+            return number.intValue() != 0;
+        }
+        return (Boolean) value;
+    }
+
+    private static LocalDateTime toDateTime(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        return (LocalDateTime) value;
+    }
+}
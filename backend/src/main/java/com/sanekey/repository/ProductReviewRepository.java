@@ -1,32 +1,50 @@
 package com.sanekey.repository;
 
 import com.sanekey.model.ProductReview;
+import com.sanekey.model.ReviewView;
 import com.sanekey.model.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ProductReviewRepository extends JpaRepository<ProductReview, Long> {
+public interface ProductReviewRepository extends JpaRepository<ProductReview, Long>, ProductReviewPageRepository {
+    
+    String REVIEW_VIEW = "new com.sanekey.model.ReviewView(r.id, r.productId, r.rating, r.title, r.comment, " +
+            "r.isVerified, r.helpfulCount, r.createdAt, r.updatedAt, u.id, u.fullName, u.avatarUrl)";
     
     /**
-     * Find reviews by product ID
+     * First keyset page of a user's reviews, newest first, without images
      */
-    List<ProductReview> findByProductIdOrderByCreatedAtDesc(String productId);
+    @Query("SELECT " + REVIEW_VIEW + " FROM ProductReview r JOIN r.user u WHERE u.id = :userId " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    List<ReviewView> findUserReviewsPage(@Param("userId") Long userId, Pageable pageable);
     
     /**
-     * Find reviews by user
+     * Keyset page of a user's reviews after the (createdAt, id) cursor, without images
      */
-    List<ProductReview> findByUserOrderByCreatedAtDesc(User user);
+    @Query("SELECT " + REVIEW_VIEW + " FROM ProductReview r JOIN r.user u WHERE u.id = :userId " +
+           "AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)) " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    List<ReviewView> findUserReviewsPageAfter(@Param("userId") Long userId,
+                                              @Param("createdAt") LocalDateTime createdAt,
+                                              @Param("id") Long id,
+                                                 Pageable pageable);
     
     /**
-     * Find reviews by product ID and rating
+     * Lock a review for an update that depends on its current rating
      */
-    List<ProductReview> findByProductIdAndRatingOrderByCreatedAtDesc(String productId, Integer rating);
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM ProductReview r WHERE r.id = :id")
+    Optional<ProductReview> findByIdForUpdate(@Param("id") Long id);
     
     /**
      * Find reviews by product ID and user
@@ -39,41 +57,14 @@ public interface ProductReviewRepository extends JpaRepository<ProductReview, Lo
     boolean existsByProductIdAndUser(String productId, User user);
     
     /**
-     * Get average rating for a product
-     */
-    @Query("SELECT AVG(r.rating) FROM ProductReview r WHERE r.productId = :productId")
-    Double getAverageRatingByProductId(@Param("productId") String productId);
-    
-    /**
-     * Get total review count for a product
-     */
-    Long countByProductId(String productId);
-    
-    /**
-     * Get rating distribution for a product
-     */
-    @Query("SELECT r.rating, COUNT(r) FROM ProductReview r WHERE r.productId = :productId GROUP BY r.rating ORDER BY r.rating DESC")
-    List<Object[]> getRatingDistributionByProductId(@Param("productId") String productId);
-    
-    /**
-     * Find most helpful reviews for a product
-     */
-    List<ProductReview> findByProductIdOrderByHelpfulCountDescCreatedAtDesc(String productId);
-    
-    /**
-     * Find verified reviews for a product
+     * Current persisted helpful count of a review
      */
-    List<ProductReview> findByProductIdAndIsVerifiedTrueOrderByCreatedAtDesc(String productId);
+    @Query("SELECT r.helpfulCount FROM ProductReview r WHERE r.id = :id")
+    Optional<Integer> findHelpfulCount(@Param("id") Long id);
     
     /**
      * Find recent reviews (last N days)
      */
     @Query("SELECT r FROM ProductReview r WHERE r.createdAt >= :date ORDER BY r.createdAt DESC")
     List<ProductReview> findRecentReviews(@Param("date") java.time.LocalDateTime date);
-    
-    /**
-     * Search reviews by title or comment
-     */
-    @Query("SELECT r FROM ProductReview r WHERE r.productId = :productId AND (LOWER(r.title) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR LOWER(r.comment) LIKE LOWER(CONCAT('%', :searchTerm, '%'))) ORDER BY r.createdAt DESC")
-    List<ProductReview> searchReviewsByProductId(@Param("productId") String productId, @Param("searchTerm") String searchTerm);
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.sanekey.repository;
+
+import com.sanekey.model.ReviewDeletion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ReviewDeletionRepository extends JpaRepository<ReviewDeletion, Long> {
+    
+    /**
+     * Record a review deletion with a single insert
+     */
+    @Modifying
+    @Query(value = "INSERT INTO review_deletions (review_id, product_id, deleted_at) " +
+                   "VALUES (:reviewId, :productId, :deletedAt)",
+           nativeQuery = true)
+    void insert(@Param("reviewId") Long reviewId,
+                @Param("productId") String productId,
+                @Param("deletedAt") LocalDateTime deletedAt);
+    
+    /**
+     * Drop tombstones every node has long since applied
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM review_deletions WHERE deleted_at < :cutoff", nativeQuery = true)
+    int deleteOlderThan(@Param("cutoff") LocalDateTime cutoff);
+}
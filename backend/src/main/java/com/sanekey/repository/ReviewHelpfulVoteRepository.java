@@ -0,0 +1,24 @@
+package com.sanekey.repository;
+
+import com.sanekey.model.ReviewHelpfulVote;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ReviewHelpfulVoteRepository extends JpaRepository<ReviewHelpfulVote, ReviewHelpfulVote.Key> {
+    
+    /**
+     * Everyone who has voted a review helpful
+     */
+    @Query(value = "SELECT user_id FROM review_helpful_votes WHERE review_id = :reviewId", nativeQuery = true)
+    List<Long> findVoterIds(@Param("reviewId") Long reviewId);
+    
+    @Modifying
+    @Query(value = "DELETE FROM review_helpful_votes WHERE review_id = :reviewId", nativeQuery = true)
+    int deleteByReviewId(@Param("reviewId") Long reviewId);
+}
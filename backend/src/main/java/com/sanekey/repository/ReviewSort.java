@@ -0,0 +1,86 @@
+package com.sanekey.repository;
+
+import com.sanekey.model.ReviewView;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Sort modes for product review listings. Each one orders by a list of keys
+ * ending in id, so the order is total and a page can resume after the keys
+ * of the last row; each has an index on (product_id, keys...) whose order
+ * matches, so a page reads about limit rows however many reviews exist.
+ */
+public enum ReviewSort {
+    NEWEST("idx_reviews_product_created",
+            List.of(Order.desc(Key.CREATED_AT), Order.desc(Key.ID))),
+    MOST_HELPFUL("idx_reviews_product_helpful",
+            List.of(Order.desc(Key.HELPFUL_COUNT), Order.desc(Key.ID))),
+    HIGHEST_RATING("idx_reviews_product_rating",
+            List.of(Order.desc(Key.RATING), Order.desc(Key.CREATED_AT), Order.desc(Key.ID))),
+    LOWEST_RATING("idx_reviews_product_rating_low",
+            List.of(Order.asc(Key.RATING), Order.desc(Key.CREATED_AT), Order.desc(Key.ID))),
+    VERIFIED_FIRST("idx_reviews_product_verified",
+            List.of(Order.desc(Key.VERIFIED), Order.desc(Key.CREATED_AT), Order.desc(Key.ID)));
+
+    /**
+     * A sortable review column, how to read it from a listed review and how to
+     * parse it back from a cursor
+     */
+    public enum Key {
+        CREATED_AT("created_at", ReviewView::getCreatedAt, LocalDateTime::parse),
+        HELPFUL_COUNT("helpful_count", ReviewView::getHelpfulCount, Integer::valueOf),
+        RATING("rating", ReviewView::getRating, Integer::valueOf),
+        VERIFIED("is_verified", review -> Boolean.TRUE.equals(review.getIsVerified()), Boolean::valueOf),
+        ID("id", ReviewView::getId, Long::valueOf);
+
+        private final String column;
+        private final Function<ReviewView, Object> reader;
+        private final Function<String, Object> parser;
+
+        Key(String column, Function<ReviewView, Object> reader, Function<String, Object> parser) {
+            this.column = column;
+            this.reader = reader;
+            this.parser = parser;
+        }
+
+        public String getColumn() { return column; }
+
+        public Object read(ReviewView review) { return reader.apply(review); }
+
+        public Object parse(String value) { return parser.apply(value); }
+    }
+
+    public record Order(Key key, boolean descending) {
+        static Order asc(Key key) { return new Order(key, false); }
+        static Order desc(Key key) { return new Order(key, true); }
+    }
+
+    private final String index;
+    private final List<Order> orders;
+
+    ReviewSort(String index, List<Order> orders) {
+        this.index = index;
+        this.orders = orders;
+    }
+
+    public String getIndex() { return index; }
+
+    public List<Order> getOrders() { return orders; }
+
+    /**
+     * Parse a sort mode from a request parameter, defaulting to NEWEST
+     */
+    public static ReviewSort from(String value) {
+        if (value == null || value.isBlank()) {
+            return NEWEST;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown sort: " + value);
+        }
+    }
+}
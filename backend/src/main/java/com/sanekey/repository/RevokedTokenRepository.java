@@ -0,0 +1,34 @@
+package com.sanekey.repository;
+
+import com.sanekey.model.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+    
+    /**
+     * Load still-valid revocations (jti, expiresAt) for the in-memory denylist
+     */
+    @Query("SELECT r.jti, r.expiresAt FROM RevokedToken r WHERE r.expiresAt > :now")
+    List<Object[]> findActiveRevocations(@Param("now") LocalDateTime now);
+    
+    /**
+     * Load revocations recorded by any node since the last sync
+     */
+    @Query("SELECT r.jti, r.expiresAt FROM RevokedToken r WHERE r.revokedAt > :since AND r.expiresAt > :now")
+    List<Object[]> findRevocationsSince(@Param("since") LocalDateTime since, @Param("now") LocalDateTime now);
+    
+    /**
+     * Purge revocations whose tokens have expired anyway
+     */
+    @Modifying
+    @Query("DELETE FROM RevokedToken r WHERE r.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
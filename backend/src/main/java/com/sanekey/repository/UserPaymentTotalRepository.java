@@ -0,0 +1,60 @@
+package com.sanekey.repository;
+
+import com.sanekey.model.UserPaymentTotal;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+
+@Repository
+public interface UserPaymentTotalRepository extends JpaRepository<UserPaymentTotal, Long> {
+    
+    /**
+     * Apply completed/refunded deltas to a user's lifetime totals, creating the row if needed
+     */
+    @Modifying
+    @Query(value = "INSERT INTO user_payment_totals " +
+                   "(user_id, completed_count, completed_amount, refunded_count, refunded_amount) " +
+                   "VALUES (:userId, :completedCount, :completedAmount, :refundedCount, :refundedAmount) " +
+                   "ON DUPLICATE KEY UPDATE completed_count = completed_count + :completedCount, " +
+                   "completed_amount = completed_amount + :completedAmount, " +
+                   "refunded_count = refunded_count + :refundedCount, " +
+                   "refunded_amount = refunded_amount + :refundedAmount",
+           nativeQuery = true)
+    void applyDelta(@Param("userId") Long userId,
+                    @Param("completedCount") long completedCount,
+                    @Param("completedAmount") BigDecimal completedAmount,
+                    @Param("refundedCount") long refundedCount,
+                    @Param("refundedAmount") BigDecimal refundedAmount);
+    
+    /**
+     * Recompute every user's totals from raw payments, overwriting existing rows
+     */
+    @Modifying
+    @Query(value = "INSERT INTO user_payment_totals " +
+                   "(user_id, completed_count, completed_amount, refunded_count, refunded_amount) " +
+                   "SELECT p.user_id, " +
+                   "SUM(CASE WHEN p.status = 'COMPLETED' THEN 1 ELSE 0 END), " +
+                   "COALESCE(SUM(CASE WHEN p.status = 'COMPLETED' THEN p.amount END), 0), " +
+                   "SUM(CASE WHEN p.status = 'REFUNDED' THEN 1 ELSE 0 END), " +
+                   "COALESCE(SUM(CASE WHEN p.status = 'REFUNDED' THEN p.amount END), 0) " +
+                   "FROM payments p WHERE p.status IN ('COMPLETED', 'REFUNDED') GROUP BY p.user_id " +
+                   "ON DUPLICATE KEY UPDATE completed_count = VALUES(completed_count), " +
+                   "completed_amount = VALUES(completed_amount), refunded_count = VALUES(refunded_count), " +
+                   "refunded_amount = VALUES(refunded_amount)",
+           nativeQuery = true)
+    int rebuild();
+    
+    /**
+     * Remove totals of users with no completed or refunded payments left
+     */
+    @Modifying
+    @Query(value = "DELETE t FROM user_payment_totals t " +
+                   "LEFT JOIN (SELECT DISTINCT p.user_id FROM payments p WHERE p.status IN ('COMPLETED', 'REFUNDED')) u " +
+                   "ON u.user_id = t.user_id WHERE u.user_id IS NULL",
+           nativeQuery = true)
+    int deleteStale();
+}
@@ -42,9 +42,13 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u WHERE u.createdAt >= :date ORDER BY u.createdAt DESC")
     List<User> findRecentUsers(@Param("date") LocalDateTime date);
 
+    // ✅ Current token version of an active user (claims-only auth)
+    @Query("SELECT u.tokenVersion FROM User u WHERE u.id = :id AND u.isActive = true")
+    Optional<Integer> findActiveTokenVersionById(@Param("id") Long id);
+
     // ❗ FIXED: Soft delete (IMPORTANT)
     @Modifying
     @Transactional
-    @Query("UPDATE User u SET u.isActive = false, u.updatedAt = CURRENT_TIMESTAMP WHERE u.id = :id")
+    @Query("UPDATE User u SET u.isActive = false, u.tokenVersion = u.tokenVersion + 1, u.updatedAt = CURRENT_TIMESTAMP WHERE u.id = :id")
     int softDeleteById(@Param("id") Long id);
 }
\ No newline at end of file
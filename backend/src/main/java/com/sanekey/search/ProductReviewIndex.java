@@ -0,0 +1,302 @@
+package com.sanekey.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over one product's review titles and comments. Each review
+ * is a document numbered in the order it was added; a term's postings are
+ * parallel int arrays of document numbers, ascending, and term frequencies.
+ *
+ * Removing a review only marks its document deleted, and re-indexing one
+ * removes it and adds it back under a new number, so postings are only ever
+ * appended to. Once deleted documents make up half the index the postings
+ * are rewritten without them. Until then a term's document frequency still
+ * counts its deleted documents, which only nudges the idf.
+ *
+ * Ranking is BM25 with title words counted twice. Searches take the read
+ * lock and changes the write lock, so searches run concurrently.
+ */
+public class ProductReviewIndex {
+
+    static final int TITLE_WEIGHT = 2;
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    // Index terms found by prefix rank a little below the word itself
+    private static final float PREFIX_WEIGHT = 0.8f;
+
+    private static final int COMPACT_MIN_DELETED = 32;
+
+    /**
+     * A matching review and its score
+     */
+    public record Hit(long reviewId, float score) {
+    }
+
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private int[] freqs = new int[4];
+        private int size;
+
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Sorted, so prefix matches are a sub-map scan
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+
+    private final Map<Long, Integer> docsByReview = new HashMap<>();
+    private long[] reviewIds = new long[16];
+    private int[] lengths = new int[16];
+    private final BitSet deleted = new BitSet();
+    private int docCount;
+    private int deletedCount;
+    private long liveLength;
+
+    /**
+     * Index a review, replacing what was indexed for it before
+     */
+    public void put(long reviewId, String title, String comment) {
+        Map<String, Integer> freqs = new HashMap<>();
+        int length = 0;
+        for (String term : ReviewTextAnalyzer.terms(title)) {
+            freqs.merge(term, TITLE_WEIGHT, Integer::sum);
+            length += TITLE_WEIGHT;
+        }
+        for (String term : ReviewTextAnalyzer.terms(comment)) {
+            freqs.merge(term, 1, Integer::sum);
+            length++;
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(reviewId);
+            if (docCount == reviewIds.length) {
+                reviewIds = Arrays.copyOf(reviewIds, docCount * 2);
+                lengths = Arrays.copyOf(lengths, docCount * 2);
+            }
+            int doc = docCount++;
+            reviewIds[doc] = reviewId;
+            lengths[doc] = length;
+            liveLength += length;
+            docsByReview.put(reviewId, doc);
+            for (Map.Entry<String, Integer> entry : freqs.entrySet()) {
+                terms.computeIfAbsent(entry.getKey(), term -> new Postings()).add(doc, entry.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a review; a no-op if it is not indexed
+     */
+    public void remove(long reviewId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(reviewId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(long reviewId) {
+        Integer doc = docsByReview.remove(reviewId);
+        if (doc == null) {
+            return;
+        }
+        deleted.set(doc);
+        deletedCount++;
+        liveLength -= lengths[doc];
+        if (deletedCount >= COMPACT_MIN_DELETED && deletedCount * 2 >= docCount) {
+            compact();
+        }
+    }
+
+    /**
+     * Renumber the live documents densely, in their current order, and drop
+     * deleted ones from every postings list; order is kept, so postings stay
+     * ascending
+     */
+    private void compact() {
+        int[] renumbered = new int[docCount];
+        int live = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (deleted.get(doc)) {
+                renumbered[doc] = -1;
+            } else {
+                renumbered[doc] = live;
+                reviewIds[live] = reviewIds[doc];
+                lengths[live] = lengths[doc];
+                live++;
+            }
+        }
+
+        Iterator<Postings> iterator = terms.values().iterator();
+        while (iterator.hasNext()) {
+            Postings postings = iterator.next();
+            int kept = 0;
+            for (int i = 0; i < postings.size; i++) {
+                int doc = renumbered[postings.docs[i]];
+                if (doc >= 0) {
+                    postings.docs[kept] = doc;
+                    postings.freqs[kept] = postings.freqs[i];
+                    kept++;
+                }
+            }
+            if (kept == 0) {
+                iterator.remove();
+            } else {
+                postings.size = kept;
+            }
+        }
+
+        docsByReview.replaceAll((reviewId, doc) -> renumbered[doc]);
+        docCount = live;
+        deletedCount = 0;
+        deleted.clear();
+    }
+
+    /**
+     * Best matching reviews for the query terms, highest score first. A
+     * review scores the sum over query terms of its best match per term, so
+     * reviews matching more of the terms rank higher.
+     */
+    public List<Hit> search(List<ReviewTextAnalyzer.QueryTerm> query, int limit) {
+        lock.readLock().lock();
+        try {
+            int liveDocs = docCount - deletedCount;
+            if (liveDocs == 0 || query.isEmpty() || limit <= 0) {
+                return List.of();
+            }
+            float averageLength = Math.max(1f, (float) liveLength / liveDocs);
+            float[] scores = new float[docCount];
+            float[] termScores = new float[docCount];
+            int[] touched = new int[16];
+            int touchedCount = 0;
+            BitSet matched = new BitSet(docCount);
+
+            for (ReviewTextAnalyzer.QueryTerm term : query) {
+                BitSet termMatched = new BitSet(docCount);
+                if (term.stem() != null) {
+                    score(terms.get(term.stem()), 1f, liveDocs, averageLength, termScores, termMatched);
+                }
+                if (term.prefix() != null) {
+                    for (Map.Entry<String, Postings> entry : prefixed(term.prefix()).entrySet()) {
+                        if (!entry.getKey().equals(term.stem())) {
+                            score(entry.getValue(), PREFIX_WEIGHT, liveDocs, averageLength, termScores, termMatched);
+                        }
+                    }
+                }
+                for (int doc = termMatched.nextSetBit(0); doc >= 0; doc = termMatched.nextSetBit(doc + 1)) {
+                    scores[doc] += termScores[doc];
+                    termScores[doc] = 0f;
+                    if (!matched.get(doc)) {
+                        matched.set(doc);
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        }
+                        touched[touchedCount++] = doc;
+                    }
+                }
+            }
+
+            // Min-heap of the best limit documents so far
+            PriorityQueue<Integer> best = new PriorityQueue<>(Math.min(limit, touchedCount) + 1,
+                    (a, b) -> scores[a] != scores[b] ? Float.compare(scores[a], scores[b]) : Integer.compare(a, b));
+            for (int i = 0; i < touchedCount; i++) {
+                best.add(touched[i]);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            List<Hit> hits = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                int doc = best.poll();
+                hits.add(new Hit(reviewIds[doc], scores[doc]));
+            }
+            // Polled lowest first; ties go to the newer document
+            Collections.reverse(hits);
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private NavigableMap<String, Postings> prefixed(String prefix) {
+        return terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * Add one term's BM25 contribution to each live document in its
+     * postings, keeping the best per document when several index terms
+     * match the same query term
+     */
+    private void score(Postings postings, float weight, int liveDocs, float averageLength,
+                       float[] termScores, BitSet termMatched) {
+        if (postings == null) {
+            return;
+        }
+        int df = Math.min(postings.size, liveDocs);
+        float idf = (float) Math.log(1 + (liveDocs - df + 0.5) / (df + 0.5));
+        for (int i = 0; i < postings.size; i++) {
+            int doc = postings.docs[i];
+            if (deleted.get(doc)) {
+                continue;
+            }
+            int tf = postings.freqs[i];
+            float norm = K1 * (1 - B + B * lengths[doc] / averageLength);
+            float score = weight * idf * tf * (K1 + 1) / (tf + norm);
+            if (score > termScores[doc]) {
+                termScores[doc] = score;
+            }
+            termMatched.set(doc);
+        }
+    }
+
+    /**
+     * Number of reviews currently indexed
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docCount - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of distinct index terms
+     */
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.sanekey.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Turns review text into index terms: splits on anything that is not a
+ * letter or digit, lowercases, drops stop words and applies a light suffix
+ * stemmer, so "Batteries", "battery" and "charging", "charged" meet on the
+ * same terms. Queries go through the same steps.
+ */
+public final class ReviewTextAnalyzer {
+
+    static final int MIN_TERM_LENGTH = 2;
+    static final int MAX_TERM_LENGTH = 40;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "into", "is", "it",
+            "its", "of", "on", "or", "so", "that", "the", "their", "then", "there", "these", "they", "this",
+            "to", "was", "were", "will", "with", "i", "my", "me", "we", "you");
+
+    static final int MAX_QUERY_TERMS = 16;
+
+    /**
+     * One query word: its stem for exact matches, and for a prefix word also
+     * the lowercased text that index terms may start with
+     */
+    public record QueryTerm(String stem, String prefix) {
+    }
+
+    private ReviewTextAnalyzer() {
+    }
+
+    /**
+     * Query words of a search string. The last word, and any word written
+     * with a trailing *, also matches as a prefix, so results keep up while
+     * the user is still typing.
+     */
+    public static List<QueryTerm> query(String text) {
+        List<QueryTerm> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        String[] chunks = text.trim().split("\\s+");
+        for (int c = 0; c < chunks.length && terms.size() < MAX_QUERY_TERMS; c++) {
+            List<String> tokens = tokens(chunks[c]);
+            boolean prefixChunk = chunks[c].endsWith("*") || c == chunks.length - 1;
+            for (int t = 0; t < tokens.size() && terms.size() < MAX_QUERY_TERMS; t++) {
+                String token = tokens.get(t);
+                boolean prefix = prefixChunk && t == tokens.size() - 1;
+                String stem = STOP_WORDS.contains(token) ? null : stem(token);
+                if (stem != null || prefix) {
+                    terms.add(new QueryTerm(stem, prefix ? token : null));
+                }
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Index terms of a text, in order and with repeats
+     */
+    public static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        for (String token : tokens(text)) {
+            if (!STOP_WORDS.contains(token)) {
+                terms.add(stem(token));
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Lowercased words of a text, without stop word removal or stemming
+     */
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                int length = i - start;
+                if (length >= MIN_TERM_LENGTH && length <= MAX_TERM_LENGTH) {
+                    tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Strip common English inflections; not a full Porter stemmer, but
+     * consistent, which is what matching needs
+     */
+    static String stem(String word) {
+        if (word.length() <= 3 || !Character.isLetter(word.charAt(word.length() - 1))) {
+            return word;
+        }
+        String stem = word;
+        if (stem.endsWith("ies") && stem.length() > 4) {
+            return stem.substring(0, stem.length() - 3) + "y";
+        }
+        if (stem.endsWith("sses")) {
+            stem = stem.substring(0, stem.length() - 2);
+        } else if (stem.endsWith("es") && (stem.endsWith("ches") || stem.endsWith("shes") || stem.endsWith("xes"))) {
+            stem = stem.substring(0, stem.length() - 2);
+        } else if (stem.endsWith("s") && !stem.endsWith("ss") && !stem.endsWith("us") && !stem.endsWith("is")) {
+            stem = stem.substring(0, stem.length() - 1);
+        }
+
+        if (stem.endsWith("ness") && stem.length() > 6) {
+            stem = stem.substring(0, stem.length() - 4);
+        } else if (stem.endsWith("ing") && stem.length() > 5) {
+            stem = undouble(stem.substring(0, stem.length() - 3));
+        } else if (stem.endsWith("ed") && stem.length() > 4) {
+            stem = undouble(stem.substring(0, stem.length() - 2));
+        } else if (stem.endsWith("ly") && stem.length() > 4) {
+            stem = stem.substring(0, stem.length() - 2);
+        }
+
+        if (stem.endsWith("e") && stem.length() > 3) {
+            stem = stem.substring(0, stem.length() - 1);
+        }
+        return stem;
+    }
+
+    /**
+     * "stopp" -> "stop", but keep "fall", "miss", "buzz"
+     */
+    private static String undouble(String stem) {
+        int length = stem.length();
+        if (length >= 2) {
+            char last = stem.charAt(length - 1);
+            if (last == stem.charAt(length - 2) && "aeioulsz".indexOf(last) < 0) {
+                return stem.substring(0, length - 1);
+            }
+        }
+        return stem;
+    }
+}
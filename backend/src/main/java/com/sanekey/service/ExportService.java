@@ -0,0 +1,325 @@
+package com.sanekey.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sanekey.exception.CustomExceptionHandler.BusinessException;
+import com.sanekey.model.Payment;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Streams whole tables to a client in constant memory. Rows are read in
+ * MySQL's row-streaming mode (a forward-only, read-only statement with fetch
+ * size Integer.MIN_VALUE) on the export's own connection and written to the
+ * output as they arrive. Rows come out in id order, so a client whose
+ * connection dropped resumes by passing the id of the last complete row it
+ * received as cursor.
+ */
+@Service
+public class ExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    /**
+     * An exportable table: its columns and how the status filter maps onto it
+     */
+    public enum Dataset {
+        PAYMENTS("payments",
+                new String[] {"id", "user_id", "amount", "currency", "status", "method", "transaction_id",
+                        "stripe_payment_intent_id", "paypal_order_id", "description",
+                        "created_at", "updated_at", "completed_at"},
+                "status = ?",
+                status -> Payment.PaymentStatus.valueOf(status).name()),
+        USERS("users",
+                new String[] {"id", "email", "full_name", "role", "is_active", "created_at", "updated_at"},
+                "is_active = ?",
+                status -> switch (status) {
+                    case "ACTIVE" -> Boolean.TRUE;
+                    case "INACTIVE" -> Boolean.FALSE;
+                    default -> throw new IllegalArgumentException("User status must be ACTIVE or INACTIVE");
+                }),
+        REVIEWS("product_reviews",
+                new String[] {"id", "user_id", "product_id", "rating", "title", "comment", "is_verified",
+                        "helpful_count", "created_at", "updated_at"},
+                "is_verified = ?",
+                status -> switch (status) {
+                    case "VERIFIED" -> Boolean.TRUE;
+                    case "UNVERIFIED" -> Boolean.FALSE;
+                    default -> throw new IllegalArgumentException("Review status must be VERIFIED or UNVERIFIED");
+                });
+
+        private final String table;
+        private final String[] columns;
+        private final String statusPredicate;
+        private final Function<String, Object> statusValue;
+
+        Dataset(String table, String[] columns, String statusPredicate, Function<String, Object> statusValue) {
+            this.table = table;
+            this.columns = columns;
+            this.statusPredicate = statusPredicate;
+            this.statusValue = statusValue;
+        }
+
+        public String fileName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${sanekey.app.export.flushEveryRows:1000}")
+    private int flushEveryRows;
+
+    // Each running export holds a pooled connection for its whole duration
+    @Value("${sanekey.app.export.maxConcurrent:2}")
+    private int maxConcurrent;
+
+    private Semaphore running;
+
+    @PostConstruct
+    public void init() {
+        running = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Reserve an export slot; fails with 429 when all are taken. The caller
+     * must release it after export returns.
+     */
+    public void acquireSlot() {
+        if (!running.tryAcquire()) {
+            throw new BusinessException("Too many exports running, please retry shortly",
+                    HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests");
+        }
+    }
+
+    public void releaseSlot() {
+        running.release();
+    }
+
+    /**
+     * Normalize the status filter before any output is written, so a bad
+     * value is still reported as a proper 400
+     */
+    public Object statusFilter(Dataset dataset, String status) {
+        if (status == null || status.isBlank()) {
+            return null;
+        }
+        return dataset.statusValue.apply(status.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Write every matching row with id > afterId; returns the number of rows
+     */
+    public long export(Dataset dataset, Format format, LocalDateTime from, LocalDateTime to, Object status,
+                       Long afterId, OutputStream out) throws IOException, SQLException {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT ").append(String.join(", ", dataset.columns))
+                .append(" FROM ").append(dataset.table).append(" WHERE id > ?");
+        params.add(afterId != null ? afterId : 0L);
+        if (from != null) {
+            sql.append(" AND created_at >= ?");
+            params.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND created_at < ?");
+            params.add(Timestamp.valueOf(to));
+        }
+        if (status != null) {
+            sql.append(" AND ").append(dataset.statusPredicate);
+            params.add(status);
+        }
+        sql.append(" ORDER BY id");
+
+        long rows = 0;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql.toString(),
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            connection.setReadOnly(true);
+            // Connector/J streams the result row by row instead of buffering it whole;
+            // the connection can run nothing else until the result set is closed
+            statement.setFetchSize(Integer.MIN_VALUE);
+            for (int i = 0; i < params.size(); i++) {
+                statement.setObject(i + 1, params.get(i));
+            }
+
+            try (ResultSet resultSet = statement.executeQuery();
+                 RowWriter writer = format == Format.CSV ? new CsvRowWriter(out) : new NdjsonRowWriter(out)) {
+                writer.header(dataset.columns);
+                Object[] values = new Object[dataset.columns.length];
+                while (resultSet.next()) {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = value(resultSet.getObject(i + 1));
+                    }
+                    writer.row(dataset.columns, values);
+                    if (++rows % flushEveryRows == 0) {
+                        writer.flush();
+                    }
+                }
+            }
+        }
+        logger.info("Exported {} {} rows as {}", rows, dataset.fileName(), format);
+        return rows;
+    }
+
+    private static Object value(Object raw) {
+        if (raw instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toString();
+        }
+        if (raw instanceof LocalDateTime dateTime) {
+            return dateTime.toString();
+        }
+        return raw;
+    }
+
+    private interface RowWriter extends AutoCloseable {
+        void header(String[] columns) throws IOException;
+
+        void row(String[] columns, Object[] values) throws IOException;
+
+        void flush() throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * One JSON object per line, written with the streaming generator
+     */
+    private final class NdjsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(OutputStream out) throws IOException {
+            generator = objectMapper.getFactory().createGenerator(out);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void header(String[] columns) {
+        }
+
+        @Override
+        public void row(String[] columns, Object[] values) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < columns.length; i++) {
+                Object value = values[i];
+                if (value == null) {
+                    generator.writeNullField(columns[i]);
+                } else if (value instanceof BigDecimal decimal) {
+                    generator.writeNumberField(columns[i], decimal);
+                } else if (value instanceof Number number) {
+                    generator.writeNumberField(columns[i], number.longValue());
+                } else if (value instanceof Boolean bool) {
+                    generator.writeBooleanField(columns[i], bool);
+                } else {
+                    generator.writeStringField(columns[i], value.toString());
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    /**
+     * RFC 4180 CSV with a header row
+     */
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        CsvRowWriter(OutputStream out) {
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void header(String[] columns) throws IOException {
+            writer.write(String.join(",", columns));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void row(String[] columns, Object[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                Object value = values[i];
+                if (value == null) {
+                    continue;
+                }
+                if (value instanceof String text) {
+                    writer.write(escape(text));
+                } else if (value instanceof BigDecimal decimal) {
+                    writer.write(decimal.toPlainString());
+                } else {
+                    writer.write(value.toString());
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        private static String escape(String text) {
+            // Keep spreadsheets from evaluating user-supplied text as a formula
+            if (!text.isEmpty() && "=+-@\t\r".indexOf(text.charAt(0)) >= 0) {
+                text = "'" + text;
+            }
+            if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                return '"' + text.replace("\"", "\"\"") + '"';
+            }
+            return text;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Flush only: the response stream is closed by its owner
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.sanekey.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sanekey.repository.ProductReviewRepository;
+import com.sanekey.repository.ReviewHelpfulVoteRepository;
+import com.sanekey.util.CompactIdSet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helpful votes without a row lock per vote. Each review's voters are kept
+ * in a compact in-memory set that rejects repeat votes up front; accepted
+ * votes collect in striped buffers and are flushed periodically, one
+ * INSERT IGNORE of the vote rows per review plus one JDBC batch of
+ * helpful_count = helpful_count + ? updates.
+ *
+ * The review_helpful_votes primary key stays the source of truth: a repeat
+ * vote that slipped past the set (another node, or a set reloaded before a
+ * flush) inserts nothing and adds nothing to the count. Votes accepted since
+ * the last flush are lost if the process dies.
+ */
+@Service
+public class HelpfulVoteService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HelpfulVoteService.class);
+
+    private static final int INSERT_CHUNK = 500;
+
+    @Autowired
+    private ReviewHelpfulVoteRepository voteRepository;
+
+    @Autowired
+    private ProductReviewRepository reviewRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${sanekey.app.helpfulVotes.stripes:16}")
+    private int stripeCount;
+
+    @Value("${sanekey.app.helpfulVotes.voterCacheSize:10000}")
+    private long voterCacheSize;
+
+    @Value("${sanekey.app.helpfulVotes.voterCacheIdleMinutes:30}")
+    private long voterCacheIdleMinutes;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Cache<Long, CompactIdSet> voters;
+
+    private Stripe[] stripes;
+
+    // Votes taken out of the stripes by a flush that has not committed yet
+    private volatile Map<Long, List<Long>> inFlight = Collections.emptyMap();
+
+    private Counter acceptedCounter;
+    private Counter duplicateCounter;
+
+    /**
+     * Pending votes by review; each stripe is guarded by its own monitor
+     */
+    private static final class Stripe {
+        private Map<Long, List<Long>> votes = new HashMap<>();
+    }
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        voters = Caffeine.newBuilder()
+                .maximumSize(voterCacheSize)
+                .expireAfterAccess(Duration.ofMinutes(voterCacheIdleMinutes))
+                .build();
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        acceptedCounter = Counter.builder("sanekey.reviews.helpful.votes").tag("outcome", "accepted")
+                .register(meterRegistry);
+        duplicateCounter = Counter.builder("sanekey.reviews.helpful.votes").tag("outcome", "duplicate")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Record a user's helpful vote; returns the review's helpful count
+     * including votes not flushed yet
+     */
+    public int vote(Long reviewId, Long userId) {
+        CompactIdSet reviewVoters = voters.get(reviewId, this::loadVoters);
+        if (!reviewVoters.add(userId)) {
+            duplicateCounter.increment();
+            throw new RuntimeException("You have already marked this review as helpful");
+        }
+
+        // Threads spread over the stripes, so votes on one hot review rarely share a lock
+        Stripe stripe = stripes[(int) (Thread.currentThread().getId() % stripes.length)];
+        synchronized (stripe) {
+            stripe.votes.computeIfAbsent(reviewId, id -> new ArrayList<>()).add(userId);
+        }
+        acceptedCounter.increment();
+
+        int persisted = reviewRepository.findHelpfulCount(reviewId).orElse(0);
+        return persisted + pendingCount(reviewId);
+    }
+
+    private CompactIdSet loadVoters(Long reviewId) {
+        if (reviewRepository.findHelpfulCount(reviewId).isEmpty()) {
+            throw new RuntimeException("Review not found");
+        }
+        CompactIdSet set = new CompactIdSet();
+        for (Long userId : voteRepository.findVoterIds(reviewId)) {
+            set.add(userId);
+        }
+        return set;
+    }
+
+    private int pendingCount(Long reviewId) {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                List<Long> pending = stripe.votes.get(reviewId);
+                count += pending != null ? pending.size() : 0;
+            }
+        }
+        List<Long> flushing = inFlight.get(reviewId);
+        return count + (flushing != null ? flushing.size() : 0);
+    }
+
+    /**
+     * Drop a deleted review's votes; runs in the caller's transaction
+     */
+    public void forgetReview(Long reviewId) {
+        voteRepository.deleteByReviewId(reviewId);
+        voters.invalidate(reviewId);
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.votes.remove(reviewId);
+            }
+        }
+    }
+
+    /**
+     * Write pending votes and their count increments in one transaction
+     */
+    @Scheduled(fixedDelayString = "${sanekey.app.helpfulVotes.flushMs:1000}")
+    public synchronized void flush() {
+        Map<Long, List<Long>> batch = new HashMap<>();
+        for (Stripe stripe : stripes) {
+            Map<Long, List<Long>> taken;
+            synchronized (stripe) {
+                if (stripe.votes.isEmpty()) {
+                    continue;
+                }
+                taken = stripe.votes;
+                stripe.votes = new HashMap<>();
+            }
+            taken.forEach((reviewId, userIds) ->
+                    batch.computeIfAbsent(reviewId, id -> new ArrayList<>()).addAll(userIds));
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        inFlight = batch;
+        try {
+            int votes = transactionTemplate.execute(status -> write(batch));
+            logger.debug("Flushed {} helpful votes for {} reviews", votes, batch.size());
+        } catch (RuntimeException e) {
+            logger.error("Failed to flush helpful votes for {} reviews, retrying next run: {}",
+                    batch.size(), e.getMessage());
+            Stripe stripe = stripes[0];
+            synchronized (stripe) {
+                batch.forEach((reviewId, userIds) ->
+                        stripe.votes.computeIfAbsent(reviewId, id -> new ArrayList<>()).addAll(userIds));
+            }
+        } finally {
+            inFlight = Collections.emptyMap();
+        }
+    }
+
+    private int write(Map<Long, List<Long>> batch) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> increments = new ArrayList<>();
+        int total = 0;
+        for (Map.Entry<Long, List<Long>> entry : batch.entrySet()) {
+            List<Long> userIds = entry.getValue();
+            int inserted = 0;
+            for (int from = 0; from < userIds.size(); from += INSERT_CHUNK) {
+                inserted += insertVotes(entry.getKey(), userIds.subList(from,
+                        Math.min(from + INSERT_CHUNK, userIds.size())), now);
+            }
+            // Only votes that were new in the table count
+            if (inserted > 0) {
+                increments.add(new Object[] {inserted, entry.getKey()});
+                total += inserted;
+            }
+        }
+        if (!increments.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE product_reviews SET helpful_count = helpful_count + ? WHERE id = ?",
+                    increments);
+        }
+        return total;
+    }
+
+    private int insertVotes(Long reviewId, List<Long> userIds, Timestamp now) {
+        StringBuilder sql = new StringBuilder("INSERT IGNORE INTO review_helpful_votes (review_id, user_id, created_at) VALUES ");
+        Object[] args = new Object[userIds.size() * 3];
+        for (int i = 0; i < userIds.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+            args[i * 3] = reviewId;
+            args[i * 3 + 1] = userIds.get(i);
+            args[i * 3 + 2] = now;
+        }
+        return jdbcTemplate.update(sql.toString(), args);
+    }
+}
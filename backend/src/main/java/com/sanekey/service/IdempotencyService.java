@@ -0,0 +1,314 @@
+package com.sanekey.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sanekey.model.IdempotencyRecord;
+import com.sanekey.repository.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Executes a request at most once per (user, Idempotency-Key). Responses are
+ * stored in idempotency_keys behind a Caffeine tier and replayed verbatim,
+ * failures included, since a failed payment request may still have reached
+ * the gateway. Only an action that throws {@link NotExecutedException}, for
+ * a request rejected before any side effect, releases the key for a retry.
+ * Concurrent requests with the same key on this node wait for the one in
+ * flight; a request racing on another node gets 409.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${sanekey.app.idempotency.ttlHours:24}")
+    private long ttlHours;
+
+    @Value("${sanekey.app.idempotency.cacheSize:10000}")
+    private long cacheSize;
+
+    @Value("${sanekey.app.idempotency.cacheTtlSeconds:600}")
+    private long cacheTtlSeconds;
+
+    @Value("${sanekey.app.idempotency.waitMs:30000}")
+    private long waitMs;
+
+    // A claim older than this is assumed to belong to a request that died
+    @Value("${sanekey.app.idempotency.staleClaimMs:120000}")
+    private long staleClaimMs;
+
+    private Cache<String, StoredResponse> responses;
+
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Thrown by an action that failed before doing anything a retry could
+     * duplicate, such as a validation error or a gateway call rejected by
+     * its bulkhead or breaker; the response is returned and not stored
+     */
+    public static class NotExecutedException extends RuntimeException {
+        private final ResponseEntity<?> response;
+
+        public NotExecutedException(ResponseEntity<?> response) {
+            super("Request not executed: " + response.getStatusCode());
+            this.response = response;
+        }
+
+        public ResponseEntity<?> getResponse() {
+            return response;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        responses = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, "idempotency.responses");
+    }
+
+    /**
+     * Run the action unless this key already has a response; without a key
+     * the action simply runs
+     */
+    public ResponseEntity<?> execute(Long userId, String key, String requestHash, Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            try {
+                return action.get();
+            } catch (NotExecutedException e) {
+                return e.getResponse();
+            }
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return error(HttpStatus.BAD_REQUEST, HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String cacheKey = userId + ":" + key;
+        StoredResponse cached = responses.getIfPresent(cacheKey);
+        if (cached != null) {
+            return replay(cached, requestHash);
+        }
+
+        CompletableFuture<StoredResponse> ours = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(cacheKey, ours);
+        if (running != null) {
+            return await(running, requestHash);
+        }
+
+        try {
+            return lead(userId, key, cacheKey, requestHash, action, ours);
+        } catch (RuntimeException e) {
+            ours.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, ours);
+        }
+    }
+
+    /**
+     * SHA-256 of the request fields that must match for a replay
+     */
+    public static String fingerprint(Object... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : parts) {
+                // 10.0 and 10.00 are the same amount
+                String value = part instanceof BigDecimal amount
+                        ? amount.stripTrailingZeros().toPlainString()
+                        : String.valueOf(part);
+                digest.update(value.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Key to send to the payment gateway for a user's Idempotency-Key, so a
+     * repeated call collapses onto one intent or order there as well; hashed
+     * to keep keys of different users apart and within the gateways' limits
+     */
+    public static String gatewayKey(Long userId, String key) {
+        if (key == null || key.isBlank()) {
+            return null;
+        }
+        return fingerprint("gateway", userId, key);
+    }
+
+    /**
+     * Purge expired keys
+     */
+    @Scheduled(fixedDelayString = "${sanekey.app.idempotency.purgeMs:3600000}")
+    public void purgeExpired() {
+        int deleted = idempotencyRecordRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            logger.info("Purged {} expired idempotency keys", deleted);
+        }
+    }
+
+    private ResponseEntity<?> lead(Long userId, String key, String cacheKey, String requestHash,
+                                   Supplier<ResponseEntity<?>> action, CompletableFuture<StoredResponse> ours) {
+        // Second pass only after clearing a stale claim or losing a row to a concurrent purge
+        for (int attempt = 0; attempt < 2; attempt++) {
+            LocalDateTime now = LocalDateTime.now();
+            if (idempotencyRecordRepository.claim(userId, key, requestHash, now, now.plusHours(ttlHours)) > 0) {
+                return run(userId, key, cacheKey, requestHash, action, ours);
+            }
+
+            Optional<IdempotencyRecord> existing = idempotencyRecordRepository.findByUserIdAndIdempotencyKey(userId, key);
+            if (existing.isEmpty()) {
+                continue;
+            }
+
+            IdempotencyRecord record = existing.get();
+            if (record.isCompleted()) {
+                StoredResponse stored = new StoredResponse(record.getRequestHash(),
+                        record.getResponseStatus(), record.getResponseBody());
+                responses.put(cacheKey, stored);
+                ours.complete(stored);
+                return replay(stored, requestHash);
+            }
+
+            if (idempotencyRecordRepository.releaseStale(userId, key, now.minus(Duration.ofMillis(staleClaimMs))) == 0) {
+                break;
+            }
+        }
+
+        meterRegistry.counter("sanekey.idempotency.requests", "outcome", "conflict").increment();
+        ours.complete(null);
+        return error(HttpStatus.CONFLICT, "A request with this " + HEADER + " is already in progress");
+    }
+
+    private ResponseEntity<?> run(Long userId, String key, String cacheKey, String requestHash,
+                                  Supplier<ResponseEntity<?>> action, CompletableFuture<StoredResponse> ours) {
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (NotExecutedException e) {
+            idempotencyRecordRepository.release(userId, key);
+            ours.complete(null);
+            return e.getResponse();
+        } catch (RuntimeException e) {
+            // The action may have got as far as the gateway, so a retry must not run it again
+            store(userId, key, cacheKey, new StoredResponse(requestHash, HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                    serialize(key, error(HttpStatus.INTERNAL_SERVER_ERROR, "Request failed").getBody())));
+            throw e;
+        }
+        meterRegistry.counter("sanekey.idempotency.requests", "outcome", "executed").increment();
+
+        StoredResponse stored = new StoredResponse(requestHash, response.getStatusCode().value(),
+                serialize(key, response.getBody()));
+        store(userId, key, cacheKey, stored);
+        ours.complete(stored);
+        return response;
+    }
+
+    private void store(Long userId, String key, String cacheKey, StoredResponse stored) {
+        idempotencyRecordRepository.complete(userId, key, stored.status, stored.body);
+        responses.put(cacheKey, stored);
+    }
+
+    private String serialize(String key, Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            logger.warn("Could not serialize response for idempotency key {}: {}", key, e.getMessage());
+            return "null";
+        }
+    }
+
+    private ResponseEntity<?> await(CompletableFuture<StoredResponse> running, String requestHash) {
+        StoredResponse stored;
+        try {
+            stored = running.get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stored = null;
+        } catch (Exception e) {
+            stored = null;
+        }
+
+        if (stored == null) {
+            meterRegistry.counter("sanekey.idempotency.requests", "outcome", "conflict").increment();
+            return error(HttpStatus.CONFLICT, "A request with this " + HEADER + " is already in progress");
+        }
+        return replay(stored, requestHash);
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored, String requestHash) {
+        if (!stored.requestHash.equals(requestHash)) {
+            return error(HttpStatus.UNPROCESSABLE_ENTITY, HEADER + " was already used for a different request");
+        }
+        meterRegistry.counter("sanekey.idempotency.requests", "outcome", "replayed").increment();
+        return ResponseEntity.status(stored.status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(REPLAYED_HEADER, "true")
+                .body(stored.body);
+    }
+
+    private static ResponseEntity<?> error(HttpStatus status, String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("success", false);
+        error.put("message", message);
+        error.put("timestamp", LocalDateTime.now());
+        return ResponseEntity.status(status).body(error);
+    }
+
+    private static final class StoredResponse {
+        private final String requestHash;
+        private final int status;
+        private final String body;
+
+        StoredResponse(String requestHash, int status, String body) {
+            this.requestHash = requestHash;
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
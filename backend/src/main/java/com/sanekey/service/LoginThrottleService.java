@@ -0,0 +1,235 @@
+package com.sanekey.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process sign-in throttling keyed by client IP and by account email.
+ * Failed password checks are counted in sliding windows held in lock-striped
+ * LRU maps, so memory stays bounded and idle keys are evicted. Each failure
+ * that reaches a key's budget also locks it out, for a backoff that doubles
+ * with every further such failure. Rejected attempts are not counted, so a
+ * client that waits the advertised Retry-After is let through.
+ */
+@Service
+public class LoginThrottleService {
+
+    private static final int STRIPES = 64;
+
+    // Cap the backoff exponent so the shift cannot overflow
+    private static final int MAX_BACKOFF_EXPONENT = 16;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${sanekey.security.login.ip.maxAttempts:20}")
+    private int ipMaxAttempts;
+
+    @Value("${sanekey.security.login.ip.windowMs:60000}")
+    private long ipWindowMs;
+
+    @Value("${sanekey.security.login.account.maxAttempts:5}")
+    private int accountMaxAttempts;
+
+    @Value("${sanekey.security.login.account.windowMs:300000}")
+    private long accountWindowMs;
+
+    @Value("${sanekey.security.login.backoffMs:1000}")
+    private long backoffMs;
+
+    @Value("${sanekey.security.login.maxBackoffMs:900000}")
+    private long maxBackoffMs;
+
+    @Value("${sanekey.security.login.maxKeys:100000}")
+    private int maxKeys;
+
+    private Stripe[] stripes;
+
+    private Counter allowedCounter;
+
+    private Counter throttledCounter;
+
+    @PostConstruct
+    public void init() {
+        stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(Math.max(1, maxKeys / STRIPES));
+        }
+        allowedCounter = Counter.builder("sanekey.login.attempts")
+                .description("Sign-in attempts checked by the login throttle")
+                .tag("outcome", "allowed")
+                .register(meterRegistry);
+        throttledCounter = Counter.builder("sanekey.login.attempts")
+                .description("Sign-in attempts checked by the login throttle")
+                .tag("outcome", "throttled")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Check a sign-in attempt before any password verification.
+     * Returns 0 when allowed, otherwise the number of seconds until both
+     * the lockout has ended and the failure counts have decayed below the
+     * budget. Nothing is recorded.
+     */
+    public long checkAttempt(String clientIp, String email) {
+        long now = System.currentTimeMillis();
+        long retryAfterMs = Math.max(
+                retryAfter(ipKey(clientIp), ipMaxAttempts, ipWindowMs, now),
+                retryAfter(accountKey(email), accountMaxAttempts, accountWindowMs, now));
+
+        if (retryAfterMs > 0) {
+            throttledCounter.increment();
+            return Math.max(1, (retryAfterMs + 999) / 1000);
+        }
+
+        allowedCounter.increment();
+        return 0;
+    }
+
+    /**
+     * Count a failed password check against both the client IP and the account
+     */
+    public void recordFailure(String clientIp, String email) {
+        long now = System.currentTimeMillis();
+        record(ipKey(clientIp), ipMaxAttempts, ipWindowMs, now);
+        record(accountKey(email), accountMaxAttempts, accountWindowMs, now);
+    }
+
+    /**
+     * Clear the account's failure history after a successful sign-in
+     */
+    public void recordSuccess(String email) {
+        String key = accountKey(email);
+        Stripe stripe = stripeFor(key);
+        stripe.lock.lock();
+        try {
+            stripe.windows.remove(key);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private long retryAfter(String key, int maxAttempts, long windowMs, long now) {
+        Stripe stripe = stripeFor(key);
+        stripe.lock.lock();
+        try {
+            Window window = stripe.windows.get(key);
+            if (window == null) {
+                return 0;
+            }
+            return Math.max(0, Math.max(window.lockedUntil, window.allowedAt(maxAttempts, windowMs, now)) - now);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private void record(String key, int maxAttempts, long windowMs, long now) {
+        Stripe stripe = stripeFor(key);
+        stripe.lock.lock();
+        try {
+            Window window = stripe.windows.computeIfAbsent(key, k -> new Window(now));
+            window.increment(windowMs, now);
+            if (window.estimate(windowMs, now) >= maxAttempts) {
+                int exponent = Math.min(MAX_BACKOFF_EXPONENT, window.lockouts++);
+                window.lockedUntil = now + Math.min(maxBackoffMs, backoffMs << exponent);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private Stripe stripeFor(String key) {
+        return stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    private static String ipKey(String clientIp) {
+        return "ip:" + (clientIp != null ? clientIp : "unknown");
+    }
+
+    private static String accountKey(String email) {
+        return "email:" + (email != null ? email.trim().toLowerCase(Locale.ROOT) : "");
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, Window> windows;
+
+        Stripe(int capacity) {
+            this.windows = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Window> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+    }
+
+    /**
+     * Sliding window approximated from the current and previous fixed
+     * windows, with the key's lockout state
+     */
+    private static final class Window {
+        private long windowStart;
+        private int current;
+        private int previous;
+        // Failures that reached the budget, forgotten after two quiet windows
+        private int lockouts;
+        private long lockedUntil;
+
+        Window(long now) {
+            this.windowStart = now;
+        }
+
+        void increment(long windowMs, long now) {
+            roll(windowMs, now);
+            current++;
+        }
+
+        double estimate(long windowMs, long now) {
+            roll(windowMs, now);
+            double previousWeight = 1.0 - (double) (now - windowStart) / windowMs;
+            return current + previous * previousWeight;
+        }
+
+        /**
+         * Earliest time, with no further failures, at which the estimate is
+         * below maxAttempts; now if it already is
+         */
+        long allowedAt(int maxAttempts, long windowMs, long now) {
+            if (estimate(windowMs, now) < maxAttempts) {
+                return now;
+            }
+            if (current < maxAttempts) {
+                // The previous window's share decays below the headroom left in this one
+                double fraction = 1.0 - (double) (maxAttempts - current) / previous;
+                return windowStart + (long) Math.ceil(windowMs * fraction) + 1;
+            }
+            // After the next roll this window's count becomes the decaying share
+            double fraction = 1.0 - (double) maxAttempts / current;
+            return windowStart + windowMs + (long) Math.ceil(windowMs * fraction) + 1;
+        }
+
+        private void roll(long windowMs, long now) {
+            long elapsed = now - windowStart;
+            if (elapsed >= 2 * windowMs) {
+                previous = 0;
+                current = 0;
+                lockouts = 0;
+                windowStart = now;
+            } else if (elapsed >= windowMs) {
+                previous = current;
+                current = 0;
+                windowStart += windowMs;
+            }
+        }
+    }
+}
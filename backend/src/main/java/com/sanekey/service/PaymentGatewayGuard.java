@@ -0,0 +1,195 @@
+package com.sanekey.service;
+
+import com.paypal.http.exceptions.HttpException;
+import com.sanekey.exception.CustomExceptionHandler.BusinessException;
+import com.sanekey.model.Payment;
+import com.sanekey.util.CircuitBreaker;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.ApiException;
+import com.stripe.exception.RateLimitException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Failure isolation for the payment gateway clients. Each gateway gets its
+ * own concurrency limit (bulkhead) and circuit breaker, so a slow or failing
+ * gateway can only tie up its own share of request threads. Calls beyond the
+ * limit, or made while the breaker is open, fail fast with 503. Per-call
+ * timeouts are set on the SDK clients themselves, from the same properties.
+ */
+@Service
+public class PaymentGatewayGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentGatewayGuard.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Environment environment;
+
+    private final Map<Payment.PaymentMethod, Guard> guards = new EnumMap<>(Payment.PaymentMethod.class);
+
+    /**
+     * A gateway call that may throw the SDK's checked exception
+     */
+    @FunctionalInterface
+    public interface GatewayCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (Payment.PaymentMethod gateway : Payment.PaymentMethod.values()) {
+            guards.put(gateway, new Guard(gateway));
+        }
+    }
+
+    /**
+     * Fail fast while the gateway's breaker is open, before any local work
+     * is done for a call that would be rejected anyway
+     */
+    public void checkAvailable(Payment.PaymentMethod gateway) {
+        Guard guard = guards.get(gateway);
+        if (guard.breaker.getState() == CircuitBreaker.State.OPEN) {
+            throw guard.reject("breaker_open");
+        }
+    }
+
+    /**
+     * Run a gateway call inside the gateway's bulkhead and circuit breaker
+     */
+    public <T, E extends Exception> T call(Payment.PaymentMethod gateway, String operation,
+                                           GatewayCall<T, E> call) throws E {
+        Guard guard = guards.get(gateway);
+        try {
+            if (!guard.bulkhead.tryAcquire(guard.maxWaitMs, TimeUnit.MILLISECONDS)) {
+                throw guard.reject("bulkhead_full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw guard.reject("interrupted");
+        }
+
+        try {
+            if (!guard.breaker.tryAcquire()) {
+                throw guard.reject("breaker_open");
+            }
+
+            long start = System.nanoTime();
+            String outcome = "success";
+            try {
+                T result = call.call();
+                guard.breaker.onSuccess();
+                return result;
+            } catch (Exception e) {
+                if (isGatewayFailure(e)) {
+                    outcome = "failure";
+                    guard.breaker.onFailure();
+                } else {
+                    outcome = "rejected_by_gateway";
+                    guard.breaker.onIgnored();
+                }
+                throw e;
+            } finally {
+                guard.timer(operation, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            guard.bulkhead.release();
+        }
+    }
+
+    public int connectTimeoutMs(Payment.PaymentMethod gateway) {
+        return guards.get(gateway).connectTimeoutMs;
+    }
+
+    public int readTimeoutMs(Payment.PaymentMethod gateway) {
+        return guards.get(gateway).readTimeoutMs;
+    }
+
+    /**
+     * Whether an error says the gateway is unhealthy (unreachable, timing
+     * out, 5xx or throttling) rather than that it refused this request
+     */
+    private static boolean isGatewayFailure(Exception e) {
+        if (e instanceof ApiConnectionException || e instanceof ApiException || e instanceof RateLimitException) {
+            return true;
+        }
+        if (e instanceof HttpException httpException) {
+            return httpException.statusCode() >= 500 || httpException.statusCode() == 429;
+        }
+        if (e instanceof IOException || e instanceof RuntimeException) {
+            return true;
+        }
+        return false;
+    }
+
+    private final class Guard {
+        private final Payment.PaymentMethod gateway;
+        private final String tag;
+        private final int maxConcurrent;
+        private final long maxWaitMs;
+        private final int connectTimeoutMs;
+        private final int readTimeoutMs;
+        private final Semaphore bulkhead;
+        private final CircuitBreaker breaker;
+
+        Guard(Payment.PaymentMethod gateway) {
+            this.gateway = gateway;
+            this.tag = gateway.name().toLowerCase();
+            String prefix = "sanekey.app.gateway." + tag + ".";
+            maxConcurrent = environment.getProperty(prefix + "maxConcurrent", Integer.class, 20);
+            maxWaitMs = environment.getProperty(prefix + "maxWaitMs", Long.class, 50L);
+            connectTimeoutMs = environment.getProperty(prefix + "connectTimeoutMs", Integer.class, 3000);
+            readTimeoutMs = environment.getProperty(prefix + "readTimeoutMs", Integer.class, 10000);
+            bulkhead = new Semaphore(maxConcurrent);
+            breaker = new CircuitBreaker(
+                    environment.getProperty(prefix + "breaker.failureRate", Double.class, 0.5),
+                    environment.getProperty(prefix + "breaker.windowSize", Integer.class, 50),
+                    environment.getProperty(prefix + "breaker.minimumCalls", Integer.class, 20),
+                    environment.getProperty(prefix + "breaker.openMs", Long.class, 30000L),
+                    environment.getProperty(prefix + "breaker.halfOpenProbes", Integer.class, 3));
+
+            Gauge.builder("sanekey.gateway.breaker.state", breaker, cb -> cb.getState().ordinal())
+                    .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                    .tag("gateway", tag)
+                    .register(meterRegistry);
+            Gauge.builder("sanekey.gateway.inflight", bulkhead, b -> maxConcurrent - b.availablePermits())
+                    .description("Gateway calls in flight")
+                    .tag("gateway", tag)
+                    .register(meterRegistry);
+        }
+
+        Timer timer(String operation, String outcome) {
+            return Timer.builder("sanekey.gateway.calls")
+                    .description("Payment gateway call latency")
+                    .tags("gateway", tag, "operation", operation, "outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+
+        BusinessException reject(String reason) {
+            meterRegistry.counter("sanekey.gateway.rejected", "gateway", tag, "reason", reason).increment();
+            long retryAfterMs = breaker.retryAfterMillis();
+            logger.debug("{} call rejected: {}", gateway, reason);
+            String message = "breaker_open".equals(reason)
+                    ? gateway + " is temporarily unavailable, retry in " + Math.max(1, retryAfterMs / 1000) + "s"
+                    : gateway + " is busy, please retry shortly";
+            return new BusinessException(message, HttpStatus.SERVICE_UNAVAILABLE, "Gateway Unavailable");
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package com.sanekey.service;
+
+import com.sanekey.journal.JournalPosition;
+import com.sanekey.journal.JournalSegment;
+import com.sanekey.journal.PaymentJournalEntry;
+import com.sanekey.model.Payment;
+import com.sanekey.model.PaymentAuditEvent;
+import com.sanekey.repository.PaymentAuditEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of payment events, kept in memory-mapped segment files
+ * on local disk and shipped to the payment_audit_events table in the
+ * background, so payment paths never wait on an audit insert.
+ *
+ * Callers enqueue events; a single writer thread drains the queue in
+ * batches, appends each batch to the active segment and flushes it with one
+ * force (group commit). Segments roll at a fixed size. On startup the last
+ * segment is scanned and anything after its last intact record is cut off,
+ * so a crash mid-batch loses only events that were never acknowledged.
+ */
+@Service
+public class PaymentJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentJournal.class);
+
+    private static final String CHECKPOINT_FILE = "shipped.checkpoint";
+
+    private static final int MAX_DETAIL_CHARS = 512;
+
+    @Autowired
+    private PaymentAuditEventRepository auditEventRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${sanekey.app.journal.directory:./data/payment-journal}")
+    private String directory;
+
+    // Journal node name; empty uses the host name
+    @Value("${sanekey.app.journal.node:}")
+    private String node;
+
+    @Value("${sanekey.app.journal.segmentBytes:67108864}")
+    private int segmentBytes;
+
+    @Value("${sanekey.app.journal.queueCapacity:65536}")
+    private int queueCapacity;
+
+    @Value("${sanekey.app.journal.maxBatch:512}")
+    private int maxBatch;
+
+    // How long a caller may block on a full queue before the event is dropped
+    @Value("${sanekey.app.journal.offerTimeoutMs:10}")
+    private long offerTimeoutMs;
+
+    // How long a payment path waits for its event to be flushed; 0 does not wait
+    @Value("${sanekey.app.journal.awaitFlushMs:0}")
+    private long awaitFlushMs;
+
+    @Value("${sanekey.app.journal.retainShippedSegments:2}")
+    private int retainShippedSegments;
+
+    private Path root;
+
+    private BlockingQueue<PendingEvent> queue;
+
+    private final ConcurrentSkipListMap<Long, JournalSegment> segments = new ConcurrentSkipListMap<>();
+
+    // Writer thread state
+    private JournalSegment active;
+    private long nextSequence;
+    private Thread writer;
+    private volatile boolean running;
+
+    // Everything before this point is flushed and may be read
+    private volatile JournalPosition committed;
+
+    private volatile JournalPosition shipped;
+
+    private Counter appendedCounter;
+    private Counter droppedCounter;
+    private Counter shippedCounter;
+
+    private record PendingEvent(long paymentId, long occurredAtMillis, PaymentAuditEvent.EventType type,
+                                Payment.PaymentStatus fromStatus, Payment.PaymentStatus toStatus,
+                                String detail, CompletableFuture<Long> flushed) {
+    }
+
+    /**
+     * Entries read from the journal and the position after the last of them
+     */
+    public record Batch(List<PaymentJournalEntry> entries, JournalPosition next) {
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (node == null || node.isEmpty()) {
+            node = hostName();
+        }
+        root = Paths.get(directory).toAbsolutePath();
+        Files.createDirectories(root);
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(root)) {
+            files = listing.filter(JournalSegment::isSegmentFile)
+                    .sorted(Comparator.comparingLong(JournalSegment::firstSequenceOf))
+                    .toList();
+        }
+        for (int i = 0; i < files.size(); i++) {
+            // Only the last segment can hold a torn batch; earlier ones were flushed before rolling
+            boolean last = i == files.size() - 1;
+            JournalSegment segment = JournalSegment.open(files.get(i), last);
+            segments.put(segment.getFirstSequence(), segment);
+        }
+
+        if (segments.isEmpty()) {
+            // A node that lost its journal directory must not reuse sequences already shipped
+            Long shippedMax = auditEventRepository.findMaxSequence(node);
+            nextSequence = shippedMax != null ? shippedMax + 1 : 1;
+            active = JournalSegment.create(root, nextSequence, segmentBytes);
+            segments.put(active.getFirstSequence(), active);
+        } else {
+            active = segments.lastEntry().getValue();
+            nextSequence = active.getLastSequence() + 1;
+        }
+        committed = new JournalPosition(active.getFirstSequence(), active.getPosition());
+        shipped = loadCheckpoint();
+
+        appendedCounter = Counter.builder("sanekey.journal.appended").register(meterRegistry);
+        droppedCounter = Counter.builder("sanekey.journal.dropped").register(meterRegistry);
+        shippedCounter = Counter.builder("sanekey.journal.shipped").register(meterRegistry);
+        Gauge.builder("sanekey.journal.queued", queue, BlockingQueue::size).register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::writeLoop, "payment-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        logger.info("Payment journal {} opened at {} with {} segments, next sequence {}",
+                node, root, segments.size(), nextSequence);
+    }
+
+    @PreDestroy
+    public void close() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (JournalSegment segment : segments.values()) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close journal segment {}: {}", segment.getFile(), e.getMessage());
+            }
+        }
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * Enqueue an event. The future completes with the event's sequence once
+     * it has been flushed, or exceptionally if it was dropped.
+     */
+    public CompletableFuture<Long> append(Long paymentId, PaymentAuditEvent.EventType type,
+                                          Payment.PaymentStatus fromStatus, Payment.PaymentStatus toStatus,
+                                          String detail) {
+        CompletableFuture<Long> flushed = new CompletableFuture<>();
+        if (detail != null && detail.length() > MAX_DETAIL_CHARS) {
+            detail = detail.substring(0, MAX_DETAIL_CHARS);
+        }
+        PendingEvent event = new PendingEvent(paymentId, System.currentTimeMillis(), type, fromStatus, toStatus,
+                detail, flushed);
+        boolean queued;
+        try {
+            queued = running && queue.offer(event, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            droppedCounter.increment();
+            logger.warn("Payment journal full, dropped {} event for payment {}", type, paymentId);
+            flushed.completeExceptionally(new IllegalStateException("Payment journal is full"));
+        }
+        return flushed;
+    }
+
+    /**
+     * Record an event once the current transaction commits, or right away
+     * when none is active, so rolled-back changes never reach the journal
+     */
+    public void appendAfterCommit(Long paymentId, PaymentAuditEvent.EventType type,
+                                  Payment.PaymentStatus fromStatus, Payment.PaymentStatus toStatus, String detail) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(paymentId, type, fromStatus, toStatus, detail);
+                }
+            });
+        } else {
+            record(paymentId, type, fromStatus, toStatus, detail);
+        }
+    }
+
+    private void record(Long paymentId, PaymentAuditEvent.EventType type,
+                        Payment.PaymentStatus fromStatus, Payment.PaymentStatus toStatus, String detail) {
+        CompletableFuture<Long> flushed = append(paymentId, type, fromStatus, toStatus, detail);
+        if (awaitFlushMs > 0) {
+            try {
+                flushed.get(awaitFlushMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.warn("Journal event for payment {} not flushed in time: {}", paymentId, e.getMessage());
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingEvent> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                logger.error("Payment journal failed to write {} events: {}", batch.size(), e.getMessage());
+                droppedCounter.increment(batch.size());
+                batch.forEach(event -> event.flushed().completeExceptionally(e));
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Append a batch and flush it with a single force per touched segment
+     */
+    private void writeBatch(List<PendingEvent> batch) throws IOException {
+        long[] sequences = new long[batch.size()];
+        int flushFrom = active.getPosition();
+        for (int i = 0; i < batch.size(); i++) {
+            PendingEvent event = batch.get(i);
+            PaymentJournalEntry entry = new PaymentJournalEntry(nextSequence, event.paymentId(),
+                    event.occurredAtMillis(), event.type(), event.fromStatus(), event.toStatus(), event.detail());
+            if (!active.append(entry)) {
+                active.force(flushFrom, active.getPosition());
+                active = JournalSegment.create(root, nextSequence, segmentBytes);
+                segments.put(active.getFirstSequence(), active);
+                flushFrom = 0;
+                if (!active.append(entry)) {
+                    throw new IllegalStateException("Journal entry larger than a segment");
+                }
+            }
+            sequences[i] = nextSequence++;
+        }
+        active.force(flushFrom, active.getPosition());
+        committed = new JournalPosition(active.getFirstSequence(), active.getPosition());
+
+        appendedCounter.increment(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).flushed().complete(sequences[i]);
+        }
+    }
+
+    /**
+     * Read up to max flushed entries starting at position, continuing into
+     * later segments as earlier ones are exhausted
+     */
+    public Batch read(JournalPosition position, int max) {
+        JournalPosition limit = committed;
+        List<PaymentJournalEntry> entries = new ArrayList<>();
+        long segmentKey = position.segment();
+        int offset = position.offset();
+        while (entries.size() < max) {
+            Map.Entry<Long, JournalSegment> current = segments.ceilingEntry(segmentKey);
+            if (current == null || current.getKey() > limit.segment()) {
+                break;
+            }
+            if (current.getKey() != segmentKey) {
+                // The segment the position pointed at is gone; start the next one from the top
+                segmentKey = current.getKey();
+                offset = 0;
+            }
+            boolean sealed = segmentKey < limit.segment();
+            int end = sealed ? current.getValue().getCapacity() : limit.offset();
+            offset = current.getValue().read(offset, end, max - entries.size(), null, entries);
+            if (!sealed || entries.size() >= max) {
+                break;
+            }
+            Long nextKey = segments.higherKey(segmentKey);
+            if (nextKey == null || nextKey > limit.segment()) {
+                break;
+            }
+            segmentKey = nextKey;
+            offset = 0;
+        }
+        return new Batch(entries, new JournalPosition(segmentKey, offset));
+    }
+
+    /**
+     * A payment's history, oldest first: shipped rows from the database plus
+     * any entries still waiting in the local journal
+     */
+    public List<PaymentAuditEvent> history(Long paymentId) {
+        List<PaymentAuditEvent> events = new ArrayList<>(auditEventRepository.findHistory(paymentId));
+        Set<Long> known = new HashSet<>();
+        for (PaymentAuditEvent event : events) {
+            if (node.equals(event.getJournalNode())) {
+                known.add(event.getJournalSequence());
+            }
+        }
+
+        JournalPosition limit = committed;
+        JournalPosition from = shipped;
+        List<PaymentJournalEntry> local = new ArrayList<>();
+        for (Map.Entry<Long, JournalSegment> segment : segments.tailMap(from.segment(), true).entrySet()) {
+            if (segment.getKey() > limit.segment()) {
+                break;
+            }
+            int offset = segment.getKey() == from.segment() ? from.offset() : 0;
+            int end = segment.getKey() == limit.segment() ? limit.offset() : segment.getValue().getCapacity();
+            segment.getValue().read(offset, end, Integer.MAX_VALUE, entry -> entry.paymentId() == paymentId, local);
+        }
+        for (PaymentJournalEntry entry : local) {
+            if (known.add(entry.sequence())) {
+                events.add(toEvent(entry, null));
+            }
+        }
+        events.sort(Comparator.comparing(PaymentAuditEvent::getOccurredAt)
+                .thenComparing(PaymentAuditEvent::getJournalSequence));
+        return events;
+    }
+
+    public PaymentAuditEvent toEvent(PaymentJournalEntry entry, LocalDateTime shippedAt) {
+        PaymentAuditEvent event = new PaymentAuditEvent();
+        event.setJournalNode(node);
+        event.setJournalSequence(entry.sequence());
+        event.setPaymentId(entry.paymentId());
+        event.setEventType(entry.type());
+        event.setFromStatus(entry.fromStatus());
+        event.setToStatus(entry.toStatus());
+        event.setDetail(entry.detail());
+        event.setOccurredAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.occurredAtMillis()), ZoneId.systemDefault()));
+        event.setShippedAt(shippedAt);
+        return event;
+    }
+
+    public JournalPosition getShippedPosition() {
+        return shipped;
+    }
+
+    /**
+     * Persist the shipping checkpoint and drop segments that are fully
+     * shipped, keeping the most recent few for local inspection
+     */
+    public void markShipped(JournalPosition position, int count) throws IOException {
+        Path temp = root.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.writeString(temp, position.segment() + " " + position.offset(), StandardCharsets.US_ASCII);
+        Files.move(temp, root.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        shipped = position;
+        shippedCounter.increment(count);
+
+        List<Long> fullyShipped = new ArrayList<>(segments.headMap(position.segment(), false).keySet());
+        for (int i = 0; i < fullyShipped.size() - retainShippedSegments; i++) {
+            JournalSegment segment = segments.remove(fullyShipped.get(i));
+            segment.delete();
+            logger.debug("Deleted shipped journal segment {}", segment.getFile());
+        }
+    }
+
+    private JournalPosition loadCheckpoint() throws IOException {
+        Path file = root.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return new JournalPosition(segments.firstKey(), 0);
+        }
+        String[] parts = Files.readString(file, StandardCharsets.US_ASCII).trim().split(" ");
+        JournalPosition position = new JournalPosition(Long.parseLong(parts[0]), Integer.parseInt(parts[1]));
+        // A checkpoint past the recovered end points into a cut-off tail
+        return committed.isBefore(position) ? committed : position;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            logger.warn("Host name unavailable, using journal node name 'local'");
+            return "local";
+        }
+    }
+}
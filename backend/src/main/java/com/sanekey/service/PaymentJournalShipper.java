@@ -0,0 +1,87 @@
+package com.sanekey.service;
+
+import com.sanekey.journal.JournalPosition;
+import com.sanekey.journal.PaymentJournalEntry;
+import com.sanekey.model.PaymentAuditEvent;
+import com.sanekey.repository.PaymentAuditEventRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the local payment journal into payment_audit_events. Each batch is
+ * inserted with one multi-row INSERT IGNORE and the checkpoint only moves
+ * after it commits; a crash in between ships the batch again, and the
+ * (node, sequence) key makes the repeat a no-op.
+ */
+@Service
+public class PaymentJournalShipper {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentJournalShipper.class);
+
+    @Autowired
+    private PaymentJournal journal;
+
+    @Autowired
+    private PaymentAuditEventRepository auditEventRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${sanekey.app.journal.shipBatch:500}")
+    private int shipBatch;
+
+    // Upper bound on batches per run, so a large backlog does not pin the scheduler thread
+    @Value("${sanekey.app.journal.maxBatchesPerRun:100}")
+    private int maxBatchesPerRun;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${sanekey.app.journal.shipMs:1000}")
+    public void ship() {
+        int shipped = 0;
+        try {
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                JournalPosition from = journal.getShippedPosition();
+                PaymentJournal.Batch batch = journal.read(from, shipBatch);
+                if (batch.entries().isEmpty()) {
+                    if (from.isBefore(batch.next())) {
+                        // Moved past an exhausted segment
+                        journal.markShipped(batch.next(), 0);
+                    }
+                    break;
+                }
+
+                LocalDateTime now = LocalDateTime.now();
+                List<PaymentAuditEvent> events = new ArrayList<>(batch.entries().size());
+                for (PaymentJournalEntry entry : batch.entries()) {
+                    events.add(journal.toEvent(entry, now));
+                }
+                transactionTemplate.executeWithoutResult(status -> auditEventRepository.insertIgnoreBatch(events));
+                journal.markShipped(batch.next(), events.size());
+                shipped += events.size();
+            }
+        } catch (Exception e) {
+            logger.error("Failed to ship payment journal: {}", e.getMessage());
+        }
+
+        if (shipped > 0) {
+            logger.debug("Shipped {} payment journal events", shipped);
+        }
+    }
+}
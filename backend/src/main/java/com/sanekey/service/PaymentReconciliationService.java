@@ -0,0 +1,305 @@
+package com.sanekey.service;
+
+import com.sanekey.model.Payment;
+import com.sanekey.repository.PaymentRepository;
+import com.sanekey.util.RateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scheduled reconciliation of payments the client never confirmed (stuck
+ * PENDING) and of recent failures that may have succeeded on retry.
+ *
+ * Candidates are claimed in keyset-ordered chunks with FOR UPDATE SKIP LOCKED
+ * and leased to this node, so several nodes can run at once without
+ * overlapping. Gateways are queried outside any transaction on a bounded
+ * pool, throttled per gateway, and the settled outcomes of a chunk are
+ * written back in one transaction. A payment still unresolved keeps its
+ * lease, which doubles as the back-off before it is looked at again.
+ */
+@Service
+public class PaymentReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentReconciliationService.class);
+
+    private static final LocalDateTime SCAN_START = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${sanekey.app.reconcile.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sanekey.app.reconcile.chunkSize:200}")
+    private int chunkSize;
+
+    @Value("${sanekey.app.reconcile.parallelism:8}")
+    private int parallelism;
+
+    @Value("${sanekey.app.reconcile.leaseMs:900000}")
+    private long leaseMs;
+
+    @Value("${sanekey.app.reconcile.runBudgetMs:240000}")
+    private long runBudgetMs;
+
+    @Value("${sanekey.app.reconcile.chunkTimeoutMs:120000}")
+    private long chunkTimeoutMs;
+
+    @Value("${sanekey.app.reconcile.pendingAfterMinutes:30}")
+    private long pendingAfterMinutes;
+
+    @Value("${sanekey.app.reconcile.abandonAfterHours:72}")
+    private long abandonAfterHours;
+
+    @Value("${sanekey.app.reconcile.failedLookbackHours:24}")
+    private long failedLookbackHours;
+
+    @Value("${sanekey.app.reconcile.stripe.ratePerSecond:20}")
+    private double stripeRatePerSecond;
+
+    @Value("${sanekey.app.reconcile.paypal.ratePerSecond:10}")
+    private double paypalRatePerSecond;
+
+    private TransactionTemplate transactionTemplate;
+
+    private ThreadPoolExecutor executor;
+
+    private RateLimiter stripeLimiter;
+
+    private RateLimiter paypalLimiter;
+
+    private String leaseOwner;
+
+    // Keyset position per scanned status, kept across runs so leased rows are not rescanned
+    private final Map<Payment.PaymentStatus, Cursor> cursors = new EnumMap<>(Payment.PaymentStatus.class);
+
+    private Timer runTimer;
+
+    private Counter processedCounter;
+
+    private Counter resolvedCounter;
+
+    private Counter skippedCounter;
+
+    private Counter errorCounter;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "reconcile-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        stripeLimiter = new RateLimiter(stripeRatePerSecond, parallelism);
+        paypalLimiter = new RateLimiter(paypalRatePerSecond, parallelism);
+
+        String runtimeName = ManagementFactory.getRuntimeMXBean().getName();
+        leaseOwner = runtimeName.length() > 64 ? runtimeName.substring(0, 64) : runtimeName;
+
+        runTimer = Timer.builder("sanekey.reconcile.duration")
+                .description("Duration of a payment reconciliation run")
+                .register(meterRegistry);
+        processedCounter = outcomeCounter("processed");
+        resolvedCounter = outcomeCounter("resolved");
+        skippedCounter = outcomeCounter("skipped");
+        errorCounter = outcomeCounter("error");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Run one bounded reconciliation pass
+     */
+    @Scheduled(fixedDelayString = "${sanekey.app.reconcile.intervalMs:300000}",
+               initialDelayString = "${sanekey.app.reconcile.initialDelayMs:60000}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        long deadline = System.currentTimeMillis() + runBudgetMs;
+        LocalDateTime now = LocalDateTime.now();
+        RunStats stats = new RunStats();
+        try {
+            // Recent failures first: a small window a large PENDING backlog must not starve
+            scan(Payment.PaymentStatus.FAILED, now.minusHours(failedLookbackHours), now,
+                    null, deadline, stats);
+            // Stuck PENDING of any age past the threshold; very old ones are abandoned
+            scan(Payment.PaymentStatus.PENDING, SCAN_START, now.minusMinutes(pendingAfterMinutes),
+                    now.minusHours(abandonAfterHours), deadline, stats);
+        } catch (RuntimeException e) {
+            logger.error("Payment reconciliation failed: {}", e.getMessage());
+        } finally {
+            sample.stop(runTimer);
+        }
+
+        if (stats.processed > 0) {
+            logger.info("Reconciled payments: {} processed, {} resolved, {} skipped, {} errors",
+                    stats.processed, stats.resolved, stats.skipped, stats.errors);
+        }
+    }
+
+    private void scan(Payment.PaymentStatus status, LocalDateTime from, LocalDateTime to,
+                      LocalDateTime abandonBefore, long deadline, RunStats stats) {
+        Cursor cursor = cursors.computeIfAbsent(status, key -> new Cursor());
+        while (System.currentTimeMillis() < deadline) {
+            // A cursor behind the window start (the FAILED window slides) restarts at the window
+            boolean resume = cursor.createdAt != null && cursor.createdAt.isAfter(from);
+            LocalDateTime afterCreatedAt = resume ? cursor.createdAt : from;
+            long afterId = resume ? cursor.id : 0L;
+
+            List<Payment> chunk = claimChunk(status, from, to, afterCreatedAt, afterId);
+            if (chunk.isEmpty()) {
+                // Reached the end; the next run starts over and finds expired leases
+                cursor.createdAt = null;
+                cursor.id = 0L;
+                return;
+            }
+
+            Payment last = chunk.get(chunk.size() - 1);
+            cursor.createdAt = last.getCreatedAt();
+            cursor.id = last.getId();
+            processChunk(chunk, abandonBefore, stats);
+        }
+    }
+
+    private List<Payment> claimChunk(Payment.PaymentStatus status, LocalDateTime from, LocalDateTime to,
+                                     LocalDateTime afterCreatedAt, long afterId) {
+        List<Payment> chunk = transactionTemplate.execute(tx -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> ids = paymentRepository.lockReconcileCandidates(status.name(), from, to,
+                    afterCreatedAt, afterId, now, chunkSize);
+            if (ids.isEmpty()) {
+                return Collections.<Payment>emptyList();
+            }
+            paymentRepository.leaseForReconciliation(ids, leaseOwner, now.plus(Duration.ofMillis(leaseMs)));
+            List<Payment> payments = new ArrayList<>(paymentRepository.findAllById(ids));
+            payments.sort(Comparator.comparing(Payment::getCreatedAt).thenComparing(Payment::getId));
+            return payments;
+        });
+        return chunk != null ? chunk : Collections.emptyList();
+    }
+
+    private void processChunk(List<Payment> chunk, LocalDateTime abandonBefore, RunStats stats) {
+        Map<Long, Future<Payment.PaymentStatus>> lookups = new LinkedHashMap<>();
+        for (Payment payment : chunk) {
+            boolean abandon = abandonBefore != null && payment.getCreatedAt().isBefore(abandonBefore);
+            RateLimiter limiter = payment.getStripePaymentIntentId() != null ? stripeLimiter : paypalLimiter;
+            lookups.put(payment.getId(), executor.submit(() -> {
+                limiter.acquire();
+                return paymentService.queryGatewayStatus(payment, abandon);
+            }));
+        }
+
+        long chunkDeadline = System.currentTimeMillis() + chunkTimeoutMs;
+        Map<Long, Payment.PaymentStatus> settled = new HashMap<>();
+        int errors = 0;
+        for (Map.Entry<Long, Future<Payment.PaymentStatus>> lookup : lookups.entrySet()) {
+            try {
+                long remaining = Math.max(0, chunkDeadline - System.currentTimeMillis());
+                Payment.PaymentStatus outcome = lookup.getValue().get(remaining, TimeUnit.MILLISECONDS);
+                if (outcome != null) {
+                    settled.put(lookup.getKey(), outcome);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lookup.getValue().cancel(true);
+                errors++;
+            } catch (Exception e) {
+                lookup.getValue().cancel(true);
+                logger.debug("Gateway lookup for payment {} failed: {}", lookup.getKey(), e.getMessage());
+                errors++;
+            }
+        }
+
+        int resolved = 0;
+        if (!settled.isEmpty()) {
+            Integer changed = transactionTemplate.execute(tx -> {
+                Map<Payment, Payment.PaymentStatus> outcomes = new HashMap<>();
+                for (Payment locked : paymentRepository.lockByIds(settled.keySet())) {
+                    outcomes.put(locked, settled.get(locked.getId()));
+                }
+                Set<Long> applied = paymentService.applyLockedOutcomes(outcomes);
+                return applied.size();
+            });
+            resolved = changed != null ? changed : 0;
+        }
+
+        int skipped = chunk.size() - resolved - errors;
+        stats.processed += chunk.size();
+        stats.resolved += resolved;
+        stats.skipped += skipped;
+        stats.errors += errors;
+        processedCounter.increment(chunk.size());
+        resolvedCounter.increment(resolved);
+        skippedCounter.increment(skipped);
+        errorCounter.increment(errors);
+    }
+
+    private Counter outcomeCounter(String outcome) {
+        return Counter.builder("sanekey.reconcile.payments")
+                .description("Payments handled by reconciliation")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static final class Cursor {
+        private LocalDateTime createdAt;
+        private long id;
+    }
+
+    private static final class RunStats {
+        private long processed;
+        private long resolved;
+        private long skipped;
+        private long errors;
+    }
+}
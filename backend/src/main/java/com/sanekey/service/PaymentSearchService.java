@@ -0,0 +1,105 @@
+package com.sanekey.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sanekey.model.Payment;
+import com.sanekey.repository.PaymentRepository;
+import com.sanekey.repository.PaymentSearchCriteria;
+import com.sanekey.util.KeysetCursor;
+import com.sanekey.util.KeysetPage;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Admin payment search over any combination of filters, one keyset page at
+ * a time. The exact total is bounded by a statement timeout and cached
+ * briefly per filter set, since admins page through the same search; the
+ * approximate total is the optimizer's estimate and always cheap.
+ */
+@Service
+public class PaymentSearchService {
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Value("${sanekey.app.payments.defaultPageSize:20}")
+    private int defaultPageSize;
+
+    @Value("${sanekey.app.payments.maxPageSize:100}")
+    private int maxPageSize;
+
+    @Value("${sanekey.app.paymentSearch.exactCountTimeoutMs:2000}")
+    private long exactCountTimeoutMs;
+
+    @Value("${sanekey.app.paymentSearch.countCacheSize:1000}")
+    private long countCacheSize;
+
+    @Value("${sanekey.app.paymentSearch.countCacheTtlSeconds:60}")
+    private long countCacheTtlSeconds;
+
+    // Empty when the count timed out, so a slow count is not retried on every page
+    private Cache<PaymentSearchCriteria, Optional<Long>> exactCounts;
+
+    @PostConstruct
+    public void init() {
+        exactCounts = Caffeine.newBuilder()
+                .maximumSize(countCacheSize)
+                .expireAfterWrite(Duration.ofSeconds(countCacheTtlSeconds))
+                .build();
+    }
+
+    /**
+     * Get one keyset page of matching payments, newest first
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<Payment> search(PaymentSearchCriteria criteria, String cursor, Integer limit) {
+        criteria.validate();
+        int pageSize = pageSize(limit);
+
+        List<Payment> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = paymentRepository.search(criteria, null, null, pageSize + 1);
+        } else {
+            String[] keys = KeysetCursor.decode(cursor, 2);
+            rows = paymentRepository.search(criteria, LocalDateTime.parse(keys[0]), Long.parseLong(keys[1]),
+                    pageSize + 1);
+        }
+        return KeysetPage.of(rows, pageSize,
+                payment -> KeysetCursor.encode(payment.getCreatedAt(), payment.getId()));
+    }
+
+    /**
+     * Exact number of matches, or null when counting exceeds the time budget.
+     * Runs outside a transaction so an aborted count cannot poison one.
+     */
+    public Long exactCount(PaymentSearchCriteria criteria) {
+        return exactCounts.get(criteria,
+                key -> Optional.ofNullable(paymentRepository.countExact(key, exactCountTimeoutMs))).orElse(null);
+    }
+
+    /**
+     * Estimated number of matches
+     */
+    public long approximateCount(PaymentSearchCriteria criteria) {
+        return paymentRepository.countApproximate(criteria);
+    }
+
+    public String indexFor(PaymentSearchCriteria criteria) {
+        return paymentRepository.indexFor(criteria);
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return Math.min(defaultPageSize, maxPageSize);
+        }
+        return Math.min(limit, maxPageSize);
+    }
+}
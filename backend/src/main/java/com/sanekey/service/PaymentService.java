@@ -3,29 +3,44 @@ package com.sanekey.service;
 import com.paypal.core.PayPalEnvironment;
 import com.paypal.core.PayPalHttpClient;
 import com.paypal.orders.*;
+import com.sanekey.exception.CustomExceptionHandler.BusinessException;
 import com.sanekey.model.Payment;
+import com.sanekey.model.PaymentAuditEvent;
 import com.sanekey.model.User;
 import com.sanekey.repository.PaymentRepository;
+import com.sanekey.util.KeysetCursor;
+import com.sanekey.util.KeysetPage;
+import com.sanekey.util.SnowflakeIdGenerator;
 import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
+import com.stripe.net.RequestOptions;
 import com.stripe.param.PaymentIntentCreateParams;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jakarta.annotation.PostConstruct;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.Set;
 
 @Service
-@Transactional
 public class PaymentService {
     
     private static final Logger logger = LoggerFactory.getLogger(PaymentService.class);
@@ -33,6 +48,20 @@ public class PaymentService {
     @Autowired
     private PaymentRepository paymentRepository;
     
+    @Autowired
+    private RevenueRollupService revenueRollupService;
+    
+    @Autowired
+    private PaymentJournal journal;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private PaymentGatewayGuard gatewayGuard;
+    
+    private TransactionTemplate transactionTemplate;
+    
     @Value("${stripe.secret.key}")
     private String stripeSecretKey;
     
@@ -45,13 +74,50 @@ public class PaymentService {
     @Value("${paypal.environment:sandbox}")
     private String paypalEnvironment;
     
+    // Point the SDKs at another host, e.g. the gateway simulator
+    @Value("${stripe.api.base:}")
+    private String stripeApiBase;
+    
+    @Value("${paypal.api.base:}")
+    private String paypalApiBase;
+    
+    @Value("${sanekey.app.payments.defaultPageSize:20}")
+    private int defaultPageSize;
+    
+    @Value("${sanekey.app.payments.maxPageSize:100}")
+    private int maxPageSize;
+    
+    // Node id for transaction ids; every instance sharing a database needs its own
+    @Value("${sanekey.app.nodeId:0}")
+    private int nodeId;
+    
     private PayPalHttpClient paypalClient;
     
+    private RequestOptions stripeOptions;
+    
+    private SnowflakeIdGenerator transactionIds;
+    
     @PostConstruct
     public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        if (nodeId < 0 || nodeId > SnowflakeIdGenerator.MAX_NODE_ID) {
+            throw new IllegalStateException("sanekey.app.nodeId (SANEKEY_NODE_ID) is " + nodeId
+                    + "; it must be between 0 and " + SnowflakeIdGenerator.MAX_NODE_ID);
+        }
+        transactionIds = new SnowflakeIdGenerator(nodeId);
+        
+        stripeOptions = RequestOptions.builder()
+                .setConnectTimeout(gatewayGuard.connectTimeoutMs(Payment.PaymentMethod.STRIPE))
+                .setReadTimeout(gatewayGuard.readTimeoutMs(Payment.PaymentMethod.STRIPE))
+                .build();
+        
         // Initialize Stripe
         if (stripeSecretKey != null && !stripeSecretKey.isEmpty() && !stripeSecretKey.equals("${STRIPE_SECRET_KEY:}")) {
             Stripe.apiKey = stripeSecretKey;
+            if (stripeApiBase != null && !stripeApiBase.isEmpty()) {
+                Stripe.overrideApiBase(stripeApiBase);
+                logger.info("Stripe API base overridden to {}", stripeApiBase);
+            }
             logger.info("Stripe initialized successfully");
         } else {
             logger.warn("Stripe not initialized - no API key provided");
@@ -62,10 +128,18 @@ public class PaymentService {
             paypalClientSecret != null && !paypalClientSecret.isEmpty() &&
             !paypalClientId.equals("${PAYPAL_CLIENT_ID:}") &&
             !paypalClientSecret.equals("${PAYPAL_CLIENT_SECRET:}")) {
-            PayPalEnvironment environment = paypalEnvironment.equals("live") 
-                ? new PayPalEnvironment.Live(paypalClientId, paypalClientSecret)
-                : new PayPalEnvironment.Sandbox(paypalClientId, paypalClientSecret);
+            PayPalEnvironment environment;
+            if (paypalApiBase != null && !paypalApiBase.isEmpty()) {
+                environment = new PayPalEnvironment(paypalClientId, paypalClientSecret, paypalApiBase, paypalApiBase);
+                logger.info("PayPal API base overridden to {}", paypalApiBase);
+            } else {
+                environment = paypalEnvironment.equals("live") 
+                    ? new PayPalEnvironment.Live(paypalClientId, paypalClientSecret)
+                    : new PayPalEnvironment.Sandbox(paypalClientId, paypalClientSecret);
+            }
             paypalClient = new PayPalHttpClient(environment);
+            paypalClient.setConnectTimeout(gatewayGuard.connectTimeoutMs(Payment.PaymentMethod.PAYPAL));
+            paypalClient.setReadTimeout(gatewayGuard.readTimeoutMs(Payment.PaymentMethod.PAYPAL));
             logger.info("PayPal initialized successfully");
         } else {
             logger.warn("PayPal not initialized - no client credentials provided");
@@ -75,17 +149,27 @@ public class PaymentService {
     /**
      * Create a new payment record
      */
+    @Transactional
     public Payment createPayment(User user, BigDecimal amount, Payment.PaymentMethod method, String description) {
         Payment payment = new Payment(user, amount, method, description);
         payment.setTransactionId(generateTransactionId());
-        return paymentRepository.save(payment);
+        Payment saved = paymentRepository.save(payment);
+        journal.appendAfterCommit(saved.getId(), PaymentAuditEvent.EventType.CREATED, null, saved.getStatus(),
+                method + " " + amount.toPlainString() + " " + saved.getCurrency());
+        return saved;
     }
     
     /**
-     * Create Stripe Payment Intent
+     * Create Stripe Payment Intent. The PENDING record is committed first and
+     * the gateway is called outside any transaction, so no pooled connection
+     * or row lock is held for the network round trip. A gateway key, if
+     * given, is sent as Stripe's idempotency key.
      */
-    public Payment createStripePayment(User user, BigDecimal amount, String description) throws StripeException {
-        Payment payment = createPayment(user, amount, Payment.PaymentMethod.STRIPE, description);
+    public Payment createStripePayment(User user, BigDecimal amount, String description,
+                                       String gatewayKey) throws StripeException {
+        gatewayGuard.checkAvailable(Payment.PaymentMethod.STRIPE);
+        Payment payment = transactionTemplate.execute(status ->
+                createPayment(user, amount, Payment.PaymentMethod.STRIPE, description));
         
         PaymentIntentCreateParams params = PaymentIntentCreateParams.builder()
                 .setAmount(amount.multiply(BigDecimal.valueOf(100)).longValue()) // Convert to cents
@@ -95,21 +179,38 @@ public class PaymentService {
                 .putMetadata("payment_id", payment.getId().toString())
                 .build();
         
-        PaymentIntent paymentIntent = PaymentIntent.create(params);
-        
-        payment.setStripePaymentIntentId(paymentIntent.getId());
-        payment.setStatus(Payment.PaymentStatus.PENDING);
+        RequestOptions options = gatewayKey != null
+                ? stripeOptions.toBuilder().setIdempotencyKey(gatewayKey).build()
+                : stripeOptions;
+        PaymentIntent paymentIntent;
+        try {
+            paymentIntent = gatewayGuard.call(Payment.PaymentMethod.STRIPE, "create",
+                    () -> PaymentIntent.create(params, options));
+        } catch (StripeException | RuntimeException e) {
+            journalGatewayCall(payment.getId(), "STRIPE create failed: " + e.getMessage());
+            markGatewayFailure(payment);
+            throw e;
+        }
+        journalGatewayCall(payment.getId(), "STRIPE create " + paymentIntent.getId());
         
-        return paymentRepository.save(payment);
+        return transactionTemplate.execute(status -> {
+            if (paymentRepository.attachStripePaymentIntent(payment.getId(), paymentIntent.getId(), LocalDateTime.now()) == 0) {
+                logger.warn("Payment {} left PENDING before its Stripe intent was attached", payment.getId());
+            }
+            return paymentRepository.findById(payment.getId()).orElseThrow();
+        });
     }
     
     /**
-     * Create PayPal Order
+     * Create PayPal Order, with the gateway call outside any transaction. A
+     * gateway key, if given, is sent as the PayPal-Request-Id header.
      */
-    public Payment createPayPalPayment(User user, BigDecimal amount, String description) {
+    public Payment createPayPalPayment(User user, BigDecimal amount, String description, String gatewayKey) {
+        gatewayGuard.checkAvailable(Payment.PaymentMethod.PAYPAL);
+        Payment payment = transactionTemplate.execute(status ->
+                createPayment(user, amount, Payment.PaymentMethod.PAYPAL, description));
+        
         try {
-            Payment payment = createPayment(user, amount, Payment.PaymentMethod.PAYPAL, description);
-            
             OrderRequest orderRequest = new OrderRequest();
             orderRequest.checkoutPaymentIntent("CAPTURE");
             
@@ -135,159 +236,377 @@ public class PaymentService {
             
             OrdersCreateRequest request = new OrdersCreateRequest();
             request.requestBody(orderRequest);
+            if (gatewayKey != null) {
+                request.header("PayPal-Request-Id", gatewayKey);
+            }
             
-            com.paypal.http.HttpResponse<Order> response = paypalClient.execute(request);
-            Order order = response.result();
-            
-            payment.setPaypalOrderId(order.id());
-            payment.setStatus(Payment.PaymentStatus.PENDING);
+            Order order = executePayPal("create", request);
+            journalGatewayCall(payment.getId(), "PAYPAL create " + order.id());
             
-            return paymentRepository.save(payment);
+            return transactionTemplate.execute(status -> {
+                if (paymentRepository.attachPaypalOrder(payment.getId(), order.id(), LocalDateTime.now()) == 0) {
+                    logger.warn("Payment {} left PENDING before its PayPal order was attached", payment.getId());
+                }
+                return paymentRepository.findById(payment.getId()).orElseThrow();
+            });
             
+        } catch (BusinessException e) {
+            journalGatewayCall(payment.getId(), "PAYPAL create failed: " + e.getMessage());
+            markGatewayFailure(payment);
+            throw e;
         } catch (Exception e) {
+            journalGatewayCall(payment.getId(), "PAYPAL create failed: " + e.getMessage());
+            markGatewayFailure(payment);
             throw new RuntimeException("Failed to create PayPal payment: " + e.getMessage());
         }
     }
     
     /**
-     * Confirm Stripe payment
+     * Confirm Stripe payment. A payment already settled by a webhook is
+     * returned without another gateway round trip.
      */
     public Payment confirmStripePayment(String paymentIntentId) throws StripeException {
-        PaymentIntent paymentIntent = PaymentIntent.retrieve(paymentIntentId);
-        
-        Payment payment = paymentRepository.findByStripePaymentIntentId(paymentIntentId)
+        Payment existing = paymentRepository.findByStripePaymentIntentId(paymentIntentId)
                 .orElseThrow(() -> new RuntimeException("Payment not found"));
+        if (isSettled(existing)) {
+            return existing;
+        }
         
+        PaymentIntent paymentIntent = gatewayGuard.call(Payment.PaymentMethod.STRIPE, "retrieve",
+                () -> PaymentIntent.retrieve(paymentIntentId, stripeOptions));
+        journalGatewayCall(existing.getId(), "STRIPE retrieve " + paymentIntent.getStatus());
+        
+        Payment.PaymentStatus outcome = null;
         if ("succeeded".equals(paymentIntent.getStatus())) {
-            payment.setStatus(Payment.PaymentStatus.COMPLETED);
-            payment.setCompletedAt(LocalDateTime.now());
+            outcome = Payment.PaymentStatus.COMPLETED;
         } else if ("payment_failed".equals(paymentIntent.getStatus())) {
-            payment.setStatus(Payment.PaymentStatus.FAILED);
+            outcome = Payment.PaymentStatus.FAILED;
         }
         
-        return paymentRepository.save(payment);
+        Payment.PaymentStatus newStatus = outcome;
+        return transactionTemplate.execute(status -> {
+            Payment payment = paymentRepository.findByStripePaymentIntentId(paymentIntentId)
+                    .orElseThrow(() -> new RuntimeException("Payment not found"));
+            return applyGatewayOutcome(payment, newStatus);
+        });
     }
     
     /**
-     * Confirm PayPal payment
+     * Confirm PayPal payment, capturing the order outside any transaction
+     * unless a webhook has already settled it
      */
     public Payment confirmPayPalPayment(String orderId) {
         try {
-            Payment payment = paymentRepository.findByPaypalOrderId(orderId)
+            Payment existing = paymentRepository.findByPaypalOrderId(orderId)
                     .orElseThrow(() -> new RuntimeException("Payment not found"));
+            if (isSettled(existing)) {
+                return existing;
+            }
             
-            OrdersCaptureRequest request = new OrdersCaptureRequest(orderId);
-            com.paypal.http.HttpResponse<Order> response = paypalClient.execute(request);
-            Order order = response.result();
+            Order order = executePayPal("capture", new OrdersCaptureRequest(orderId));
+            journalGatewayCall(existing.getId(), "PAYPAL capture " + order.status());
             
-            if ("COMPLETED".equals(order.status())) {
-                payment.setStatus(Payment.PaymentStatus.COMPLETED);
-                payment.setCompletedAt(LocalDateTime.now());
-            } else {
-                payment.setStatus(Payment.PaymentStatus.FAILED);
-            }
+            Payment.PaymentStatus newStatus = "COMPLETED".equals(order.status())
+                    ? Payment.PaymentStatus.COMPLETED
+                    : Payment.PaymentStatus.FAILED;
             
-            return paymentRepository.save(payment);
+            return transactionTemplate.execute(status -> {
+                Payment payment = paymentRepository.findByPaypalOrderId(orderId)
+                        .orElseThrow(() -> new RuntimeException("Payment not found"));
+                return applyGatewayOutcome(payment, newStatus);
+            });
             
+        } catch (BusinessException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Failed to confirm PayPal payment: " + e.getMessage());
         }
     }
     
+    /**
+     * Execute a PayPal request inside the PayPal bulkhead and breaker
+     */
+    private Order executePayPal(String operation, com.paypal.http.HttpRequest<Order> request) throws IOException {
+        if (paypalClient == null) {
+            throw new IllegalStateException("PayPal is not configured");
+        }
+        return gatewayGuard.call(Payment.PaymentMethod.PAYPAL, operation,
+                () -> paypalClient.execute(request).result());
+    }
+    
+    private static boolean isSettled(Payment payment) {
+        return payment.getStatus() == Payment.PaymentStatus.COMPLETED
+                || payment.getStatus() == Payment.PaymentStatus.CANCELLED
+                || payment.getStatus() == Payment.PaymentStatus.REFUNDED;
+    }
+    
+    /**
+     * Apply a gateway result to a payment inside the caller's short transaction.
+     * If another request changed the payment first, its state is returned as is.
+     */
+    private Payment applyGatewayOutcome(Payment payment, Payment.PaymentStatus newStatus) {
+        return transition(payment, newStatus).getPayment();
+    }
+    
+    /**
+     * Move a payment to a new status with one conditional UPDATE that only
+     * matches while the payment is still in an allowed source status at the
+     * version it was read at. Must run inside a transaction.
+     */
+    private PaymentTransitionResult transition(Payment payment, Payment.PaymentStatus newStatus) {
+        Payment.PaymentStatus previousStatus = payment.getStatus();
+        if (newStatus == null || newStatus == previousStatus) {
+            return PaymentTransitionResult.unchanged(payment);
+        }
+        if (!previousStatus.canTransitionTo(newStatus)) {
+            return PaymentTransitionResult.notAllowed(payment);
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        Set<Payment.PaymentStatus> sources = Payment.PaymentStatus.sourcesOf(newStatus);
+        int updated = newStatus == Payment.PaymentStatus.COMPLETED
+                ? paymentRepository.transitionToCompleted(payment.getId(), sources, payment.getVersion(), now)
+                : paymentRepository.transitionStatus(payment.getId(), newStatus, sources, payment.getVersion(), now);
+        
+        if (updated == 0) {
+            // A locking read: a plain one would return this transaction's snapshot, from before the winner committed
+            Payment current = paymentRepository.lockByIds(List.of(payment.getId())).stream().findFirst().orElse(payment);
+            return PaymentTransitionResult.lostRace(current, previousStatus);
+        }
+        
+        // Before the copy is refreshed, so the rollups still see when it entered its previous status
+        recordTransition(payment, previousStatus, newStatus);
+        
+        // The update cleared the persistence context, so these only refresh the returned copy
+        payment.setStatus(newStatus);
+        payment.setUpdatedAt(now);
+        payment.setVersion(payment.getVersion() + 1);
+        if (newStatus == Payment.PaymentStatus.COMPLETED) {
+            payment.setCompletedAt(now);
+        }
+        
+        return PaymentTransitionResult.applied(payment, previousStatus);
+    }
+    
+    /**
+     * Record a status change in the rollups, within the current transaction,
+     * and in the payment journal once that transaction commits
+     */
+    private void recordTransition(Payment payment, Payment.PaymentStatus from, Payment.PaymentStatus to) {
+        revenueRollupService.recordTransition(payment, from, to);
+        journal.appendAfterCommit(payment.getId(), PaymentAuditEvent.EventType.forTransitionTo(to), from, to, null);
+    }
+    
+    private void journalGatewayCall(Long paymentId, String detail) {
+        journal.append(paymentId, PaymentAuditEvent.EventType.GATEWAY_CALL, null, null, detail);
+    }
+    
+    /**
+     * Ask the gateway for the settled outcome of a payment, without holding
+     * a transaction. Returns null while the gateway has no final answer.
+     * With abandon set, a payment the customer never completed is cancelled
+     * (at Stripe, or locally for a PayPal order nobody approved).
+     */
+    public Payment.PaymentStatus queryGatewayStatus(Payment payment, boolean abandon) throws Exception {
+        if (payment.getStripePaymentIntentId() != null) {
+            PaymentIntent intent = gatewayGuard.call(Payment.PaymentMethod.STRIPE, "retrieve",
+                    () -> PaymentIntent.retrieve(payment.getStripePaymentIntentId(), stripeOptions));
+            journalGatewayCall(payment.getId(), "STRIPE retrieve " + intent.getStatus());
+            switch (intent.getStatus()) {
+                case "succeeded":
+                    return Payment.PaymentStatus.COMPLETED;
+                case "canceled":
+                    return Payment.PaymentStatus.CANCELLED;
+                case "requires_payment_method":
+                case "requires_confirmation":
+                case "requires_action":
+                    if (abandon) {
+                        gatewayGuard.call(Payment.PaymentMethod.STRIPE, "cancel", () -> intent.cancel(stripeOptions));
+                        return Payment.PaymentStatus.CANCELLED;
+                    }
+                    return intent.getLastPaymentError() != null ? Payment.PaymentStatus.FAILED : null;
+                default:
+                    return null;
+            }
+        }
+        
+        if (payment.getPaypalOrderId() != null) {
+            Order order = executePayPal("get", new OrdersGetRequest(payment.getPaypalOrderId()));
+            journalGatewayCall(payment.getId(), "PAYPAL get " + order.status());
+            switch (order.status()) {
+                case "COMPLETED":
+                    return Payment.PaymentStatus.COMPLETED;
+                case "VOIDED":
+                    return Payment.PaymentStatus.CANCELLED;
+                case "CREATED":
+                case "SAVED":
+                case "PAYER_ACTION_REQUIRED":
+                    return abandon ? Payment.PaymentStatus.CANCELLED : null;
+                default:
+                    return null;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Apply outcomes to payments the caller has already locked, with one
+     * UPDATE per target status. Outcomes the state machine rejects are
+     * skipped. Returns the ids of the payments that changed.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Set<Long> applyLockedOutcomes(Map<Payment, Payment.PaymentStatus> outcomes) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Payment.PaymentStatus, List<Long>> byTarget = new EnumMap<>(Payment.PaymentStatus.class);
+        Set<Long> changed = new HashSet<>();
+        
+        outcomes.forEach((payment, target) -> {
+            if (payment.getStatus().canTransitionTo(target)) {
+                recordTransition(payment, payment.getStatus(), target);
+                byTarget.computeIfAbsent(target, status -> new ArrayList<>()).add(payment.getId());
+                changed.add(payment.getId());
+            }
+        });
+        
+        byTarget.forEach((target, paymentIds) -> {
+            if (target == Payment.PaymentStatus.COMPLETED) {
+                paymentRepository.completeByIds(paymentIds, now);
+            } else {
+                paymentRepository.updateStatusByIds(paymentIds, target, now);
+            }
+        });
+        return changed;
+    }
+    
+    /**
+     * Mark a still-PENDING payment as FAILED after its gateway call failed
+     */
+    private void markGatewayFailure(Payment payment) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (paymentRepository.failIfPending(payment.getId(), LocalDateTime.now()) > 0) {
+                    recordTransition(payment, Payment.PaymentStatus.PENDING, Payment.PaymentStatus.FAILED);
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.error("Failed to mark payment {} as failed: {}", payment.getId(), e.getMessage());
+        }
+    }
+    
     /**
      * Get payment by ID
      */
+    @Transactional(readOnly = true)
     public Optional<Payment> getPaymentById(Long id) {
         return paymentRepository.findById(id);
     }
     
     /**
-     * Get payments by user
+     * Get one keyset page of a user's payments, newest first
      */
-    public List<Payment> getPaymentsByUser(User user) {
-        return paymentRepository.findByUserOrderByCreatedAtDesc(user);
+    @Transactional(readOnly = true)
+    public KeysetPage<Payment> getPaymentHistoryPage(Long userId, Payment.PaymentStatus status,
+                                                     Payment.PaymentMethod method, String cursor, Integer limit) {
+        int pageSize = pageSize(limit);
+        Pageable fetch = PageRequest.of(0, pageSize + 1);
+        
+        List<Payment> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = paymentRepository.findUserPaymentsPage(userId, status, method, fetch);
+        } else {
+            String[] keys = KeysetCursor.decode(cursor, 2);
+            rows = paymentRepository.findUserPaymentsPageAfter(userId, status, method,
+                    LocalDateTime.parse(keys[0]), Long.parseLong(keys[1]), fetch);
+        }
+        return KeysetPage.of(rows, pageSize, PaymentService::cursorOf);
     }
     
     /**
-     * Get payments by user ID
+     * Get one keyset page of all payments, newest first
      */
-    public List<Payment> getPaymentsByUserId(Long userId) {
-        return paymentRepository.findByUserIdOrderByCreatedAtDesc(userId);
+    @Transactional(readOnly = true)
+    public KeysetPage<Payment> getPaymentsPage(Payment.PaymentStatus status, Payment.PaymentMethod method,
+                                               String cursor, Integer limit) {
+        int pageSize = pageSize(limit);
+        Pageable fetch = PageRequest.of(0, pageSize + 1);
+        
+        List<Payment> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = paymentRepository.findPaymentsPage(status, method, fetch);
+        } else {
+            String[] keys = KeysetCursor.decode(cursor, 2);
+            rows = paymentRepository.findPaymentsPageAfter(status, method,
+                    LocalDateTime.parse(keys[0]), Long.parseLong(keys[1]), fetch);
+        }
+        return KeysetPage.of(rows, pageSize, PaymentService::cursorOf);
+    }
+    
+    private int pageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return Math.min(defaultPageSize, maxPageSize);
+        }
+        return Math.min(limit, maxPageSize);
+    }
+    
+    private static String cursorOf(Payment payment) {
+        return KeysetCursor.encode(payment.getCreatedAt(), payment.getId());
     }
     
     /**
      * Get payment by transaction ID
      */
+    @Transactional(readOnly = true)
     public Optional<Payment> getPaymentByTransactionId(String transactionId) {
         return paymentRepository.findByTransactionId(transactionId);
     }
     
-    /**
-     * Get payments by status
-     */
-    public List<Payment> getPaymentsByStatus(Payment.PaymentStatus status) {
-        return paymentRepository.findByStatusOrderByCreatedAtDesc(status);
-    }
-    
     /**
      * Get total amount by user
      */
     public BigDecimal getTotalAmountByUser(User user) {
-        BigDecimal total = paymentRepository.getTotalAmountByUser(user);
-        return total != null ? total : BigDecimal.ZERO;
+        return revenueRollupService.getTotalAmountByUser(user.getId());
     }
     
     /**
      * Get monthly revenue
      */
     public BigDecimal getMonthlyRevenue(int year, int month) {
-        BigDecimal revenue = paymentRepository.getMonthlyRevenue(year, month);
-        return revenue != null ? revenue : BigDecimal.ZERO;
+        return revenueRollupService.getMonthlyRevenue(year, month);
     }
     
     /**
      * Get daily revenue
      */
     public BigDecimal getDailyRevenue(LocalDateTime date) {
-        BigDecimal revenue = paymentRepository.getDailyRevenue(date);
-        return revenue != null ? revenue : BigDecimal.ZERO;
+        return revenueRollupService.getDailyRevenue(date.toLocalDate());
     }
     
     /**
      * Cancel payment
      */
-    public Payment cancelPayment(Long paymentId) {
+    @Transactional
+    public PaymentTransitionResult cancelPayment(Long paymentId) {
         Payment payment = paymentRepository.findById(paymentId)
                 .orElseThrow(() -> new RuntimeException("Payment not found"));
-        
-        if (payment.getStatus() == Payment.PaymentStatus.PENDING) {
-            payment.setStatus(Payment.PaymentStatus.CANCELLED);
-            return paymentRepository.save(payment);
-        } else {
-            throw new RuntimeException("Cannot cancel payment with status: " + payment.getStatus());
-        }
+        return transition(payment, Payment.PaymentStatus.CANCELLED);
     }
     
     /**
      * Refund payment
      */
-    public Payment refundPayment(Long paymentId) {
+    @Transactional
+    public PaymentTransitionResult refundPayment(Long paymentId) {
         Payment payment = paymentRepository.findById(paymentId)
                 .orElseThrow(() -> new RuntimeException("Payment not found"));
-        
-        if (payment.getStatus() == Payment.PaymentStatus.COMPLETED) {
-            // Here you would implement actual refund logic with Stripe/PayPal
-            payment.setStatus(Payment.PaymentStatus.REFUNDED);
-            return paymentRepository.save(payment);
-        } else {
-            throw new RuntimeException("Cannot refund payment with status: " + payment.getStatus());
-        }
+        // Here you would implement actual refund logic with Stripe/PayPal
+        return transition(payment, Payment.PaymentStatus.REFUNDED);
     }
     
     /**
-     * Generate unique transaction ID
+     * Generate unique transaction ID: a time-ordered 64-bit id in base-32,
+     * so new rows append to the end of the transaction_id index
      */
     private String generateTransactionId() {
-        return "TXN_" + System.currentTimeMillis() + "_" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        return transactionIds.nextEncodedId();
     }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.sanekey.service;
+
+import com.sanekey.model.Payment;
+
+/**
+ * Outcome of a conditional payment status change. A lost race is an
+ * expected result, not an error: another request changed the payment
+ * between the read and the conditional update.
+ */
+public final class PaymentTransitionResult {
+    
+    public enum Outcome {
+        APPLIED, UNCHANGED, NOT_ALLOWED, LOST_RACE
+    }
+    
+    private final Outcome outcome;
+    private final Payment payment;
+    private final Payment.PaymentStatus previousStatus;
+    
+    private PaymentTransitionResult(Outcome outcome, Payment payment, Payment.PaymentStatus previousStatus) {
+        this.outcome = outcome;
+        this.payment = payment;
+        this.previousStatus = previousStatus;
+    }
+    
+    public static PaymentTransitionResult applied(Payment payment, Payment.PaymentStatus previousStatus) {
+        return new PaymentTransitionResult(Outcome.APPLIED, payment, previousStatus);
+    }
+    
+    public static PaymentTransitionResult unchanged(Payment payment) {
+        return new PaymentTransitionResult(Outcome.UNCHANGED, payment, payment.getStatus());
+    }
+    
+    public static PaymentTransitionResult notAllowed(Payment payment) {
+        return new PaymentTransitionResult(Outcome.NOT_ALLOWED, payment, payment.getStatus());
+    }
+    
+    public static PaymentTransitionResult lostRace(Payment payment, Payment.PaymentStatus previousStatus) {
+        return new PaymentTransitionResult(Outcome.LOST_RACE, payment, previousStatus);
+    }
+    
+    public Outcome getOutcome() { return outcome; }
+    
+    /**
+     * The payment after the attempt; for a lost race, its state as left by the winner
+     */
+    public Payment getPayment() { return payment; }
+    
+    public Payment.PaymentStatus getPreviousStatus() { return previousStatus; }
+    
+    public boolean isApplied() { return outcome == Outcome.APPLIED; }
+}
@@ -0,0 +1,204 @@
+package com.sanekey.service;
+
+import com.sanekey.model.Payment;
+import com.sanekey.model.PaymentWebhookEvent;
+import com.sanekey.repository.PaymentRepository;
+import com.sanekey.repository.PaymentWebhookEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Drains the webhook inbox in batches. Each batch claims events with
+ * SKIP LOCKED so several nodes can drain concurrently, keeps only the newest
+ * event per payment, locks the affected payments once and applies the
+ * resulting status changes through PaymentService.applyLockedOutcomes.
+ */
+@Service
+public class PaymentWebhookApplier {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentWebhookApplier.class);
+
+    @Autowired
+    private PaymentWebhookEventRepository webhookEventRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${sanekey.app.webhooks.batchSize:500}")
+    private int batchSize;
+
+    // How long an event may wait for its payment's gateway reference to be attached
+    @Value("${sanekey.app.webhooks.orphanGraceMs:600000}")
+    private long orphanGraceMs;
+
+    // How long a deferred event waits before the next attempt to match it
+    @Value("${sanekey.app.webhooks.orphanRetryMs:30000}")
+    private long orphanRetryMs;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Counter appliedCounter;
+
+    private Counter ignoredCounter;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        appliedCounter = Counter.builder("sanekey.webhook.events")
+                .description("Webhook events drained from the inbox")
+                .tag("outcome", "applied")
+                .register(meterRegistry);
+        ignoredCounter = Counter.builder("sanekey.webhook.events")
+                .description("Webhook events drained from the inbox")
+                .tag("outcome", "ignored")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Apply pending events until the inbox has no full batch left
+     */
+    @Scheduled(fixedDelayString = "${sanekey.app.webhooks.drainMs:1000}")
+    public void drain() {
+        try {
+            Integer finished;
+            do {
+                finished = transactionTemplate.execute(status -> drainBatch());
+            } while (finished != null && finished >= batchSize);
+        } catch (RuntimeException e) {
+            logger.error("Webhook drain failed: {}", e.getMessage());
+        }
+    }
+
+    private int drainBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<PaymentWebhookEvent> events = webhookEventRepository.lockPendingBatch(now, batchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        LocalDateTime orphanCutoff = now.minus(Duration.ofMillis(orphanGraceMs));
+        List<Long> applied = new ArrayList<>();
+        List<Long> ignored = new ArrayList<>();
+
+        // Keep the newest event per payment; older ones in the batch are superseded
+        Map<String, PaymentWebhookEvent> latest = new HashMap<>();
+        for (PaymentWebhookEvent event : events) {
+            String key = event.getGateway() + ":" + event.getReference();
+            PaymentWebhookEvent current = latest.get(key);
+            if (current == null || isNewer(event, current)) {
+                if (current != null) {
+                    ignored.add(current.getId());
+                }
+                latest.put(key, event);
+            } else {
+                ignored.add(event.getId());
+            }
+        }
+
+        Map<String, Payment> payments = lockPayments(latest.values());
+
+        Map<Payment, Payment.PaymentStatus> outcomes = new HashMap<>();
+        Map<Long, Long> eventByPayment = new HashMap<>();
+        List<Long> deferred = new ArrayList<>();
+        for (PaymentWebhookEvent event : latest.values()) {
+            Payment payment = payments.get(event.getGateway() + ":" + event.getReference());
+            if (payment == null) {
+                // The webhook can beat the commit that attaches the gateway reference
+                if (event.getReceivedAt() != null && event.getReceivedAt().isAfter(orphanCutoff)) {
+                    deferred.add(event.getId());
+                } else {
+                    ignored.add(event.getId());
+                }
+                continue;
+            }
+            outcomes.put(payment, event.getTargetStatus());
+            eventByPayment.put(payment.getId(), event.getId());
+        }
+
+        // Terminal statuses never regress, so late or replayed events are ignored
+        Set<Long> changed = paymentService.applyLockedOutcomes(outcomes);
+        eventByPayment.forEach((paymentId, eventId) -> {
+            if (changed.contains(paymentId)) {
+                applied.add(eventId);
+            } else {
+                ignored.add(eventId);
+            }
+        });
+
+        if (!applied.isEmpty()) {
+            webhookEventRepository.markProcessed(applied, PaymentWebhookEvent.State.APPLIED, now);
+            appliedCounter.increment(applied.size());
+        }
+        if (!ignored.isEmpty()) {
+            webhookEventRepository.markProcessed(ignored, PaymentWebhookEvent.State.IGNORED, now);
+            ignoredCounter.increment(ignored.size());
+        }
+        // Out of the way of newer events until the next attempt, so orphans cannot stall the inbox
+        if (!deferred.isEmpty()) {
+            webhookEventRepository.defer(deferred, now.plus(Duration.ofMillis(orphanRetryMs)));
+        }
+
+        if (!applied.isEmpty()) {
+            logger.info("Applied {} webhook events ({} ignored, {} deferred)",
+                    applied.size(), ignored.size(), deferred.size());
+        }
+        return applied.size() + ignored.size() + deferred.size();
+    }
+
+    private Map<String, Payment> lockPayments(Iterable<PaymentWebhookEvent> events) {
+        Set<String> stripeIntents = new HashSet<>();
+        Set<String> paypalOrders = new HashSet<>();
+        for (PaymentWebhookEvent event : events) {
+            if (event.getGateway() == Payment.PaymentMethod.STRIPE) {
+                stripeIntents.add(event.getReference());
+            } else if (event.getGateway() == Payment.PaymentMethod.PAYPAL) {
+                paypalOrders.add(event.getReference());
+            }
+        }
+
+        Map<String, Payment> payments = new HashMap<>();
+        if (!stripeIntents.isEmpty()) {
+            for (Payment payment : paymentRepository.lockByStripePaymentIntentIds(stripeIntents)) {
+                payments.put(Payment.PaymentMethod.STRIPE + ":" + payment.getStripePaymentIntentId(), payment);
+            }
+        }
+        if (!paypalOrders.isEmpty()) {
+            for (Payment payment : paymentRepository.lockByPaypalOrderIds(paypalOrders)) {
+                payments.put(Payment.PaymentMethod.PAYPAL + ":" + payment.getPaypalOrderId(), payment);
+            }
+        }
+        return payments;
+    }
+
+    private static boolean isNewer(PaymentWebhookEvent candidate, PaymentWebhookEvent current) {
+        int byTime = candidate.getOccurredAt().compareTo(current.getOccurredAt());
+        return byTime != 0 ? byTime > 0 : candidate.getId() > current.getId();
+    }
+}
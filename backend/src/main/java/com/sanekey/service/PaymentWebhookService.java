@@ -0,0 +1,308 @@
+package com.sanekey.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sanekey.exception.CustomExceptionHandler.BusinessException;
+import com.sanekey.model.Payment;
+import com.sanekey.repository.PaymentWebhookEventRepository;
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.net.Webhook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.Signature;
+import java.security.cert.CertPathValidator;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Verifies Stripe and PayPal webhooks and appends them to the
+ * payment_webhook_events inbox. Ingestion is a single INSERT IGNORE so the
+ * gateway is acknowledged quickly and no transaction is open while a PayPal
+ * certificate is fetched; status changes are applied later in
+ * batches by PaymentWebhookApplier.
+ */
+@Service
+public class PaymentWebhookService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentWebhookService.class);
+
+    private static final long STRIPE_TOLERANCE_SECONDS = 300;
+
+    private static final long PAYPAL_TOLERANCE_SECONDS = 300;
+
+    // Common names of the certificates PayPal signs webhook transmissions with
+    private static final Set<String> PAYPAL_SIGNING_NAMES = Set.of(
+            "messageverificationcerts.paypal.com", "messageverificationcerts.sandbox.paypal.com");
+
+    @Autowired
+    private PaymentWebhookEventRepository webhookEventRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${stripe.webhook.secret:}")
+    private String stripeWebhookSecret;
+
+    @Value("${paypal.webhook.id:}")
+    private String paypalWebhookId;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    // PayPal signing certificates by URL; there are only a handful in rotation
+    private final Map<String, X509Certificate> paypalCertificates = new ConcurrentHashMap<>();
+
+    /**
+     * Verify and enqueue a Stripe event. Returns false for a duplicate delivery.
+     */
+    public boolean ingestStripeEvent(String payload, String signatureHeader) {
+        if (stripeWebhookSecret == null || stripeWebhookSecret.isEmpty()) {
+            throw new BusinessException("Stripe webhooks are not configured", HttpStatus.SERVICE_UNAVAILABLE, "Webhook Disabled");
+        }
+        try {
+            Webhook.Signature.verifyHeader(payload, signatureHeader, stripeWebhookSecret, STRIPE_TOLERANCE_SECONDS);
+        } catch (SignatureVerificationException e) {
+            throw new BusinessException("Invalid Stripe signature", HttpStatus.BAD_REQUEST, "Invalid Signature");
+        }
+
+        JsonNode event = readTree(payload);
+        String type = event.path("type").asText();
+        Payment.PaymentStatus target = switch (type) {
+            case "payment_intent.succeeded" -> Payment.PaymentStatus.COMPLETED;
+            case "payment_intent.payment_failed" -> Payment.PaymentStatus.FAILED;
+            case "payment_intent.canceled" -> Payment.PaymentStatus.CANCELLED;
+            default -> null;
+        };
+
+        return enqueue(Payment.PaymentMethod.STRIPE, event.path("id").asText(), type,
+                event.path("data").path("object").path("id").asText(null),
+                target, toLocalDateTime(Instant.ofEpochSecond(event.path("created").asLong())));
+    }
+
+    /**
+     * Verify and enqueue a PayPal event. Returns false for a duplicate delivery.
+     */
+    public boolean ingestPayPalEvent(String payload, HttpHeaders headers) {
+        if (paypalWebhookId == null || paypalWebhookId.isEmpty()) {
+            throw new BusinessException("PayPal webhooks are not configured", HttpStatus.SERVICE_UNAVAILABLE, "Webhook Disabled");
+        }
+        if (!verifyPayPalSignature(payload, headers)) {
+            throw new BusinessException("Invalid PayPal signature", HttpStatus.BAD_REQUEST, "Invalid Signature");
+        }
+
+        JsonNode event = readTree(payload);
+        String type = event.path("event_type").asText();
+        JsonNode resource = event.path("resource");
+
+        Payment.PaymentStatus target;
+        String orderId;
+        switch (type) {
+            case "PAYMENT.CAPTURE.COMPLETED" -> {
+                target = Payment.PaymentStatus.COMPLETED;
+                orderId = resource.path("supplementary_data").path("related_ids").path("order_id").asText(null);
+            }
+            case "PAYMENT.CAPTURE.DENIED", "PAYMENT.CAPTURE.DECLINED" -> {
+                target = Payment.PaymentStatus.FAILED;
+                orderId = resource.path("supplementary_data").path("related_ids").path("order_id").asText(null);
+            }
+            case "CHECKOUT.ORDER.VOIDED" -> {
+                target = Payment.PaymentStatus.CANCELLED;
+                orderId = resource.path("id").asText(null);
+            }
+            default -> {
+                target = null;
+                orderId = resource.path("id").asText(null);
+            }
+        }
+
+        String createTime = event.path("create_time").asText(null);
+        LocalDateTime occurredAt = createTime != null
+                ? toLocalDateTime(OffsetDateTime.parse(createTime).toInstant())
+                : LocalDateTime.now();
+
+        return enqueue(Payment.PaymentMethod.PAYPAL, event.path("id").asText(), type, orderId, target, occurredAt);
+    }
+
+    private boolean enqueue(Payment.PaymentMethod gateway, String eventId, String type, String reference,
+                            Payment.PaymentStatus target, LocalDateTime occurredAt) {
+        if (eventId == null || eventId.isEmpty()) {
+            throw new BusinessException("Webhook event has no id", HttpStatus.BAD_REQUEST, "Invalid Event");
+        }
+
+        // Events that do not move a payment are acknowledged without being stored
+        if (target == null || reference == null) {
+            logger.debug("Ignoring {} webhook {} of type {}", gateway, eventId, type);
+            return true;
+        }
+
+        int inserted = webhookEventRepository.insertIgnore(gateway.name(), eventId, type, reference,
+                target.name(), occurredAt, LocalDateTime.now());
+        if (inserted == 0) {
+            logger.debug("Duplicate {} webhook {}", gateway, eventId);
+        }
+        return inserted > 0;
+    }
+
+    /**
+     * Offline PayPal verification: the transmission signature is an RSA/SHA-256
+     * signature over transmissionId|transmissionTime|webhookId|crc32(body),
+     * made with the certificate named in PAYPAL-CERT-URL. Transmissions sent
+     * more than PAYPAL_TOLERANCE_SECONDS away from now are rejected, like
+     * Stripe's, so a captured delivery cannot be replayed later.
+     */
+    private boolean verifyPayPalSignature(String payload, HttpHeaders headers) {
+        String transmissionId = headers.getFirst("PAYPAL-TRANSMISSION-ID");
+        String transmissionTime = headers.getFirst("PAYPAL-TRANSMISSION-TIME");
+        String transmissionSig = headers.getFirst("PAYPAL-TRANSMISSION-SIG");
+        String certUrl = headers.getFirst("PAYPAL-CERT-URL");
+        if (transmissionId == null || transmissionTime == null || transmissionSig == null || certUrl == null) {
+            return false;
+        }
+
+        try {
+            Instant sentAt = OffsetDateTime.parse(transmissionTime).toInstant();
+            if (Math.abs(Duration.between(sentAt, Instant.now()).getSeconds()) > PAYPAL_TOLERANCE_SECONDS) {
+                logger.warn("PayPal webhook {} sent at {} is outside the tolerance window", transmissionId, transmissionTime);
+                return false;
+            }
+
+            CRC32 crc = new CRC32();
+            byte[] body = payload.getBytes(StandardCharsets.UTF_8);
+            crc.update(body, 0, body.length);
+            String message = transmissionId + "|" + transmissionTime + "|" + paypalWebhookId + "|" + crc.getValue();
+
+            Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initVerify(paypalCertificate(certUrl));
+            signature.update(message.getBytes(StandardCharsets.UTF_8));
+            return signature.verify(Base64.getDecoder().decode(transmissionSig));
+        } catch (Exception e) {
+            logger.warn("PayPal webhook signature check failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private X509Certificate paypalCertificate(String certUrl) throws Exception {
+        X509Certificate cached = paypalCertificates.get(certUrl);
+        if (cached != null) {
+            cached.checkValidity();
+            return cached;
+        }
+
+        // Only fetch certificates from PayPal's own API hosts
+        URI uri = URI.create(certUrl);
+        String host = uri.getHost();
+        if (!"https".equals(uri.getScheme()) || host == null
+                || !(host.equals("api.paypal.com") || host.equals("api-m.paypal.com")
+                     || host.equals("api.sandbox.paypal.com") || host.equals("api-m.sandbox.paypal.com"))) {
+            throw new SecurityException("Untrusted certificate URL: " + certUrl);
+        }
+
+        HttpResponse<byte[]> response = httpClient.send(
+                HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(5)).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Certificate download returned " + response.statusCode());
+        }
+
+        CertificateFactory factory = CertificateFactory.getInstance("X.509");
+        List<X509Certificate> chain = new ArrayList<>();
+        for (Certificate certificate : factory.generateCertificates(new ByteArrayInputStream(response.body()))) {
+            chain.add((X509Certificate) certificate);
+        }
+        if (chain.isEmpty()) {
+            throw new SecurityException("No certificate at " + certUrl);
+        }
+        X509Certificate certificate = chain.get(0);
+        certificate.checkValidity();
+        validateChain(factory, chain);
+        if (!PAYPAL_SIGNING_NAMES.contains(commonName(certificate))) {
+            throw new SecurityException("Not a PayPal webhook signing certificate: " + certificate.getSubjectX500Principal());
+        }
+        paypalCertificates.put(certUrl, certificate);
+        return certificate;
+    }
+
+    /**
+     * Check the downloaded certificate chains up to a root in the JVM's
+     * trust store. Revocation is not checked; a signing certificate PayPal
+     * revokes is replaced at a new URL.
+     */
+    private static void validateChain(CertificateFactory factory, List<X509Certificate> chain) throws Exception {
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init((KeyStore) null);
+        Set<TrustAnchor> anchors = new HashSet<>();
+        for (TrustManager trustManager : trustManagerFactory.getTrustManagers()) {
+            if (trustManager instanceof X509TrustManager x509TrustManager) {
+                for (X509Certificate root : x509TrustManager.getAcceptedIssuers()) {
+                    anchors.add(new TrustAnchor(root, null));
+                }
+            }
+        }
+
+        // The path excludes any root the bundle carries; the trust anchor stands in for it
+        List<X509Certificate> path = new ArrayList<>(chain);
+        X509Certificate last = path.get(path.size() - 1);
+        if (path.size() > 1 && last.getSubjectX500Principal().equals(last.getIssuerX500Principal())) {
+            path.remove(path.size() - 1);
+        }
+        PKIXParameters parameters = new PKIXParameters(anchors);
+        parameters.setRevocationEnabled(false);
+        CertPathValidator.getInstance("PKIX").validate(factory.generateCertPath(path), parameters);
+    }
+
+    private static String commonName(X509Certificate certificate) throws Exception {
+        for (Rdn rdn : new LdapName(certificate.getSubjectX500Principal().getName()).getRdns()) {
+            if ("CN".equalsIgnoreCase(rdn.getType())) {
+                return rdn.getValue().toString();
+            }
+        }
+        return null;
+    }
+
+    private JsonNode readTree(String payload) {
+        try {
+            return objectMapper.readTree(payload);
+        } catch (Exception e) {
+            throw new BusinessException("Malformed webhook payload", HttpStatus.BAD_REQUEST, "Invalid Event");
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,159 @@
+package com.sanekey.service;
+
+import com.sanekey.model.ProductRatingStats;
+import com.sanekey.repository.ProductRatingStatsRepository;
+import com.sanekey.repository.ProductReviewRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains per-product rating stats. Deltas are applied with upserts inside
+ * the caller's transaction, so the stats commit or roll back together with
+ * the review change; a periodic rebuild repairs any drift.
+ */
+@Service
+public class ProductRatingStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductRatingStatsService.class);
+
+    @Autowired
+    private ProductRatingStatsRepository statsRepository;
+
+    @Autowired
+    private ProductReviewRepository reviewRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${sanekey.app.reviewStats.rebuildBatch:500}")
+    private int rebuildBatch;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAdded(String productId, int rating) {
+        applyDelta(productId, 1, rating, rating, 1);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordRemoved(String productId, int rating) {
+        applyDelta(productId, -1, -rating, rating, -1);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordRatingChanged(String productId, int oldRating, int newRating) {
+        if (oldRating == newRating) {
+            return;
+        }
+        long[] stars = new long[6];
+        stars[oldRating]--;
+        stars[newRating]++;
+        statsRepository.applyDelta(productId, 0, newRating - oldRating,
+                stars[1], stars[2], stars[3], stars[4], stars[5]);
+    }
+
+    /**
+     * Average, total and star distribution for a product, from one primary-key read
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getSummary(String productId) {
+        ProductRatingStats stats = statsRepository.findById(productId).orElseGet(ProductRatingStats::new);
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("averageRating", stats.getAverageRating());
+        summary.put("totalReviews", stats.getReviewCount());
+
+        Map<Integer, Long> ratingDistribution = new HashMap<>();
+        for (int i = 1; i <= 5; i++) {
+            ratingDistribution.put(i, stats.countFor(i));
+        }
+        summary.put("ratingDistribution", ratingDistribution);
+        return summary;
+    }
+
+    /**
+     * Recompute all product stats from the reviews table, a batch of products
+     * per short transaction: each reviewed product's row is overwritten with
+     * its recomputed counts, then rows of products with no reviews left are
+     * removed. A batch locks only its own products' reviews and stats, so
+     * review writes elsewhere carry on, and a write to a product in the batch
+     * waits for it and then applies its delta on top.
+     */
+    public void rebuild() {
+        long products = 0;
+        String afterId = "";
+        while (true) {
+            List<String> batch = statsRepository.findReviewedProductIdsAfter(afterId, rebuildBatch);
+            if (batch.isEmpty()) {
+                break;
+            }
+            transactionTemplate.executeWithoutResult(status -> statsRepository.rebuild(batch));
+            products += batch.size();
+            if (batch.size() < rebuildBatch) {
+                break;
+            }
+            afterId = batch.get(batch.size() - 1);
+        }
+
+        long removed = 0;
+        afterId = "";
+        while (true) {
+            List<String> batch = statsRepository.findStatsProductIdsAfter(afterId, rebuildBatch);
+            if (batch.isEmpty()) {
+                break;
+            }
+            Integer deleted = transactionTemplate.execute(status -> statsRepository.deleteUnreviewed(batch));
+            removed += deleted != null ? deleted : 0;
+            if (batch.size() < rebuildBatch) {
+                break;
+            }
+            afterId = batch.get(batch.size() - 1);
+        }
+        logger.info("Rebuilt product rating stats for {} products, removed {} without reviews", products, removed);
+    }
+
+    /**
+     * Backfill the stats the first time the application starts with existing reviews
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (statsRepository.count() == 0 && reviewRepository.count() > 0) {
+            rebuild();
+        }
+    }
+
+    @Scheduled(cron = "${sanekey.app.reviewStats.rebuildCron:-}")
+    public void scheduledRebuild() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            logger.error("Failed to rebuild product rating stats: {}", e.getMessage());
+        }
+    }
+
+    private void applyDelta(String productId, long count, long sum, int rating, long starDelta) {
+        long[] stars = new long[6];
+        stars[rating] = starDelta;
+        statsRepository.applyDelta(productId, count, sum, stars[1], stars[2], stars[3], stars[4], stars[5]);
+    }
+}
@@ -1,14 +1,23 @@
 package com.sanekey.service;
 
 import com.sanekey.model.ProductReview;
+import com.sanekey.model.ReviewView;
 import com.sanekey.model.User;
 import com.sanekey.repository.ProductReviewRepository;
+import com.sanekey.repository.ReviewDeletionRepository;
+import com.sanekey.repository.ReviewSort;
+import com.sanekey.search.ProductReviewIndex;
+import com.sanekey.util.KeysetCursor;
+import com.sanekey.util.KeysetPage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -20,10 +29,30 @@ public class ProductReviewService {
     @Autowired
     private ProductReviewRepository reviewRepository;
     
+    @Autowired
+    private ProductRatingStatsService ratingStatsService;
+    
+    @Autowired
+    private HelpfulVoteService helpfulVoteService;
+    
+    @Autowired
+    private ReviewSearchService searchService;
+    
+    @Autowired
+    private ReviewDeletionRepository reviewDeletionRepository;
+    
+    @Value("${sanekey.app.reviews.defaultPageSize:20}")
+    private int defaultPageSize;
+    
+    @Value("${sanekey.app.reviews.maxPageSize:100}")
+    private int maxPageSize;
+    
     /**
      * Create a new review
      */
     public ProductReview createReview(User user, String productId, Integer rating, String title, String comment, List<String> images) {
+        validateRating(rating);
+        
         // Check if user has already reviewed this product
         if (reviewRepository.existsByProductIdAndUser(productId, user)) {
             throw new RuntimeException("You have already reviewed this product");
@@ -33,14 +62,20 @@ public class ProductReviewService {
         review.setImages(images);
         review.setIsVerified(true); // In real app, this would be based on purchase history
         
-        return reviewRepository.save(review);
+        ProductReview saved = reviewRepository.save(review);
+        ratingStatsService.recordAdded(productId, rating);
+        searchService.indexAfterCommit(productId, saved.getId(), title, comment);
+        return saved;
     }
     
     /**
      * Update an existing review
      */
     public ProductReview updateReview(Long reviewId, User user, Integer rating, String title, String comment, List<String> images) {
-        ProductReview review = reviewRepository.findById(reviewId)
+        validateRating(rating);
+        
+        // Locked so concurrent edits cannot both apply a delta from the same old rating
+        ProductReview review = reviewRepository.findByIdForUpdate(reviewId)
                 .orElseThrow(() -> new RuntimeException("Review not found"));
         
         // Check if user owns this review
@@ -48,49 +83,105 @@ public class ProductReviewService {
             throw new RuntimeException("You can only update your own reviews");
         }
         
+        ratingStatsService.recordRatingChanged(review.getProductId(), review.getRating(), rating);
         review.setRating(rating);
         review.setTitle(title);
         review.setComment(comment);
         review.setImages(images);
         review.setUpdatedAt(LocalDateTime.now());
         
-        return reviewRepository.save(review);
+        ProductReview saved = reviewRepository.save(review);
+        searchService.indexAfterCommit(saved.getProductId(), saved.getId(), title, comment);
+        return saved;
     }
     
     /**
-     * Delete a review
+     * Checked up front, since the rating stats are updated before the review is flushed
      */
-    public void deleteReview(Long reviewId, User user) {
-        ProductReview review = reviewRepository.findById(reviewId)
+    private static void validateRating(Integer rating) {
+        if (rating == null || rating < 1 || rating > 5) {
+            throw new RuntimeException("Rating must be between 1 and 5");
+        }
+    }
+    
+    /**
+     * Delete a review; admins may delete anyone's
+     */
+    public void deleteReview(Long reviewId, User user, boolean admin) {
+        ProductReview review = reviewRepository.findByIdForUpdate(reviewId)
                 .orElseThrow(() -> new RuntimeException("Review not found"));
         
         // Check if user owns this review or is admin
-        if (!review.getUser().getId().equals(user.getId()) && !user.getRole().equals(User.Role.ADMIN)) {
+        if (!review.getUser().getId().equals(user.getId()) && !admin) {
             throw new RuntimeException("You can only delete your own reviews");
         }
         
+        helpfulVoteService.forgetReview(reviewId);
         reviewRepository.delete(review);
+        ratingStatsService.recordRemoved(review.getProductId(), review.getRating());
+        // Other nodes drop it from their search indexes when they read the tombstone
+        reviewDeletionRepository.insert(reviewId, review.getProductId(), LocalDateTime.now());
+        searchService.removeAfterCommit(review.getProductId(), reviewId);
     }
     
     /**
-     * Get reviews for a product
+     * Get one keyset page of a product's reviews in the given sort order,
+     * optionally only those with one star rating
      */
-    public List<ProductReview> getReviewsByProductId(String productId) {
-        return reviewRepository.findByProductIdOrderByCreatedAtDesc(productId);
+    @Transactional(readOnly = true)
+    public KeysetPage<ReviewView> getProductReviewsPage(String productId, Integer rating, ReviewSort sort,
+                                                        String cursor, Integer limit) {
+        int pageSize = pageSize(limit);
+        List<ReviewSort.Order> orders = sort.getOrders();
+        
+        Object[] after = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] keys = KeysetCursor.decode(cursor, orders.size());
+            after = new Object[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                after[i] = orders.get(i).key().parse(keys[i]);
+            }
+        }
+        
+        List<ReviewView> rows = reviewRepository.findProductReviewsPage(productId, rating, sort, after, pageSize + 1);
+        KeysetPage<ReviewView> page = KeysetPage.of(rows, pageSize, review -> {
+            Object[] keys = new Object[orders.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = orders.get(i).key().read(review);
+            }
+            return KeysetCursor.encode(keys);
+        });
+        reviewRepository.attachImages(page.getItems());
+        return page;
     }
     
     /**
-     * Get reviews by product ID and rating
+     * Get one keyset page of a user's reviews, newest first
      */
-    public List<ProductReview> getReviewsByProductIdAndRating(String productId, Integer rating) {
-        return reviewRepository.findByProductIdAndRatingOrderByCreatedAtDesc(productId, rating);
+    @Transactional(readOnly = true)
+    public KeysetPage<ReviewView> getUserReviewsPage(Long userId, String cursor, Integer limit) {
+        int pageSize = pageSize(limit);
+        Pageable fetch = PageRequest.of(0, pageSize + 1);
+        
+        List<ReviewView> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = reviewRepository.findUserReviewsPage(userId, fetch);
+        } else {
+            String[] keys = KeysetCursor.decode(cursor, 2);
+            rows = reviewRepository.findUserReviewsPageAfter(userId, LocalDateTime.parse(keys[0]),
+                    Long.parseLong(keys[1]), fetch);
+        }
+        KeysetPage<ReviewView> page = KeysetPage.of(rows, pageSize,
+                review -> KeysetCursor.encode(review.getCreatedAt(), review.getId()));
+        reviewRepository.attachImages(page.getItems());
+        return page;
     }
     
-    /**
-     * Get reviews by user
-     */
-    public List<ProductReview> getReviewsByUser(User user) {
-        return reviewRepository.findByUserOrderByCreatedAtDesc(user);
+    private int pageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return Math.min(defaultPageSize, maxPageSize);
+        }
+        return Math.min(limit, maxPageSize);
     }
     
     /**
@@ -100,66 +191,27 @@ public class ProductReviewService {
         return reviewRepository.findById(id);
     }
     
-    /**
-     * Mark review as helpful
-     */
-    public ProductReview markReviewAsHelpful(Long reviewId) {
-        ProductReview review = reviewRepository.findById(reviewId)
-                .orElseThrow(() -> new RuntimeException("Review not found"));
-        
-        review.setHelpfulCount(review.getHelpfulCount() + 1);
-        return reviewRepository.save(review);
-    }
-    
     /**
      * Get product rating summary
      */
+    @Transactional(readOnly = true)
     public Map<String, Object> getProductRatingSummary(String productId) {
-        Map<String, Object> summary = new HashMap<>();
-        
-        // Average rating
-        Double averageRating = reviewRepository.getAverageRatingByProductId(productId);
-        summary.put("averageRating", averageRating != null ? averageRating : 0.0);
-        
-        // Total reviews
-        Long totalReviews = reviewRepository.countByProductId(productId);
-        summary.put("totalReviews", totalReviews);
-        
-        // Rating distribution
-        List<Object[]> distribution = reviewRepository.getRatingDistributionByProductId(productId);
-        Map<Integer, Long> ratingDistribution = new HashMap<>();
-        for (int i = 1; i <= 5; i++) {
-            ratingDistribution.put(i, 0L);
-        }
-        for (Object[] row : distribution) {
-            Integer rating = (Integer) row[0];
-            Long count = (Long) row[1];
-            ratingDistribution.put(rating, count);
-        }
-        summary.put("ratingDistribution", ratingDistribution);
-        
-        return summary;
-    }
-    
-    /**
-     * Get most helpful reviews
-     */
-    public List<ProductReview> getMostHelpfulReviews(String productId) {
-        return reviewRepository.findByProductIdOrderByHelpfulCountDescCreatedAtDesc(productId);
+        return ratingStatsService.getSummary(productId);
     }
     
     /**
-     * Get verified reviews
+     * Search a product's reviews, best match first; ranking comes from the
+     * in-memory index, the rows from one query plus one for their images
      */
-    public List<ProductReview> getVerifiedReviews(String productId) {
-        return reviewRepository.findByProductIdAndIsVerifiedTrueOrderByCreatedAtDesc(productId);
-    }
-    
-    /**
-     * Search reviews
-     */
-    public List<ProductReview> searchReviews(String productId, String searchTerm) {
-        return reviewRepository.searchReviewsByProductId(productId, searchTerm);
+    @Transactional(readOnly = true)
+    public List<ReviewView> searchReviews(String productId, String query, Integer limit) {
+        List<Long> ids = new ArrayList<>();
+        for (ProductReviewIndex.Hit hit : searchService.search(productId, query, pageSize(limit))) {
+            ids.add(hit.reviewId());
+        }
+        List<ReviewView> reviews = reviewRepository.findReviewViews(ids);
+        reviewRepository.attachImages(reviews);
+        return reviews;
     }
     
     /**
@@ -0,0 +1,163 @@
+package com.sanekey.service;
+
+import com.sanekey.model.Payment;
+import com.sanekey.model.PaymentRevenueRollup;
+import com.sanekey.repository.PaymentRevenueRollupRepository;
+import com.sanekey.repository.UserPaymentTotalRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maintains daily/monthly revenue rollups and per-user lifetime totals.
+ * Deltas are applied with upserts inside the caller's transaction, so the
+ * aggregates commit or roll back together with the payment status change.
+ */
+@Service
+public class RevenueRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RevenueRollupService.class);
+
+    @Autowired
+    private PaymentRevenueRollupRepository rollupRepository;
+
+    @Autowired
+    private UserPaymentTotalRepository userTotalRepository;
+
+    /**
+     * Record a payment status change. Only COMPLETED, REFUNDED, FAILED and
+     * CANCELLED are aggregated; PENDING and PROCESSING are transient. Call
+     * it before the payment's own timestamps are refreshed: leaving an
+     * aggregated status takes the payment out of the bucket it entered, the
+     * completion time for COMPLETED and the last update for the others,
+     * just as {@link #rebuild()} buckets it.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransition(Payment payment, Payment.PaymentStatus from, Payment.PaymentStatus to) {
+        if (from == to) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        BigDecimal amount = payment.getAmount();
+
+        if (isAggregated(from)) {
+            LocalDateTime entered = payment.getUpdatedAt() != null ? payment.getUpdatedAt() : now;
+            LocalDateTime at = from == Payment.PaymentStatus.COMPLETED ? completionTime(payment, entered) : entered;
+            applyRollupDelta(payment, from, at, -1, amount.negate());
+            applyUserTotalDelta(payment, from, -1, amount.negate());
+        }
+
+        if (isAggregated(to)) {
+            LocalDateTime at = to == Payment.PaymentStatus.COMPLETED ? completionTime(payment, now) : now;
+            applyRollupDelta(payment, to, at, 1, amount);
+            applyUserTotalDelta(payment, to, 1, amount);
+        }
+    }
+
+    /**
+     * Completed revenue for one calendar month
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal getMonthlyRevenue(int year, int month) {
+        return sum(PaymentRevenueRollup.PERIOD_MONTH, LocalDate.of(year, month, 1), Payment.PaymentStatus.COMPLETED);
+    }
+
+    /**
+     * Completed revenue for one day
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal getDailyRevenue(LocalDate day) {
+        return sum(PaymentRevenueRollup.PERIOD_DAY, day, Payment.PaymentStatus.COMPLETED);
+    }
+
+    /**
+     * Count and amount per status for one period
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getPeriodSummary(String periodType, LocalDate periodStart) {
+        Map<String, Object> summary = new HashMap<>();
+        for (Payment.PaymentStatus status : new Payment.PaymentStatus[] {
+                Payment.PaymentStatus.COMPLETED, Payment.PaymentStatus.REFUNDED,
+                Payment.PaymentStatus.FAILED, Payment.PaymentStatus.CANCELLED}) {
+            Long count = rollupRepository.sumCount(periodType, periodStart, status.name());
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("count", count != null ? count : 0L);
+            entry.put("amount", sum(periodType, periodStart, status));
+            summary.put(status.name(), entry);
+        }
+        return summary;
+    }
+
+    /**
+     * Lifetime completed amount for a user
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal getTotalAmountByUser(Long userId) {
+        return userTotalRepository.findById(userId)
+                .map(total -> total.getCompletedAmount())
+                .orElse(BigDecimal.ZERO);
+    }
+
+    /**
+     * Recompute all rollups and user totals from the payments table in
+     * place: every row is overwritten with its recomputed value and only
+     * rows no payment backs any more are removed. Each statement reads
+     * payments with shared locks before touching an aggregate row, in the
+     * same order a status change takes its locks, so concurrent changes
+     * wait for the rebuild to commit and then apply their deltas on top.
+     */
+    @Transactional
+    public void rebuild() {
+        rollupRepository.rebuildDaily();
+        int staleDaily = rollupRepository.deleteStaleDaily();
+        rollupRepository.rebuildMonthlyFromDaily();
+        int staleMonthly = rollupRepository.deleteStaleMonthly();
+        userTotalRepository.rebuild();
+        int staleUsers = userTotalRepository.deleteStale();
+        logger.info("Rebuilt revenue rollups and user totals, removed {} daily rows, {} monthly rows and {} user totals",
+                staleDaily, staleMonthly, staleUsers);
+    }
+
+    private void applyRollupDelta(Payment payment, Payment.PaymentStatus status, LocalDateTime at,
+                                  long countDelta, BigDecimal amountDelta) {
+        String method = payment.getMethod() != null ? payment.getMethod().name() : "UNKNOWN";
+        LocalDate day = at.toLocalDate();
+        rollupRepository.applyDelta(PaymentRevenueRollup.PERIOD_DAY, day, payment.getCurrency(),
+                method, status.name(), countDelta, amountDelta);
+        rollupRepository.applyDelta(PaymentRevenueRollup.PERIOD_MONTH, day.withDayOfMonth(1), payment.getCurrency(),
+                method, status.name(), countDelta, amountDelta);
+    }
+
+    private void applyUserTotalDelta(Payment payment, Payment.PaymentStatus status,
+                                     long countDelta, BigDecimal amountDelta) {
+        if (status == Payment.PaymentStatus.COMPLETED) {
+            userTotalRepository.applyDelta(payment.getUser().getId(), countDelta, amountDelta, 0, BigDecimal.ZERO);
+        } else if (status == Payment.PaymentStatus.REFUNDED) {
+            userTotalRepository.applyDelta(payment.getUser().getId(), 0, BigDecimal.ZERO, countDelta, amountDelta);
+        }
+    }
+
+    private static boolean isAggregated(Payment.PaymentStatus status) {
+        return status == Payment.PaymentStatus.COMPLETED || status == Payment.PaymentStatus.REFUNDED
+                || status == Payment.PaymentStatus.FAILED || status == Payment.PaymentStatus.CANCELLED;
+    }
+
+    private BigDecimal sum(String periodType, LocalDate periodStart, Payment.PaymentStatus status) {
+        BigDecimal total = rollupRepository.sumAmount(periodType, periodStart, status.name());
+        return total != null ? total : BigDecimal.ZERO;
+    }
+
+    private static LocalDateTime completionTime(Payment payment, LocalDateTime fallback) {
+        return payment.getCompletedAt() != null ? payment.getCompletedAt() : fallback;
+    }
+}
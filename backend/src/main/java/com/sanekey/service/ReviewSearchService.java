@@ -0,0 +1,319 @@
+package com.sanekey.service;
+
+import com.sanekey.repository.ReviewDeletionRepository;
+import com.sanekey.search.ProductReviewIndex;
+import com.sanekey.search.ReviewTextAnalyzer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Full-text search over review titles and comments, served from per-product
+ * inverted indexes held in memory. The indexes are built from the database
+ * when the application starts and kept current by the review service, which
+ * re-indexes a review after each create, update or delete commits.
+ *
+ * Each node keeps its own indexes, so changes made on other nodes are caught
+ * up every refreshMs: reviews whose updated_at moved since the last refresh
+ * are re-indexed, and deletions are read from the review_deletions
+ * tombstones. Both reads look back refreshLookbackMs further, to cover
+ * transactions that committed late and clock skew between nodes.
+ */
+@Service
+public class ReviewSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReviewSearchService.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ReviewDeletionRepository reviewDeletionRepository;
+
+    @Value("${sanekey.app.reviewSearch.rebuildBatch:1000}")
+    private int rebuildBatch;
+
+    @Value("${sanekey.app.reviewSearch.refreshLookbackMs:60000}")
+    private long refreshLookbackMs;
+
+    // Tombstones older than this are purged after a nightly rebuild
+    @Value("${sanekey.app.reviewSearch.tombstoneRetentionHours:48}")
+    private long tombstoneRetentionHours;
+
+    private volatile Map<String, ProductReviewIndex> indexes = new ConcurrentHashMap<>();
+
+    // Changes made while a rebuild is reading the table, replayed onto its result
+    private final Object changeLock = new Object();
+    private List<Change> pendingChanges;
+
+    // Newest updated_at the refresh has read; null until the first build
+    private volatile LocalDateTime caughtUpTo;
+
+    // Rows re-read within the lookback window, so unchanged ones are not re-indexed
+    private final Map<Long, LocalDateTime> refreshed = new HashMap<>();
+
+    private Timer searchTimer;
+
+    /**
+     * A review to index, or to remove when title and comment are both null
+     */
+    private record Change(String productId, long reviewId, String title, String comment) {
+        boolean isRemoval() {
+            return title == null && comment == null;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        searchTimer = Timer.builder("sanekey.reviews.search").register(meterRegistry);
+        Gauge.builder("sanekey.reviews.search.indexed", this, service -> service.indexedReviews())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Best matching reviews of a product for a search string, highest score
+     * first
+     */
+    public List<ProductReviewIndex.Hit> search(String productId, String query, int limit) {
+        List<ReviewTextAnalyzer.QueryTerm> terms = ReviewTextAnalyzer.query(query);
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("Search query has no searchable words");
+        }
+        ProductReviewIndex index = indexes.get(productId);
+        if (index == null) {
+            return List.of();
+        }
+        return searchTimer.record(() -> index.search(terms, limit));
+    }
+
+    /**
+     * Index a review once the current transaction commits
+     */
+    public void indexAfterCommit(String productId, Long reviewId, String title, String comment) {
+        afterCommit(new Change(productId, reviewId, title != null ? title : "", comment != null ? comment : ""));
+    }
+
+    /**
+     * Remove a review from the index once the current transaction commits
+     */
+    public void removeAfterCommit(String productId, Long reviewId) {
+        afterCommit(new Change(productId, reviewId, null, null));
+    }
+
+    private void afterCommit(Change change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(change);
+                }
+            });
+        } else {
+            record(change);
+        }
+    }
+
+    private void record(Change change) {
+        synchronized (changeLock) {
+            apply(indexes, change);
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+        }
+    }
+
+    private static void apply(Map<String, ProductReviewIndex> target, Change change) {
+        if (change.isRemoval()) {
+            ProductReviewIndex index = target.get(change.productId());
+            if (index != null) {
+                index.remove(change.reviewId());
+            }
+        } else {
+            target.computeIfAbsent(change.productId(), id -> new ProductReviewIndex())
+                    .put(change.reviewId(), change.title(), change.comment());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            logger.error("Failed to build review search indexes: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${sanekey.app.reviewSearch.rebuildCron:-}")
+    public void scheduledRebuild() {
+        try {
+            rebuild();
+            int purged = reviewDeletionRepository.deleteOlderThan(
+                    LocalDateTime.now().minusHours(tombstoneRetentionHours));
+            logger.info("Purged {} review deletion tombstones", purged);
+        } catch (RuntimeException e) {
+            logger.error("Failed to rebuild review search indexes: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${sanekey.app.reviewSearch.refreshMs:5000}",
+               initialDelayString = "${sanekey.app.reviewSearch.refreshMs:5000}")
+    public void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            logger.error("Failed to refresh review search indexes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Catch up with reviews created, updated or deleted since the last
+     * refresh, wherever they were written. Reviews are read in
+     * (updated_at, id) order a batch at a time, then the tombstones of the
+     * same window are applied, so a review deleted after it was read is
+     * removed again. Does nothing until the indexes have been built once.
+     */
+    public synchronized void refresh() {
+        LocalDateTime from = caughtUpTo;
+        if (from == null) {
+            return;
+        }
+        from = from.minus(refreshLookbackMs, ChronoUnit.MILLIS);
+
+        LocalDateTime newest = caughtUpTo;
+        LocalDateTime afterUpdatedAt = from;
+        long afterId = 0;
+        int reindexed = 0;
+        while (true) {
+            List<Map.Entry<Change, LocalDateTime>> batch = jdbcTemplate.query(
+                    "SELECT id, product_id, title, comment, updated_at FROM product_reviews " +
+                    "WHERE updated_at > ? OR (updated_at = ? AND id > ?) ORDER BY updated_at, id LIMIT ?",
+                    (rs, row) -> Map.entry(
+                            new Change(rs.getString("product_id"), rs.getLong("id"),
+                                    rs.getString("title") != null ? rs.getString("title") : "",
+                                    rs.getString("comment") != null ? rs.getString("comment") : ""),
+                            rs.getTimestamp("updated_at").toLocalDateTime()),
+                    Timestamp.valueOf(afterUpdatedAt), Timestamp.valueOf(afterUpdatedAt), afterId, rebuildBatch);
+            for (Map.Entry<Change, LocalDateTime> row : batch) {
+                Change change = row.getKey();
+                LocalDateTime updatedAt = row.getValue();
+                if (!updatedAt.equals(refreshed.put(change.reviewId(), updatedAt))) {
+                    record(change);
+                    reindexed++;
+                }
+                if (updatedAt.isAfter(newest)) {
+                    newest = updatedAt;
+                }
+            }
+            if (batch.size() < rebuildBatch) {
+                break;
+            }
+            Map.Entry<Change, LocalDateTime> last = batch.get(batch.size() - 1);
+            afterUpdatedAt = last.getValue();
+            afterId = last.getKey().reviewId();
+        }
+
+        List<Change> deletions = jdbcTemplate.query(
+                "SELECT review_id, product_id FROM review_deletions WHERE deleted_at >= ?",
+                (rs, row) -> new Change(rs.getString("product_id"), rs.getLong("review_id"), null, null),
+                Timestamp.valueOf(from));
+        for (Change deletion : deletions) {
+            record(deletion);
+        }
+
+        caughtUpTo = newest;
+        LocalDateTime forgetBefore = newest.minus(refreshLookbackMs, ChronoUnit.MILLIS);
+        refreshed.values().removeIf(updatedAt -> updatedAt.isBefore(forgetBefore));
+        if (reindexed > 0) {
+            logger.debug("Review search refresh re-indexed {} reviews", reindexed);
+        }
+    }
+
+    /**
+     * Rebuild every product's index from product_reviews, reading the table
+     * in id order a batch at a time. Searches keep using the old indexes
+     * until the new ones are swapped in.
+     */
+    public void rebuild() {
+        synchronized (changeLock) {
+            if (pendingChanges != null) {
+                throw new IllegalStateException("Review search rebuild already running");
+            }
+            pendingChanges = new ArrayList<>();
+        }
+
+        long started = System.nanoTime();
+        // Anything updated after this is left to the refresh
+        LocalDateTime readFrom = LocalDateTime.now();
+        Map<String, ProductReviewIndex> rebuilt = new ConcurrentHashMap<>();
+        long reviews = 0;
+        try {
+            long afterId = 0;
+            while (true) {
+                List<Change> batch = jdbcTemplate.query(
+                        "SELECT id, product_id, title, comment FROM product_reviews WHERE id > ? ORDER BY id LIMIT ?",
+                        (rs, row) -> new Change(rs.getString("product_id"), rs.getLong("id"),
+                                rs.getString("title"), rs.getString("comment")),
+                        afterId, rebuildBatch);
+                for (Change change : batch) {
+                    apply(rebuilt, change);
+                }
+                reviews += batch.size();
+                if (batch.size() < rebuildBatch) {
+                    break;
+                }
+                afterId = batch.get(batch.size() - 1).reviewId();
+            }
+        } catch (RuntimeException e) {
+            synchronized (changeLock) {
+                pendingChanges = null;
+            }
+            throw e;
+        }
+
+        synchronized (changeLock) {
+            // Replaying is safe either way: a change already read by the rebuild just applies again
+            for (Change change : pendingChanges) {
+                apply(rebuilt, change);
+            }
+            pendingChanges = null;
+            indexes = rebuilt;
+            if (caughtUpTo == null) {
+                caughtUpTo = readFrom;
+            }
+        }
+        logger.info("Built review search indexes for {} reviews of {} products in {} ms",
+                reviews, rebuilt.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private long indexedReviews() {
+        long total = 0;
+        for (ProductReviewIndex index : indexes.values()) {
+            total += index.size();
+        }
+        return total;
+    }
+}
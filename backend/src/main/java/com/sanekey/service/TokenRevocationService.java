@@ -0,0 +1,236 @@
+package com.sanekey.service;
+
+import com.sanekey.config.JwtUtils;
+import com.sanekey.model.RevokedToken;
+import com.sanekey.repository.RevokedTokenRepository;
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory JWT denylist checked on every request without a database hit.
+ * Revoked token ids are kept as 64-bit fingerprints in buckets keyed by the
+ * token's expiry hour, so a lookup probes a single bucket and whole buckets
+ * are dropped once every token in them would have expired anyway. Entries
+ * are persisted to revoked_tokens for reload after a restart.
+ *
+ * Revocations made on other nodes are read every syncMs. revoked_at is
+ * stamped before the insert commits, so each sync reads syncLookbackMs
+ * further back than the last one, which must exceed the longest a revoking
+ * transaction can take to commit plus the clock skew between nodes.
+ * Re-reading a revocation already held is harmless.
+ */
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    private static final long BUCKET_MS = TimeUnit.HOURS.toMillis(1);
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Value("${sanekey.app.revocation.syncLookbackMs:120000}")
+    private long syncLookbackMs;
+
+    private final Map<Long, FingerprintSet> buckets = new ConcurrentHashMap<>();
+
+    private volatile LocalDateTime lastSync = LocalDateTime.now();
+
+    /**
+     * Reload still-valid revocations once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRevocations() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = revokedTokenRepository.findActiveRevocations(now);
+        rows.forEach(this::addRow);
+        lastSync = now;
+        logger.info("Loaded {} revoked tokens into the denylist", rows.size());
+    }
+
+    /**
+     * Revoke the given token until it expires. Returns false for tokens that
+     * are invalid or carry no id.
+     */
+    @Transactional
+    public boolean revokeToken(String token) {
+        Claims claims = jwtUtils.verifyJwtToken(token);
+        if (claims == null || claims.getId() == null || claims.getExpiration() == null) {
+            return false;
+        }
+
+        long expiresAtMs = claims.getExpiration().getTime();
+        add(claims.getId(), expiresAtMs);
+        revokedTokenRepository.save(new RevokedToken(claims.getId(), toLocalDateTime(expiresAtMs)));
+        return true;
+    }
+
+    /**
+     * Check whether verified claims belong to a revoked token
+     */
+    public boolean isRevoked(Claims claims) {
+        Date expiration = claims.getExpiration();
+        if (claims.getId() == null || expiration == null) {
+            return false;
+        }
+        FingerprintSet bucket = buckets.get(bucketOf(expiration.getTime()));
+        return bucket != null && bucket.contains(fingerprint(claims.getId()));
+    }
+
+    /**
+     * Number of revoked tokens currently held in memory
+     */
+    public int size() {
+        return buckets.values().stream().mapToInt(FingerprintSet::size).sum();
+    }
+
+    /**
+     * Pick up revocations made on other nodes
+     */
+    @Scheduled(fixedDelayString = "${sanekey.app.revocation.syncMs:30000}")
+    public void syncRevocations() {
+        LocalDateTime now = LocalDateTime.now();
+        revokedTokenRepository.findRevocationsSince(lastSync.minus(syncLookbackMs, ChronoUnit.MILLIS), now)
+                .forEach(this::addRow);
+        lastSync = now;
+    }
+
+    /**
+     * Drop buckets and rows whose tokens have all expired
+     */
+    @Scheduled(fixedDelayString = "${sanekey.app.revocation.purgeMs:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        long currentBucket = bucketOf(System.currentTimeMillis());
+        buckets.keySet().removeIf(bucket -> bucket < currentBucket);
+        int deleted = revokedTokenRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            logger.info("Purged {} expired token revocations", deleted);
+        }
+    }
+
+    private void addRow(Object[] row) {
+        LocalDateTime expiresAt = (LocalDateTime) row[1];
+        add((String) row[0], expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    private void add(String jti, long expiresAtMs) {
+        buckets.computeIfAbsent(bucketOf(expiresAtMs), key -> new FingerprintSet())
+                .add(fingerprint(jti));
+    }
+
+    private static long bucketOf(long epochMs) {
+        return epochMs / BUCKET_MS;
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMs) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMs), ZoneId.systemDefault());
+    }
+
+    /**
+     * 64-bit FNV-1a hash with a final avalanche step; never returns 0
+     */
+    private static long fingerprint(String jti) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < jti.length(); i++) {
+            hash ^= jti.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash != 0 ? hash : 1;
+    }
+
+    /**
+     * Open-addressing set of non-zero longs, about 8-16 bytes per entry
+     */
+    static final class FingerprintSet {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private long[] slots = new long[64];
+        private int size;
+
+        boolean contains(long fingerprint) {
+            lock.readLock().lock();
+            try {
+                long[] table = slots;
+                int mask = table.length - 1;
+                int index = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+                while (table[index] != 0) {
+                    if (table[index] == fingerprint) {
+                        return true;
+                    }
+                    index = (index + 1) & mask;
+                }
+                return false;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void add(long fingerprint) {
+            lock.writeLock().lock();
+            try {
+                if ((size + 1) * 2 > slots.length) {
+                    long[] old = slots;
+                    slots = new long[old.length * 2];
+                    size = 0;
+                    for (long value : old) {
+                        if (value != 0) {
+                            insert(value);
+                        }
+                    }
+                }
+                insert(fingerprint);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return size;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void insert(long fingerprint) {
+            int mask = slots.length - 1;
+            int index = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+            while (slots[index] != 0) {
+                if (slots[index] == fingerprint) {
+                    return;
+                }
+                index = (index + 1) & mask;
+            }
+            slots[index] = fingerprint;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.sanekey.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sanekey.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Size- and TTL-bounded cache of per-user token versions, so claims-only
+ * authentication only hits the database when an entry is missing or stale
+ */
+@Service
+public class TokenVersionCache {
+
+    // Version recorded for users that are missing or deactivated; never matches a token
+    private static final int REVOKED = -1;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${sanekey.app.tokenVersionCache.maxSize:10000}")
+    private long maxSize;
+
+    @Value("${sanekey.app.tokenVersionCache.ttlMs:60000}")
+    private long ttlMs;
+
+    private Cache<Long, Integer> versions;
+
+    @PostConstruct
+    public void init() {
+        versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, versions, "users.tokenVersions");
+    }
+
+    /**
+     * Check whether a token version is still the current one for an active
+     * user. Concurrent misses for the same user share a single load.
+     */
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        int version = versions.get(userId,
+                id -> userRepository.findActiveTokenVersionById(id).orElse(REVOKED));
+        return version == tokenVersion;
+    }
+
+    /**
+     * Drop the cached version after it was bumped in the database. Inside a
+     * transaction it is dropped again after commit, since a request in
+     * between may have cached the version that is about to be replaced.
+     */
+    public void invalidate(Long userId) {
+        versions.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    versions.invalidate(userId);
+                }
+            });
+        }
+    }
+}
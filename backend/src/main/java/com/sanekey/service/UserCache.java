@@ -0,0 +1,106 @@
+package com.sanekey.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sanekey.model.UserSnapshot;
+import com.sanekey.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Size- and TTL-bounded cache of user snapshots keyed by id, with an
+ * email-to-id index for lookups by email
+ */
+@Service
+public class UserCache {
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${sanekey.app.userCache.maxSize:10000}")
+    private long maxSize;
+    
+    @Value("${sanekey.app.userCache.ttlSeconds:300}")
+    private long ttlSeconds;
+    
+    private Cache<Long, UserSnapshot> usersById;
+    
+    private Cache<String, Long> idsByEmail;
+    
+    @PostConstruct
+    public void init() {
+        usersById = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        idsByEmail = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, usersById, "users.byId");
+        CaffeineCacheMetrics.monitor(meterRegistry, idsByEmail, "users.byEmail");
+    }
+    
+    public Optional<UserSnapshot> findById(Long id) {
+        UserSnapshot cached = usersById.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return userRepository.findById(id).map(user -> {
+            UserSnapshot snapshot = UserSnapshot.of(user);
+            put(snapshot);
+            return snapshot;
+        });
+    }
+    
+    public Optional<UserSnapshot> findByEmail(String email) {
+        Long id = idsByEmail.getIfPresent(email);
+        if (id != null) {
+            UserSnapshot cached = usersById.getIfPresent(id);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+        return userRepository.findByEmail(email).map(user -> {
+            UserSnapshot snapshot = UserSnapshot.of(user);
+            put(snapshot);
+            idsByEmail.put(email, snapshot.getId());
+            return snapshot;
+        });
+    }
+    
+    /**
+     * Evict a user now and again after the surrounding transaction commits,
+     * so a concurrent read cannot re-cache the pre-commit state
+     */
+    public void invalidate(Long id) {
+        usersById.invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    usersById.invalidate(id);
+                }
+            });
+        }
+    }
+    
+    private void put(UserSnapshot snapshot) {
+        usersById.put(snapshot.getId(), snapshot);
+        idsByEmail.put(snapshot.getEmail(), snapshot.getId());
+    }
+}
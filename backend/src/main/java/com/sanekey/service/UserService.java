@@ -1,22 +1,39 @@
 package com.sanekey.service;
 
+import com.sanekey.config.UserPrincipal;
+import com.sanekey.exception.CustomExceptionHandler.BusinessException;
 import com.sanekey.model.User;
+import com.sanekey.model.UserSnapshot;
 import com.sanekey.repository.UserRepository;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 @Transactional
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
+    
+    // Name Hibernate generated for the users.email unique key before it was named explicitly
+    private static final String LEGACY_EMAIL_UNIQUE_KEY = "UK_6dotkott2kjsp8vw4d0m25fb7";
+    
+    private static final Pattern DUPLICATE_KEY = Pattern.compile("for key '([^']+)'");
     
     @Autowired
     private UserRepository userRepository;
@@ -24,6 +41,12 @@ public class UserService implements UserDetailsService {
     @Autowired
     private PasswordEncoder passwordEncoder;
     
+    @Autowired
+    private TokenVersionCache tokenVersionCache;
+    
+    @Autowired
+    private UserCache userCache;
+    
     /**
      * Load user by username (email) for Spring Security
      */
@@ -34,21 +57,103 @@ public class UserService implements UserDetailsService {
     }
     
     /**
-     * Register a new user
+     * Store a password rehashed at the current BCrypt cost after a successful login
      */
-    public User registerUser(String email, String password, String fullName) {
-        if (userRepository.existsByEmail(email)) {
-            throw new RuntimeException("Email is already taken!");
-        }
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newEncodedPassword) {
+        User user = userRepository.findByEmail(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + userDetails.getUsername()));
         
+        user.setPassword(newEncodedPassword);
+        return userRepository.save(user);
+    }
+    
+    /**
+     * Resolve the authenticated user. Claims-only principals are mapped to a lazy
+     * reference, so no query runs unless non-id fields are actually read.
+     */
+    public User getCurrentUser(Authentication authentication) {
+        Object principal = authentication.getPrincipal();
+        if (principal instanceof User user) {
+            return user;
+        }
+        if (principal instanceof UserPrincipal userPrincipal) {
+            return userRepository.getReferenceById(userPrincipal.getId());
+        }
+        throw new RuntimeException("User not authenticated");
+    }
+    
+    /**
+     * Whether the authenticated user is an admin, read from the granted
+     * authorities so a claims-only principal does not load the user row
+     */
+    public boolean isAdmin(Authentication authentication) {
+        String adminAuthority = "ROLE_" + User.Role.ADMIN.name();
+        return authentication.getAuthorities().stream()
+                .anyMatch(authority -> adminAuthority.equals(authority.getAuthority()));
+    }
+    
+    /**
+     * Register a new user with a single insert; the unique constraint on
+     * users.email rejects duplicates, including concurrent sign-ups
+     */
+    public User registerUser(String email, String password, String fullName) {
         User user = new User();
-        user.setEmail(email);
+        user.setEmail(normalizeEmail(email));
         user.setPassword(passwordEncoder.encode(password));
         user.setFullName(fullName);
         user.setRole(User.Role.USER);
         user.setIsActive(true);
         
-        return userRepository.save(user);
+        try {
+            return userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            if (isEmailTaken(e)) {
+                throw new BusinessException("Email is already registered!", HttpStatus.BAD_REQUEST, "Email Taken");
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Normalize an email for storage and lookups
+     */
+    public static String normalizeEmail(String email) {
+        return email != null ? email.trim().toLowerCase(Locale.ROOT) : null;
+    }
+    
+    /**
+     * Whether a failed insert hit the users.email unique key, rather than
+     * some other constraint. Databases created before the key was named
+     * still carry Hibernate's generated name for it.
+     */
+    private static boolean isEmailTaken(DataIntegrityViolationException e) {
+        String constraint = violatedConstraint(e);
+        return constraint != null
+                && (constraint.equalsIgnoreCase(User.EMAIL_UNIQUE_KEY)
+                    || constraint.equalsIgnoreCase(LEGACY_EMAIL_UNIQUE_KEY));
+    }
+    
+    /**
+     * Name of the violated unique key, without its table prefix; MySQL 8
+     * reports it as "Duplicate entry '...' for key 'users.name'"
+     */
+    private static String violatedConstraint(DataIntegrityViolationException e) {
+        String name = null;
+        for (Throwable cause = e; cause != null && name == null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                name = violation.getConstraintName();
+            }
+        }
+        if (name == null && e.getMostSpecificCause() instanceof SQLException sqlException
+                && sqlException.getErrorCode() == 1062 && sqlException.getMessage() != null) {
+            Matcher matcher = DUPLICATE_KEY.matcher(sqlException.getMessage());
+            name = matcher.find() ? matcher.group(1) : null;
+        }
+        if (name == null) {
+            return null;
+        }
+        return name.substring(name.lastIndexOf('.') + 1).replace("`", "");
     }
     
     /**
@@ -65,6 +170,35 @@ public class UserService implements UserDetailsService {
         return userRepository.findById(id);
     }
     
+    /**
+     * Find a cached read-only snapshot of a user by email
+     */
+    @Transactional(readOnly = true)
+    public Optional<UserSnapshot> findSnapshotByEmail(String email) {
+        return userCache.findByEmail(email);
+    }
+    
+    /**
+     * Find a cached read-only snapshot of a user by ID
+     */
+    @Transactional(readOnly = true)
+    public Optional<UserSnapshot> findSnapshotById(Long id) {
+        return userCache.findById(id);
+    }
+    
+    /**
+     * Read-only snapshot of the authenticated user
+     */
+    @Transactional(readOnly = true)
+    public UserSnapshot getCurrentUserSnapshot(Authentication authentication) {
+        Object principal = authentication.getPrincipal();
+        if (principal instanceof UserPrincipal userPrincipal) {
+            return userCache.findById(userPrincipal.getId())
+                    .orElseThrow(() -> new RuntimeException("User not found"));
+        }
+        return UserSnapshot.of(getCurrentUser(authentication));
+    }
+    
     /**
      * Get all active users
      */
@@ -83,7 +217,9 @@ public class UserService implements UserDetailsService {
         user.setAvatarUrl(avatarUrl);
         user.setUpdatedAt(LocalDateTime.now());
         
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        userCache.invalidate(userId);
+        return saved;
     }
     
     /**
@@ -98,8 +234,11 @@ public class UserService implements UserDetailsService {
         }
         
         user.setPassword(passwordEncoder.encode(newPassword));
+        user.setTokenVersion(user.getTokenVersion() + 1);
         user.setUpdatedAt(LocalDateTime.now());
         userRepository.save(user);
+        tokenVersionCache.invalidate(userId);
+        userCache.invalidate(userId);
     }
     
     /**
@@ -110,8 +249,20 @@ public class UserService implements UserDetailsService {
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
         user.setIsActive(false);
+        user.setTokenVersion(user.getTokenVersion() + 1);
         user.setUpdatedAt(LocalDateTime.now());
         userRepository.save(user);
+        tokenVersionCache.invalidate(userId);
+        userCache.invalidate(userId);
+    }
+    
+    /**
+     * Soft delete user account
+     */
+    public void softDeleteUser(Long userId) {
+        userRepository.softDeleteById(userId);
+        tokenVersionCache.invalidate(userId);
+        userCache.invalidate(userId);
     }
     
     /**
@@ -124,6 +275,8 @@ public class UserService implements UserDetailsService {
         user.setIsActive(true);
         user.setUpdatedAt(LocalDateTime.now());
         userRepository.save(user);
+        tokenVersionCache.invalidate(userId);
+        userCache.invalidate(userId);
     }
     
     /**
@@ -0,0 +1,76 @@
+package com.sanekey.sim;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Latency and fault model shared by the simulated gateway endpoints.
+ * Latency is log-normal, fitted to the configured median and p99. Responses
+ * are completed on a timer rather than by sleeping, so simulated latency
+ * does not hold servlet threads that the application under test needs.
+ */
+@Component
+@Profile("gateway-sim")
+public class GatewaySimulator {
+
+    // z-score of the 99th percentile of a standard normal distribution
+    private static final double Z_99 = 2.3263;
+
+    @Value("${sanekey.sim.latency.medianMs:80}")
+    private double medianMs;
+
+    @Value("${sanekey.sim.latency.p99Ms:400}")
+    private double p99Ms;
+
+    @Value("${sanekey.sim.errorRate:0.0}")
+    private double errorRate;
+
+    @Value("${sanekey.sim.timeoutRate:0.0}")
+    private double timeoutRate;
+
+    @Value("${sanekey.sim.timeoutMs:30000}")
+    private long timeoutMs;
+
+    @Value("${sanekey.sim.declineRate:0.05}")
+    private double declineRate;
+
+    /**
+     * Respond after a sampled latency. A configured share of calls fail with
+     * the error response, and another share hangs for timeoutMs first.
+     */
+    public CompletableFuture<ResponseEntity<?>> respond(Supplier<ResponseEntity<?>> success,
+                                                       Supplier<ResponseEntity<?>> error) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double roll = random.nextDouble();
+
+        Supplier<ResponseEntity<?>> outcome = roll < errorRate ? error : success;
+        long delayMs = roll >= errorRate && roll < errorRate + timeoutRate
+                ? timeoutMs
+                : sampleLatencyMs(random);
+
+        return CompletableFuture.supplyAsync(outcome::get,
+                CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Whether a simulated charge should be declined
+     */
+    public boolean decline() {
+        return ThreadLocalRandom.current().nextDouble() < declineRate;
+    }
+
+    private long sampleLatencyMs(ThreadLocalRandom random) {
+        if (medianMs <= 0) {
+            return 0;
+        }
+        double sigma = p99Ms > medianMs ? Math.log(p99Ms / medianMs) / Z_99 : 0;
+        return Math.round(medianMs * Math.exp(sigma * random.nextGaussian()));
+    }
+}
@@ -0,0 +1,221 @@
+package com.sanekey.sim;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Stand-in for the Stripe PaymentIntent and PayPal Orders endpoints the
+ * application uses, so the real SDKs can be pointed at it with
+ * stripe.api.base and paypal.api.base. Only active under the gateway-sim
+ * profile.
+ */
+@RestController
+@RequestMapping("/api/sim")
+@Profile("gateway-sim")
+public class GatewaySimulatorController {
+
+    @Autowired
+    private GatewaySimulator simulator;
+
+    @Value("${sanekey.sim.maxObjects:1000000}")
+    private long maxObjects;
+
+    private Cache<String, Map<String, Object>> paymentIntents;
+
+    private Cache<String, Map<String, Object>> orders;
+
+    @PostConstruct
+    public void init() {
+        paymentIntents = Caffeine.newBuilder().maximumSize(maxObjects).build();
+        orders = Caffeine.newBuilder().maximumSize(maxObjects).build();
+    }
+
+    // ----- Stripe -----
+
+    /**
+     * Create a payment intent. Its final outcome is decided here and
+     * reported on retrieve, as if the customer confirmed in between.
+     */
+    @PostMapping("/stripe/v1/payment_intents")
+    public CompletableFuture<ResponseEntity<?>> createPaymentIntent(@RequestParam MultiValueMap<String, String> params) {
+        return simulator.respond(() -> {
+            String id = "pi_sim_" + UUID.randomUUID().toString().replace("-", "");
+            Map<String, Object> intent = new HashMap<>();
+            intent.put("id", id);
+            intent.put("object", "payment_intent");
+            intent.put("amount", Long.parseLong(params.getFirst("amount")));
+            intent.put("currency", params.getFirst("currency"));
+            intent.put("description", params.getFirst("description"));
+            intent.put("client_secret", id + "_secret_sim");
+            intent.put("created", Instant.now().getEpochSecond());
+            intent.put("livemode", false);
+            intent.put("status", "requires_payment_method");
+            intent.put("final_status", simulator.decline() ? "declined" : "succeeded");
+            paymentIntents.put(id, intent);
+            return ResponseEntity.ok(stripeView(intent, false));
+        }, GatewaySimulatorController::stripeError);
+    }
+
+    @GetMapping("/stripe/v1/payment_intents/{id}")
+    public CompletableFuture<ResponseEntity<?>> retrievePaymentIntent(@PathVariable String id) {
+        return simulator.respond(() -> {
+            Map<String, Object> intent = paymentIntents.getIfPresent(id);
+            if (intent == null) {
+                return stripeNotFound(id);
+            }
+            return ResponseEntity.ok(stripeView(intent, true));
+        }, GatewaySimulatorController::stripeError);
+    }
+
+    @PostMapping("/stripe/v1/payment_intents/{id}/cancel")
+    public CompletableFuture<ResponseEntity<?>> cancelPaymentIntent(@PathVariable String id) {
+        return simulator.respond(() -> {
+            Map<String, Object> intent = paymentIntents.getIfPresent(id);
+            if (intent == null) {
+                return stripeNotFound(id);
+            }
+            synchronized (intent) {
+                intent.put("final_status", "canceled");
+            }
+            return ResponseEntity.ok(stripeView(intent, true));
+        }, GatewaySimulatorController::stripeError);
+    }
+
+    private static Map<String, Object> stripeView(Map<String, Object> intent, boolean settled) {
+        Map<String, Object> view;
+        synchronized (intent) {
+            view = new HashMap<>(intent);
+        }
+        String finalStatus = (String) view.remove("final_status");
+        if (!settled) {
+            return view;
+        }
+        if ("declined".equals(finalStatus)) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("type", "card_error");
+            error.put("code", "card_declined");
+            error.put("message", "Your card was declined.");
+            view.put("status", "requires_payment_method");
+            view.put("last_payment_error", error);
+        } else {
+            view.put("status", finalStatus);
+        }
+        return view;
+    }
+
+    private static ResponseEntity<?> stripeNotFound(String id) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("type", "invalid_request_error");
+        error.put("code", "resource_missing");
+        error.put("message", "No such payment_intent: '" + id + "'");
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", error));
+    }
+
+    private static ResponseEntity<?> stripeError() {
+        Map<String, Object> error = new HashMap<>();
+        error.put("type", "api_error");
+        error.put("message", "Simulated gateway error");
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", error));
+    }
+
+    // ----- PayPal -----
+
+    @PostMapping("/paypal/v1/oauth2/token")
+    public CompletableFuture<ResponseEntity<?>> accessToken() {
+        return simulator.respond(() -> {
+            Map<String, Object> token = new HashMap<>();
+            token.put("access_token", "sim-" + UUID.randomUUID());
+            token.put("token_type", "Bearer");
+            token.put("app_id", "APP-SIM");
+            token.put("expires_in", 32400);
+            return ResponseEntity.ok(token);
+        }, GatewaySimulatorController::paypalError);
+    }
+
+    @PostMapping("/paypal/v2/checkout/orders")
+    public CompletableFuture<ResponseEntity<?>> createOrder(@RequestBody JsonNode request) {
+        return simulator.respond(() -> {
+            String id = "SIM" + UUID.randomUUID().toString().replace("-", "").substring(0, 14).toUpperCase();
+            Map<String, Object> order = new HashMap<>();
+            order.put("id", id);
+            order.put("intent", request.path("intent").asText("CAPTURE"));
+            order.put("status", "CREATED");
+            order.put("create_time", Instant.now().toString());
+            order.put("links", List.of(Map.of(
+                    "href", "https://www.sandbox.paypal.com/checkoutnow?token=" + id,
+                    "rel", "approve",
+                    "method", "GET")));
+            orders.put(id, order);
+            return ResponseEntity.status(HttpStatus.CREATED).body(paypalView(order));
+        }, GatewaySimulatorController::paypalError);
+    }
+
+    @GetMapping("/paypal/v2/checkout/orders/{id}")
+    public CompletableFuture<ResponseEntity<?>> getOrder(@PathVariable String id) {
+        return simulator.respond(() -> {
+            Map<String, Object> order = orders.getIfPresent(id);
+            return order != null ? ResponseEntity.ok(paypalView(order)) : paypalNotFound();
+        }, GatewaySimulatorController::paypalError);
+    }
+
+    /**
+     * Capture an order; a simulated decline answers 422 as PayPal does
+     */
+    @PostMapping("/paypal/v2/checkout/orders/{id}/capture")
+    public CompletableFuture<ResponseEntity<?>> captureOrder(@PathVariable String id) {
+        return simulator.respond(() -> {
+            Map<String, Object> order = orders.getIfPresent(id);
+            if (order == null) {
+                return paypalNotFound();
+            }
+            if (simulator.decline()) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("name", "UNPROCESSABLE_ENTITY");
+                error.put("message", "The requested action could not be performed.");
+                error.put("details", List.of(Map.of("issue", "INSTRUMENT_DECLINED")));
+                return ResponseEntity.unprocessableEntity().body(error);
+            }
+            synchronized (order) {
+                order.put("status", "COMPLETED");
+                order.put("update_time", Instant.now().toString());
+            }
+            return ResponseEntity.status(HttpStatus.CREATED).body(paypalView(order));
+        }, GatewaySimulatorController::paypalError);
+    }
+
+    private static Map<String, Object> paypalView(Map<String, Object> order) {
+        synchronized (order) {
+            return new HashMap<>(order);
+        }
+    }
+
+    private static ResponseEntity<?> paypalNotFound() {
+        Map<String, Object> error = new HashMap<>();
+        error.put("name", "RESOURCE_NOT_FOUND");
+        error.put("message", "The specified resource does not exist.");
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+    }
+
+    private static ResponseEntity<?> paypalError() {
+        Map<String, Object> error = new HashMap<>();
+        error.put("name", "INTERNAL_SERVER_ERROR");
+        error.put("message", "Simulated gateway error");
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+    }
+}
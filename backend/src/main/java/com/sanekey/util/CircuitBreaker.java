@@ -0,0 +1,145 @@
+package com.sanekey.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Count-based circuit breaker. While closed it tracks the outcomes of the
+ * last windowSize calls and opens once the failure rate reaches the
+ * threshold. After openMs it lets a few probe calls through (half-open);
+ * they all have to succeed to close it again, and any failure reopens it.
+ */
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long openNanos;
+    private final int halfOpenProbes;
+
+    // Ring buffer of recent outcomes while closed, true for a failure
+    private final boolean[] window;
+    private int windowPosition;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long openUntilNanos;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    public CircuitBreaker(double failureRateThreshold, int windowSize, int minimumCalls,
+                          long openMs, int halfOpenProbes) {
+        if (windowSize <= 0 || halfOpenProbes <= 0) {
+            throw new IllegalArgumentException("Window size and probes must be positive");
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = Math.min(Math.max(1, minimumCalls), windowSize);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+        this.halfOpenProbes = halfOpenProbes;
+        this.window = new boolean[windowSize];
+    }
+
+    /**
+     * Whether a call may go ahead. A permitted call must be followed by
+     * exactly one of onSuccess, onFailure or onIgnored.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openUntilNanos < 0) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight + probeSuccesses >= halfOpenProbes) {
+                return false;
+            }
+            probesInFlight++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            probesInFlight--;
+            if (++probeSuccesses >= halfOpenProbes) {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (windowCount >= minimumCalls && windowFailures >= failureRateThreshold * windowCount) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * A permitted call whose outcome says nothing about the gateway's
+     * health, such as a declined card
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            probesInFlight--;
+        }
+    }
+
+    public synchronized State getState() {
+        // Report an expired open period as half-open, which the next call makes it
+        if (state == State.OPEN && System.nanoTime() - openUntilNanos >= 0) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * Milliseconds until an open breaker admits probes, 0 otherwise
+     */
+    public synchronized long retryAfterMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(openUntilNanos - System.nanoTime()));
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowPosition]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowPosition] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowPosition = (windowPosition + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntilNanos = System.nanoTime() + openNanos;
+        probesInFlight = 0;
+        probeSuccesses = 0;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        windowPosition = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+}
@@ -0,0 +1,132 @@
+package com.sanekey.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Memory-compact set of non-negative ids, laid out like a roaring bitmap:
+ * ids are grouped by their high bits into 65536-wide chunks, and each chunk
+ * is a sorted char array while sparse (2 bytes per id) and a fixed 8KB
+ * bitmap once it holds more than 4096 ids. Dense, mostly sequential ids
+ * such as auto-increment user ids cost well under a byte each.
+ *
+ * Thread-safe; operations lock the set, which is fine for the short
+ * membership checks it is used for.
+ */
+public class CompactIdSet {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private final Map<Long, Object> chunks = new HashMap<>();
+    private int size;
+
+    /**
+     * Add an id; returns false if it was already present
+     */
+    public synchronized boolean add(long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Ids must be non-negative");
+        }
+        Long key = id >>> 16;
+        char low = (char) id;
+        Object chunk = chunks.get(key);
+        if (chunk == null) {
+            chunks.put(key, new char[] {low});
+            size++;
+            return true;
+        }
+        if (chunk instanceof long[] bitmap) {
+            long mask = 1L << low;
+            if ((bitmap[low >>> 6] & mask) != 0) {
+                return false;
+            }
+            bitmap[low >>> 6] |= mask;
+            size++;
+            return true;
+        }
+
+        char[] array = (char[]) chunk;
+        int index = Arrays.binarySearch(array, low);
+        if (index >= 0) {
+            return false;
+        }
+        int insertAt = -index - 1;
+        if (array.length < ARRAY_MAX) {
+            char[] grown = new char[array.length + 1];
+            System.arraycopy(array, 0, grown, 0, insertAt);
+            grown[insertAt] = low;
+            System.arraycopy(array, insertAt, grown, insertAt + 1, array.length - insertAt);
+            chunks.put(key, grown);
+        } else {
+            long[] bitmap = new long[BITMAP_WORDS];
+            for (char value : array) {
+                bitmap[value >>> 6] |= 1L << value;
+            }
+            bitmap[low >>> 6] |= 1L << low;
+            chunks.put(key, bitmap);
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Remove an id; returns false if it was not present
+     */
+    public synchronized boolean remove(long id) {
+        if (id < 0) {
+            return false;
+        }
+        Long key = id >>> 16;
+        char low = (char) id;
+        Object chunk = chunks.get(key);
+        if (chunk == null) {
+            return false;
+        }
+        if (chunk instanceof long[] bitmap) {
+            long mask = 1L << low;
+            if ((bitmap[low >>> 6] & mask) == 0) {
+                return false;
+            }
+            bitmap[low >>> 6] &= ~mask;
+            size--;
+            return true;
+        }
+
+        char[] array = (char[]) chunk;
+        int index = Arrays.binarySearch(array, low);
+        if (index < 0) {
+            return false;
+        }
+        if (array.length == 1) {
+            chunks.remove(key);
+        } else {
+            char[] shrunk = new char[array.length - 1];
+            System.arraycopy(array, 0, shrunk, 0, index);
+            System.arraycopy(array, index + 1, shrunk, index, array.length - index - 1);
+            chunks.put(key, shrunk);
+        }
+        size--;
+        return true;
+    }
+
+    public synchronized boolean contains(long id) {
+        if (id < 0) {
+            return false;
+        }
+        Object chunk = chunks.get(id >>> 16);
+        char low = (char) id;
+        if (chunk == null) {
+            return false;
+        }
+        if (chunk instanceof long[] bitmap) {
+            return (bitmap[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) chunk, low) >= 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
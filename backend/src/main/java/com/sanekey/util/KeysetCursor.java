@@ -0,0 +1,41 @@
+package com.sanekey.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for keyset pagination. The sort key values of the
+ * last row on a page are joined and base64url-encoded, so clients cannot
+ * depend on their layout.
+ */
+public final class KeysetCursor {
+    
+    private static final String SEPARATOR = "|";
+    
+    private KeysetCursor() {}
+    
+    public static String encode(Object... keys) {
+        StringBuilder raw = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                raw.append(SEPARATOR);
+            }
+            raw.append(keys[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    public static String[] decode(String cursor, int expectedKeys) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] keys = raw.split("\\|", -1);
+            if (keys.length != expectedKeys) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return keys;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
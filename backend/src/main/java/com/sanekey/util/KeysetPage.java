@@ -0,0 +1,39 @@
+package com.sanekey.util;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * One page of a keyset-paginated listing with the cursor for the next page
+ */
+public final class KeysetPage<T> {
+    
+    private final List<T> items;
+    private final String nextCursor;
+    
+    public KeysetPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+    
+    /**
+     * Build a page from a query that fetched one row more than the limit
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int limit, Function<T, String> cursorOf) {
+        if (rows.size() <= limit) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new KeysetPage<>(items, cursorOf.apply(items.get(limit - 1)));
+    }
+    
+    public <R> KeysetPage<R> map(Function<T, R> mapper) {
+        return new KeysetPage<>(items.stream().map(mapper).collect(Collectors.toList()), nextCursor);
+    }
+    
+    // Getters
+    public List<T> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+    public boolean isHasMore() { return nextCursor != null; }
+}
@@ -0,0 +1,40 @@
+package com.sanekey.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking rate limiter that spaces permits evenly, allowing a small burst
+ * after an idle period
+ */
+public final class RateLimiter {
+    
+    private final long intervalNanos;
+    private final long maxBurstNanos;
+    private long nextFreeNanos;
+    
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.maxBurstNanos = intervalNanos * Math.max(0, burst - 1);
+        this.nextFreeNanos = System.nanoTime();
+    }
+    
+    /**
+     * Wait until a permit is available
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            // Idle time only banks up to the burst size
+            long slot = Math.max(nextFreeNanos, now - maxBurstNanos);
+            nextFreeNanos = slot + intervalNanos;
+            waitNanos = slot - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.sanekey.util;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coordination-free 64-bit ids: 41 bits of milliseconds since 2024-01-01,
+ * 10 bits of node id and 12 bits of sequence. Ids from one node are strictly
+ * increasing; when the clock stalls or steps back, or a millisecond's
+ * sequence is exhausted, the generator borrows the next millisecond instead
+ * of waiting. The external form is fixed-width Crockford base-32, so string
+ * order matches numeric order.
+ */
+public final class SnowflakeIdGenerator {
+
+    public static final long EPOCH_MS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+
+    public static final int NODE_BITS = 10;
+
+    public static final int SEQUENCE_BITS = 12;
+
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final int ENCODED_LENGTH = 13;
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    private final long nodeId;
+
+    // Last issued (timestamp << SEQUENCE_BITS | sequence)
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+    }
+
+    public long nextId() {
+        long now = (System.currentTimeMillis() - EPOCH_MS) << SEQUENCE_BITS;
+        long previous;
+        long next;
+        do {
+            previous = state.get();
+            // Sequence overflow carries into the timestamp bits
+            next = Math.max(now, previous + 1);
+        } while (!state.compareAndSet(previous, next));
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    public String nextEncodedId() {
+        return encode(nextId());
+    }
+
+    public static String encode(long id) {
+        char[] chars = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    public static long decode(String encoded) {
+        if (encoded == null || encoded.length() != ENCODED_LENGTH) {
+            throw new IllegalArgumentException("Invalid id");
+        }
+        long id = 0;
+        for (int i = 0; i < ENCODED_LENGTH; i++) {
+            int value = indexOf(Character.toUpperCase(encoded.charAt(i)));
+            if (value < 0 || (i == 0 && value > 15)) {
+                throw new IllegalArgumentException("Invalid id");
+            }
+            id = (id << 5) | value;
+        }
+        return id;
+    }
+
+    public static Instant timestampOf(long id) {
+        return Instant.ofEpochMilli((id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MS);
+    }
+
+    public static int nodeOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE_ID);
+    }
+
+    private static int indexOf(char c) {
+        for (int i = 0; i < ALPHABET.length; i++) {
+            if (ALPHABET[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,184 @@
+package com.sanekey.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sanekey.config.UserPrincipal;
+import com.sanekey.model.User;
+import com.sanekey.repository.UserRepository;
+import com.sanekey.service.ProductReviewService;
+import com.sanekey.support.MySqlIntegrationTest;
+import com.sanekey.support.SqlStatementCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Review read endpoints issue a fixed number of SQL statements however many
+ * reviews, authors and images a page holds. Each response is serialized
+ * inside one read-only transaction, the way open-session-in-view keeps the
+ * session open, so any lazy load is counted too.
+ */
+class ReviewQueryCountTest extends MySqlIntegrationTest {
+
+    private static final int REVIEWERS = 30;
+
+    private static final int IMAGES_PER_REVIEW = 3;
+
+    private static final int OWN_REVIEWS = 25;
+
+    private static final int PAGE_SIZE = 10;
+
+    // A page is the reviews query plus the images query
+    private static final int LISTING_BUDGET = 2;
+
+    private static final int SUMMARY_BUDGET = 1;
+
+    @Autowired
+    private ProductReviewController reviewController;
+
+    @Autowired
+    private ProductReviewService reviewService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readOnly;
+
+    private String productId;
+
+    private Authentication owner;
+
+    /**
+     * One product reviewed by every reviewer, plus reviews of other products
+     * by the first reviewer for the my-reviews listing
+     */
+    @BeforeEach
+    void seed() {
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        String runId = UUID.randomUUID().toString();
+        productId = "query-count-" + runId;
+        User first = null;
+        for (int i = 0; i < REVIEWERS; i++) {
+            User user = userRepository.save(new User("reviewer-" + runId + "-" + i + "@example.com",
+                    "unused", "Reviewer " + i));
+            reviewService.createReview(user, productId, 1 + i % 5, "Review " + i, "Seeded review " + i,
+                    images(runId, i));
+            if (first == null) {
+                first = user;
+            }
+        }
+        for (int i = 0; i < OWN_REVIEWS; i++) {
+            reviewService.createReview(first, productId + "-" + i, 1 + i % 5, "Own review " + i,
+                    "Seeded review of another product", images(runId, REVIEWERS + i));
+        }
+
+        UserPrincipal principal = new UserPrincipal(first.getId(), first.getEmail(), User.Role.USER,
+                first.getTokenVersion());
+        owner = new UsernamePasswordAuthenticationToken(principal, null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        SecurityContextHolder.getContext().setAuthentication(owner);
+    }
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void productListingsStayWithinBudgetInEverySort() {
+        for (String sort : List.of("newest", "most_helpful", "highest_rating", "lowest_rating", "verified_first")) {
+            Map<?, ?> first = withinBudget("product " + sort, LISTING_BUDGET,
+                    () -> reviewController.getProductReviews(productId, null, sort, null, PAGE_SIZE));
+            assertThat((List<?>) first.get("reviews")).hasSize(PAGE_SIZE);
+
+            String cursor = (String) first.get("nextCursor");
+            assertThat(cursor).isNotNull();
+            Map<?, ?> second = withinBudget("product " + sort + " page 2", LISTING_BUDGET,
+                    () -> reviewController.getProductReviews(productId, null, sort, cursor, PAGE_SIZE));
+            assertThat((List<?>) second.get("reviews")).hasSize(PAGE_SIZE);
+        }
+    }
+
+    @Test
+    void filteredListingStaysWithinBudget() {
+        Map<?, ?> body = withinBudget("product newest rating=5", LISTING_BUDGET,
+                () -> reviewController.getProductReviews(productId, 5, null, null, PAGE_SIZE));
+        assertThat((List<?>) body.get("reviews")).hasSize(REVIEWERS / 5);
+    }
+
+    @Test
+    void ownReviewsStayWithinBudget() {
+        Map<?, ?> first = withinBudget("my-reviews", LISTING_BUDGET,
+                () -> reviewController.getUserReviews(null, PAGE_SIZE, owner));
+        assertThat((List<?>) first.get("reviews")).hasSize(PAGE_SIZE);
+
+        String cursor = (String) first.get("nextCursor");
+        Map<?, ?> second = withinBudget("my-reviews page 2", LISTING_BUDGET,
+                () -> reviewController.getUserReviews(cursor, PAGE_SIZE, owner));
+        assertThat((List<?>) second.get("reviews")).hasSize(PAGE_SIZE);
+    }
+
+    @Test
+    void ratingSummaryIsOneRead() {
+        withinBudget("summary", SUMMARY_BUDGET, () -> reviewController.getProductRatingSummary(productId));
+    }
+
+    private List<String> images(String runId, int review) {
+        List<String> images = new ArrayList<>();
+        for (int i = 0; i < IMAGES_PER_REVIEW; i++) {
+            images.add("https://img.example.com/" + runId + "/" + review + "/" + i + ".jpg");
+        }
+        return images;
+    }
+
+    /**
+     * Call an endpoint and serialize its body while counting statements, and
+     * return the body once it succeeded within the budget
+     */
+    private Map<?, ?> withinBudget(String name, int budget, Supplier<ResponseEntity<?>> call) {
+        SqlStatementCounter.start();
+        Map<?, ?> body;
+        int statements;
+        try {
+            body = readOnly.execute(status -> {
+                ResponseEntity<?> response = call.get();
+                try {
+                    return objectMapper.readValue(objectMapper.writeValueAsBytes(response.getBody()), Map.class);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } finally {
+            statements = SqlStatementCounter.stop();
+        }
+
+        assertThat(body.get("success")).as(name + ": " + body.get("message")).isEqualTo(true);
+        assertThat(statements).as(name + " statements").isLessThanOrEqualTo(budget);
+        return body;
+    }
+}
@@ -0,0 +1,64 @@
+package com.sanekey.controller;
+
+import com.sanekey.support.MySqlIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SignUpConcurrencyTest extends MySqlIntegrationTest {
+
+    private static final int SIGN_UPS = 16;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void concurrentSignUpsWithOneEmailCreateExactlyOneAccount() throws Exception {
+        String email = "race-" + UUID.randomUUID() + "@example.com";
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(SIGN_UPS);
+        List<Future<ResponseEntity<Map>>> calls = new ArrayList<>();
+        try {
+            for (int i = 0; i < SIGN_UPS; i++) {
+                int attempt = i;
+                calls.add(executor.submit(() -> {
+                    start.await();
+                    return restTemplate.postForEntity("/api/auth/signup",
+                            Map.of("email", email, "password", "Password-" + attempt, "fullName", "Racer " + attempt),
+                            Map.class);
+                }));
+            }
+            start.countDown();
+
+            int created = 0;
+            int taken = 0;
+            for (Future<ResponseEntity<Map>> call : calls) {
+                ResponseEntity<Map> response = call.get();
+                if (response.getStatusCode().is2xxSuccessful()) {
+                    created++;
+                } else {
+                    assertThat(response.getStatusCode().value()).isEqualTo(400);
+                    assertThat(response.getBody().get("error")).isEqualTo("Email Taken");
+                    taken++;
+                }
+            }
+
+            assertThat(created).isEqualTo(1);
+            assertThat(taken).isEqualTo(SIGN_UPS - 1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
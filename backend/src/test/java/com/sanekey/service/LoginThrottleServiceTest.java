@@ -0,0 +1,97 @@
+package com.sanekey.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoginThrottleServiceTest {
+
+    private LoginThrottleService throttle;
+
+    @BeforeEach
+    void setUp() {
+        throttle = new LoginThrottleService();
+        ReflectionTestUtils.setField(throttle, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(throttle, "ipMaxAttempts", 20);
+        ReflectionTestUtils.setField(throttle, "ipWindowMs", 60_000L);
+        ReflectionTestUtils.setField(throttle, "accountMaxAttempts", 5);
+        ReflectionTestUtils.setField(throttle, "accountWindowMs", 300_000L);
+        ReflectionTestUtils.setField(throttle, "backoffMs", 1000L);
+        ReflectionTestUtils.setField(throttle, "maxBackoffMs", 900_000L);
+        ReflectionTestUtils.setField(throttle, "maxKeys", 1000);
+        throttle.init();
+    }
+
+    @Test
+    void retryAfterIsTheTimeUntilTheWindowDecaysBelowTheBudget() {
+        for (int i = 0; i < 5; i++) {
+            throttle.recordFailure("10.0.0.1", "user@example.com");
+        }
+
+        long retryAfter = throttle.checkAttempt("10.0.0.1", "user@example.com");
+
+        assertThat(retryAfter).isBetween(299L, 301L);
+    }
+
+    @Test
+    void rejectedAttemptsDoNotExtendTheWait() {
+        for (int i = 0; i < 5; i++) {
+            throttle.recordFailure("10.0.0.1", "user@example.com");
+        }
+        long first = throttle.checkAttempt("10.0.0.1", "user@example.com");
+
+        for (int i = 0; i < 100; i++) {
+            throttle.checkAttempt("10.0.0.1", "user@example.com");
+        }
+
+        assertThat(throttle.checkAttempt("10.0.0.1", "user@example.com")).isLessThanOrEqualTo(first);
+        // Another client is not throttled on the IP key by the rejected attempts
+        assertThat(throttle.checkAttempt("10.0.0.2", "other@example.com")).isZero();
+    }
+
+    @Test
+    void repeatedFailedPasswordChecksEscalateTheLockout() {
+        // A short window, so the wait comes from the lockout rather than the decay
+        ReflectionTestUtils.setField(throttle, "accountWindowMs", 100L);
+        for (int i = 0; i < 5; i++) {
+            throttle.recordFailure("10.0.0.1", "user@example.com");
+        }
+        assertThat(throttle.checkAttempt("10.0.0.1", "user@example.com")).isEqualTo(1L);
+
+        for (int i = 0; i < 3; i++) {
+            throttle.recordFailure("10.0.0.1", "user@example.com");
+        }
+
+        assertThat(throttle.checkAttempt("10.0.0.1", "user@example.com")).isBetween(7L, 8L);
+    }
+
+    @Test
+    void clientWaitingTheAdvertisedTimeIsLetThrough() throws InterruptedException {
+        ReflectionTestUtils.setField(throttle, "accountWindowMs", 400L);
+        for (int i = 0; i < 5; i++) {
+            throttle.recordFailure("10.0.0.1", "user@example.com");
+        }
+        long retryAfter = throttle.checkAttempt("10.0.0.1", "user@example.com");
+        assertThat(retryAfter).isPositive();
+
+        Thread.sleep(retryAfter * 1000);
+
+        assertThat(throttle.checkAttempt("10.0.0.1", "user@example.com")).isZero();
+    }
+
+    @Test
+    void throttlingOnTheIpDoesNotCountAgainstTheAccount() {
+        ReflectionTestUtils.setField(throttle, "ipMaxAttempts", 2);
+        throttle.recordFailure("10.0.0.1", "a@example.com");
+        throttle.recordFailure("10.0.0.1", "b@example.com");
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(throttle.checkAttempt("10.0.0.1", "victim@example.com")).isPositive();
+        }
+
+        assertThat(throttle.checkAttempt("10.0.0.9", "victim@example.com")).isZero();
+    }
+}
@@ -0,0 +1,230 @@
+package com.sanekey.service;
+
+import com.sanekey.model.Payment;
+import com.sanekey.model.User;
+import com.sanekey.repository.PaymentRepository;
+import com.sanekey.repository.UserRepository;
+import com.sanekey.support.MySqlIntegrationTest;
+import com.stripe.net.Webhook;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Races a customer confirm, a customer cancel and a gateway webhook on one
+ * PENDING payment, many times over. The versioned conditional updates must
+ * let exactly one of them through each round, and the rollups and user
+ * totals must match what a rebuild computes from the payments afterwards.
+ */
+class PaymentTransitionConcurrencyTest extends MySqlIntegrationTest {
+
+    private static final int ROUNDS = 50;
+
+    private static final String WEBHOOK_SECRET = "whsec_concurrency_test";
+
+    // Stands in for Stripe: every payment intent it is asked about has succeeded
+    private static final HttpServer STRIPE = startStripeStub();
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentWebhookService webhookService;
+
+    @Autowired
+    private PaymentWebhookApplier webhookApplier;
+
+    @Autowired
+    private RevenueRollupService revenueRollupService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void stripe(DynamicPropertyRegistry registry) {
+        registry.add("stripe.secret.key", () -> "sk_test_concurrency");
+        registry.add("stripe.api.base", () -> "http://localhost:" + STRIPE.getAddress().getPort());
+        registry.add("stripe.webhook.secret", () -> WEBHOOK_SECRET);
+    }
+
+    @AfterAll
+    static void stopStripeStub() {
+        STRIPE.stop(0);
+    }
+
+    @Test
+    void confirmCancelAndWebhookRacingOnOnePaymentApplyExactlyOnce() throws Exception {
+        User user = userRepository.save(new User("payer-" + UUID.randomUUID() + "@example.com", "unused", "Racing Payer"));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        int completed = 0;
+        int cancelled = 0;
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                String intentId = "pi_race_" + UUID.randomUUID().toString().replace("-", "");
+                Payment payment = paymentService.createPayment(user, new BigDecimal("10.00"),
+                        Payment.PaymentMethod.STRIPE, "Race " + round);
+                transactionTemplate.executeWithoutResult(status ->
+                        paymentRepository.attachStripePaymentIntent(payment.getId(), intentId, LocalDateTime.now()));
+                long versionBefore = paymentRepository.findById(payment.getId()).orElseThrow().getVersion();
+                String eventId = "evt_" + intentId;
+
+                CountDownLatch start = new CountDownLatch(1);
+                Future<Payment> confirm = executor.submit(() -> {
+                    start.await();
+                    return paymentService.confirmStripePayment(intentId);
+                });
+                Future<PaymentTransitionResult> cancel = executor.submit(() -> {
+                    start.await();
+                    return paymentService.cancelPayment(payment.getId());
+                });
+                Future<?> webhook = executor.submit(() -> {
+                    start.await();
+                    deliverSucceededWebhook(eventId, intentId);
+                    webhookApplier.drain();
+                    return null;
+                });
+                start.countDown();
+                Payment confirmed = confirm.get();
+                boolean cancelApplied = cancel.get().isApplied();
+                webhook.get();
+
+                boolean webhookApplied = awaitWebhookState(eventId).equals("APPLIED");
+                Payment settled = paymentRepository.findById(payment.getId()).orElseThrow();
+                boolean confirmApplied = !cancelApplied && !webhookApplied;
+
+                assertThat(settled.getVersion()).as("round %d applies one update", round).isEqualTo(versionBefore + 1);
+                assertThat(cancelApplied && webhookApplied).as("round %d", round).isFalse();
+                if (cancelApplied) {
+                    assertThat(settled.getStatus()).isEqualTo(Payment.PaymentStatus.CANCELLED);
+                    assertThat(confirmed.getStatus()).isEqualTo(Payment.PaymentStatus.CANCELLED);
+                    cancelled++;
+                } else {
+                    assertThat(settled.getStatus()).isEqualTo(Payment.PaymentStatus.COMPLETED);
+                    assertThat(settled.getCompletedAt()).isNotNull();
+                    if (confirmApplied) {
+                        assertThat(confirmed.getStatus()).isEqualTo(Payment.PaymentStatus.COMPLETED);
+                    }
+                    completed++;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(completed + cancelled).isEqualTo(ROUNDS);
+        Map<String, Long> counted = rollupCounts();
+        assertThat(counted.getOrDefault("COMPLETED", 0L)).isEqualTo(completed);
+        assertThat(counted.getOrDefault("CANCELLED", 0L)).isEqualTo(cancelled);
+        assertThat(completedTotal(user)).isEqualTo(completed);
+
+        // What was applied incrementally is what a rebuild derives from the payments
+        Map<String, BigDecimal> amounts = rollupAmounts();
+        revenueRollupService.rebuild();
+        assertThat(rollupCounts()).isEqualTo(counted);
+        assertThat(rollupAmounts()).isEqualTo(amounts);
+        assertThat(completedTotal(user)).isEqualTo(completed);
+    }
+
+    private void deliverSucceededWebhook(String eventId, String intentId) throws Exception {
+        long now = Webhook.Util.getTimeNow();
+        String payload = "{\"id\":\"" + eventId + "\",\"type\":\"payment_intent.succeeded\",\"created\":" + now
+                + ",\"data\":{\"object\":{\"id\":\"" + intentId + "\",\"object\":\"payment_intent\"}}}";
+        String signature = Webhook.Util.computeHmacSha256(WEBHOOK_SECRET, now + "." + payload);
+        webhookService.ingestStripeEvent(payload, "t=" + now + ",v1=" + signature);
+    }
+
+    // The scheduled drain may claim the event first; wait for whichever drain has it
+    private String awaitWebhookState(String eventId) throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            String state = jdbcTemplate.queryForObject(
+                    "SELECT state FROM payment_webhook_events WHERE event_id = ?", String.class, eventId);
+            if (!"RECEIVED".equals(state)) {
+                return state;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Webhook " + eventId + " was never drained");
+    }
+
+    private Map<String, Long> rollupCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        jdbcTemplate.query("SELECT status, SUM(payment_count) AS total FROM payment_revenue_rollups " +
+                        "WHERE period_type = 'DAY' GROUP BY status HAVING SUM(payment_count) <> 0",
+                rs -> {
+                    counts.put(rs.getString("status"), rs.getLong("total"));
+                });
+        return counts;
+    }
+
+    private Map<String, BigDecimal> rollupAmounts() {
+        Map<String, BigDecimal> amounts = new HashMap<>();
+        jdbcTemplate.query("SELECT status, SUM(amount_sum) AS total FROM payment_revenue_rollups " +
+                        "WHERE period_type = 'MONTH' GROUP BY status HAVING SUM(payment_count) <> 0",
+                rs -> {
+                    amounts.put(rs.getString("status"), rs.getBigDecimal("total"));
+                });
+        return amounts;
+    }
+
+    private long completedTotal(User user) {
+        Long total = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(completed_count), 0) FROM user_payment_totals WHERE user_id = ?",
+                Long.class, user.getId());
+        return total != null ? total : 0L;
+    }
+
+    private static HttpServer startStripeStub() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/v1/payment_intents/", exchange -> {
+                String path = exchange.getRequestURI().getPath();
+                String intentId = path.substring(path.lastIndexOf('/') + 1);
+                byte[] body = ("{\"id\":\"" + intentId + "\",\"object\":\"payment_intent\",\"status\":\"succeeded\"}")
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.sanekey.sim;
+
+import com.sanekey.config.JwtUtils;
+import com.sanekey.model.User;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Compares per-request JWT verification with the path it replaced, which
+ * decoded the secret, built a parser and verified the signature twice per
+ * request (validateJwtToken, then getUserNameFromJwtToken). Measured on
+ * every thread at once, for:
+ * <ul>
+ *   <li>double-parse: the old path</li>
+ *   <li>verify-miss: verifyJwtToken with the claims cache disabled, so each
+ *       call is one verification with the shared parser</li>
+ *   <li>verify-hit: verifyJwtToken on tokens already in the claims cache,
+ *       as for a signed-in user's following requests</li>
+ * </ul>
+ *
+ * Needs no database. Run from the test classpath with
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.sanekey.sim.JwtVerificationBenchmark
+ * and optionally -Dbench.threads, -Dbench.tokens, -Dbench.warmupMs and -Dbench.measureMs.
+ */
+public final class JwtVerificationBenchmark {
+
+    // Keeps the JIT from discarding results nobody reads
+    private static volatile int sink;
+
+    private JwtVerificationBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger("bench.threads", Runtime.getRuntime().availableProcessors());
+        int tokenCount = Integer.getInteger("bench.tokens", 10000);
+        long warmupMs = Long.getLong("bench.warmupMs", 5000L);
+        long measureMs = Long.getLong("bench.measureMs", 10000L);
+
+        byte[] secretBytes = new byte[64];
+        new SecureRandom().nextBytes(secretBytes);
+        String secret = Base64.getEncoder().encodeToString(secretBytes);
+
+        JwtUtils cached = jwtUtils(secret, tokenCount);
+        JwtUtils uncached = jwtUtils(secret, 0);
+        List<String> tokens = new ArrayList<>(tokenCount);
+        for (int i = 0; i < tokenCount; i++) {
+            tokens.add(cached.generateJwtToken(authentication(i)));
+        }
+        for (String token : tokens) {
+            cached.verifyJwtToken(token);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            run(executor, "double-parse", threads, tokens, warmupMs, measureMs,
+                    token -> doubleParse(secret, token));
+            run(executor, "verify-miss", threads, tokens, warmupMs, measureMs,
+                    token -> uncached.verifyJwtToken(token).getSubject());
+            run(executor, "verify-hit", threads, tokens, warmupMs, measureMs,
+                    token -> cached.verifyJwtToken(token).getSubject());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The pre-cache filter path: two full verifications, each with a freshly
+     * decoded key and a new parser
+     */
+    private static String doubleParse(String secret, String token) {
+        Jwts.parserBuilder().setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret))).build()
+                .parse(token);
+        return Jwts.parserBuilder().setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret))).build()
+                .parseClaimsJws(token).getBody().getSubject();
+    }
+
+    private static JwtUtils jwtUtils(String secret, int cacheSize) {
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", secret);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 3_600_000);
+        ReflectionTestUtils.setField(jwtUtils, "claimsCacheMaxSize", cacheSize);
+        jwtUtils.init();
+        return jwtUtils;
+    }
+
+    private static UsernamePasswordAuthenticationToken authentication(int i) {
+        User user = new User("bench-" + i + "@example.com", "unused", "Bench User " + i);
+        user.setId((long) i + 1);
+        user.setRole(User.Role.USER);
+        user.setTokenVersion(0);
+        return new UsernamePasswordAuthenticationToken(user, null, List.of(new SimpleGrantedAuthority("ROLE_USER")));
+    }
+
+    private static void run(ExecutorService executor, String name, int threads, List<String> tokens,
+                            long warmupMs, long measureMs, Function<String, String> verify) throws Exception {
+        measure(executor, threads, tokens, warmupMs, verify);
+        double perSecond = measure(executor, threads, tokens, measureMs, verify);
+        System.out.printf("JWT benchmark [%s] %.0f verifications/s on %d threads, %.2f us each%n",
+                name, perSecond, threads, threads * 1e6 / perSecond);
+    }
+
+    /**
+     * Verify tokens round-robin on every thread for a while and return the
+     * combined rate
+     */
+    private static double measure(ExecutorService executor, int threads, List<String> tokens, long durationMs,
+                                  Function<String, String> verify) throws Exception {
+        AtomicLong verified = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t * (tokens.size() / threads);
+            workers.add(executor.submit(() -> {
+                start.await();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMs);
+                long count = 0;
+                int length = 0;
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 100; i++) {
+                        length += verify.apply(tokens.get((int) ((offset + count + i) % tokens.size()))).length();
+                    }
+                    count += 100;
+                }
+                sink = length;
+                verified.addAndGet(count);
+                return null;
+            }));
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        return verified.get() / ((System.nanoTime() - started) / 1e9);
+    }
+}
@@ -0,0 +1,391 @@
+package com.sanekey.sim;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Repeatable create, confirm and history load against the running
+ * application over HTTP, usually together with the gateway-sim profile.
+ * After a warm-up, it measures a fixed window and reports throughput,
+ * p50/p99 latency per step and the Hikari connection acquire time and
+ * pending threads over that window.
+ *
+ * It signs up users and creates payments, so it only runs against a
+ * scratch schema (see ScratchDatabase). Run from the test classpath with
+ * mvn spring-boot:test-run -Dspring-boot.run.profiles=gateway-sim,loadtest
+ */
+@Component
+@Profile("loadtest")
+public class PaymentLoadScenario implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentLoadScenario.class);
+
+    private static final String[] STEPS = {"create", "confirm", "history"};
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${sanekey.load.users:50}")
+    private int users;
+
+    @Value("${sanekey.load.concurrency:50}")
+    private int concurrency;
+
+    @Value("${sanekey.load.warmupSeconds:15}")
+    private long warmupSeconds;
+
+    @Value("${sanekey.load.durationSeconds:60}")
+    private long durationSeconds;
+
+    @Value("${sanekey.load.amount:25.00}")
+    private BigDecimal amount;
+
+    // stripe, paypal or mixed
+    @Value("${sanekey.load.gateway:mixed}")
+    private String gateway;
+
+    @Value("${sanekey.load.requestTimeoutMs:30000}")
+    private long requestTimeoutMs;
+
+    @Value("${sanekey.load.reportFile:}")
+    private String reportFile;
+
+    @Value("${sanekey.load.exitOnFinish:false}")
+    private boolean exitOnFinish;
+
+    private HttpClient httpClient;
+
+    private String baseUrl;
+
+    // Recording is switched on only for the measured window
+    private volatile boolean recording;
+
+    private SimpleMeterRegistry results;
+
+    private final Map<String, AtomicLong> errors = new LinkedHashMap<>();
+
+    private final AtomicLong iterations = new AtomicLong();
+
+    @Override
+    public void run(ApplicationArguments args) {
+        ScratchDatabase.require(dataSource, "Load scenario");
+        Thread runner = new Thread(this::runScenario, "load-scenario");
+        runner.setDaemon(true);
+        runner.start();
+    }
+
+    private void runScenario() {
+        int exitCode = 0;
+        try {
+            String port = environment.getProperty("local.server.port", "8080");
+            String contextPath = environment.getProperty("server.servlet.context-path", "");
+            baseUrl = "http://localhost:" + port + contextPath + "/api";
+            httpClient = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .executor(Executors.newFixedThreadPool(Math.max(4, concurrency / 4)))
+                    .build();
+            results = new SimpleMeterRegistry();
+            for (String step : STEPS) {
+                errors.put(step, new AtomicLong());
+            }
+
+            logger.info("Load scenario: signing up {} users", users);
+            List<String> tokens = signUpUsers();
+
+            Map<String, Object> report = measure(tokens);
+            logReport(report);
+            if (reportFile != null && !reportFile.isBlank()) {
+                Files.writeString(Path.of(reportFile),
+                        objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+                logger.info("Load scenario report written to {}", reportFile);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exitCode = 1;
+        } catch (Exception e) {
+            logger.error("Load scenario failed: {}", e.getMessage());
+            exitCode = 1;
+        }
+
+        if (exitOnFinish) {
+            int code = exitCode;
+            System.exit(SpringApplication.exit(applicationContext, () -> code));
+        }
+    }
+
+    private List<String> signUpUsers() throws IOException, InterruptedException {
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("email", "load-" + runId + "-" + i + "@example.com");
+            body.put("password", "load-test-password");
+            body.put("fullName", "Load User " + i);
+            JsonNode response = post("/auth/signup", null, body, null);
+            if (response == null || !response.hasNonNull("token")) {
+                throw new IllegalStateException("Sign-up failed for load user " + i);
+            }
+            tokens.add(response.get("token").asText());
+        }
+        return tokens;
+    }
+
+    private Map<String, Object> measure(List<String> tokens) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(durationSeconds);
+        for (int i = 0; i < concurrency; i++) {
+            String token = tokens.get(i % tokens.size());
+            workers.submit(() -> {
+                while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+                    iteration(token);
+                }
+            });
+        }
+
+        logger.info("Load scenario: warming up for {}s with {} workers", warmupSeconds, concurrency);
+        TimeUnit.NANOSECONDS.sleep(Math.max(0, warmupEnd - System.nanoTime()));
+
+        logger.info("Load scenario: measuring for {}s", durationSeconds);
+        PoolSnapshot before = poolSnapshot();
+        double maxPending = 0;
+        long started = System.nanoTime();
+        recording = true;
+        while (System.nanoTime() < end) {
+            maxPending = Math.max(maxPending, gauge("hikaricp.connections.pending"));
+            TimeUnit.MILLISECONDS.sleep(250);
+        }
+        recording = false;
+        double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+        PoolSnapshot after = poolSnapshot();
+
+        workers.shutdown();
+        if (!workers.awaitTermination(requestTimeoutMs, TimeUnit.MILLISECONDS)) {
+            workers.shutdownNow();
+        }
+        return report(elapsedSeconds, before, after, maxPending);
+    }
+
+    private void iteration(String token) {
+        boolean stripe = "stripe".equalsIgnoreCase(gateway)
+                || (!"paypal".equalsIgnoreCase(gateway) && ThreadLocalRandom.current().nextBoolean());
+        long start = System.nanoTime();
+
+        Map<String, Object> createBody = new LinkedHashMap<>();
+        createBody.put("amount", amount);
+        createBody.put("description", "Load scenario");
+        JsonNode created = step("create", start,
+                stripe ? "/payments/stripe/create" : "/payments/paypal/create", token, createBody,
+                UUID.randomUUID().toString());
+        JsonNode payment = created != null ? created.path("payment") : null;
+        if (payment == null || payment.isMissingNode()) {
+            return;
+        }
+
+        Map<String, Object> confirmBody = new LinkedHashMap<>();
+        if (stripe) {
+            confirmBody.put("paymentIntentId", payment.path("stripePaymentIntentId").asText());
+        } else {
+            confirmBody.put("orderId", payment.path("paypalOrderId").asText());
+        }
+        step("confirm", System.nanoTime(),
+                stripe ? "/payments/stripe/confirm" : "/payments/paypal/confirm", token, confirmBody, null);
+
+        step("history", System.nanoTime(), "/payments/history?limit=20", token, null, null);
+
+        if (recording) {
+            iterations.incrementAndGet();
+            results.timer("load.iteration").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Send one request and record its latency; a GET when body is null
+     */
+    private JsonNode step(String name, long start, String path, String token, Object body, String idempotencyKey) {
+        JsonNode response = null;
+        try {
+            response = body != null ? post(path, token, body, idempotencyKey) : get(path, token);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.debug("Load step {} failed: {}", name, e.getMessage());
+        }
+        if (recording) {
+            timer(name).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (response == null) {
+                errors.get(name).incrementAndGet();
+            }
+        }
+        return response;
+    }
+
+    private JsonNode post(String path, String token, Object body, String idempotencyKey)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = request(path, token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+        if (idempotencyKey != null) {
+            request.header("Idempotency-Key", idempotencyKey);
+        }
+        return send(request.build());
+    }
+
+    private JsonNode get(String path, String token) throws IOException, InterruptedException {
+        return send(request(path, token).GET().build());
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofMillis(requestTimeoutMs));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return request;
+    }
+
+    /**
+     * The parsed body of a 2xx response, otherwise null
+     */
+    private JsonNode send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            logger.debug("{} {} returned {}", request.method(), request.uri(), response.statusCode());
+            return null;
+        }
+        return objectMapper.readTree(response.body());
+    }
+
+    private Timer timer(String name) {
+        return Timer.builder("load." + name)
+                .publishPercentiles(0.5, 0.99)
+                .register(results);
+    }
+
+    private Map<String, Object> report(double elapsedSeconds, PoolSnapshot before, PoolSnapshot after,
+                                       double maxPending) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", LocalDateTime.now());
+        report.put("gateway", gateway);
+        report.put("concurrency", concurrency);
+        report.put("users", users);
+        report.put("durationSeconds", elapsedSeconds);
+        report.put("iterations", iterations.get());
+        report.put("iterationsPerSecond", iterations.get() / elapsedSeconds);
+        report.put("iteration", latency(results.timer("load.iteration"), elapsedSeconds, null));
+
+        Map<String, Object> steps = new LinkedHashMap<>();
+        for (String step : STEPS) {
+            steps.put(step, latency(timer(step), elapsedSeconds, errors.get(step).get()));
+        }
+        report.put("steps", steps);
+
+        long acquires = after.count - before.count;
+        Map<String, Object> pool = new LinkedHashMap<>();
+        pool.put("acquires", acquires);
+        pool.put("meanAcquireMs", acquires > 0 ? (after.totalMs - before.totalMs) / acquires : 0.0);
+        pool.put("maxAcquireMs", after.maxMs);
+        pool.put("maxPendingThreads", maxPending);
+        report.put("hikari", pool);
+        return report;
+    }
+
+    private static Map<String, Object> latency(Timer timer, double elapsedSeconds, Long errorCount) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("count", snapshot.count());
+        latency.put("perSecond", snapshot.count() / elapsedSeconds);
+        if (errorCount != null) {
+            latency.put("errors", errorCount);
+        }
+        latency.put("meanMs", snapshot.mean(TimeUnit.MILLISECONDS));
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            latency.put("p" + Math.round(percentile.percentile() * 100) + "Ms",
+                    percentile.value(TimeUnit.MILLISECONDS));
+        }
+        latency.put("maxMs", snapshot.max(TimeUnit.MILLISECONDS));
+        return latency;
+    }
+
+    private void logReport(Map<String, Object> report) {
+        logger.info("Load scenario: {} iterations in {}s ({} per second)",
+                report.get("iterations"), String.format("%.1f", (Double) report.get("durationSeconds")),
+                String.format("%.1f", (Double) report.get("iterationsPerSecond")));
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> steps = (Map<String, Map<String, Object>>) report.get("steps");
+        steps.forEach((step, latency) -> logger.info("  {}: {}", step, latency));
+        logger.info("  hikari: {}", report.get("hikari"));
+    }
+
+    private PoolSnapshot poolSnapshot() {
+        PoolSnapshot snapshot = new PoolSnapshot();
+        for (Timer acquire : meterRegistry.find("hikaricp.connections.acquire").timers()) {
+            snapshot.count += acquire.count();
+            snapshot.totalMs += acquire.totalTime(TimeUnit.MILLISECONDS);
+            snapshot.maxMs = Math.max(snapshot.maxMs, acquire.max(TimeUnit.MILLISECONDS));
+        }
+        return snapshot;
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.find(name).gauges().stream()
+                .mapToDouble(gauge -> gauge.value())
+                .sum();
+    }
+
+    private static final class PoolSnapshot {
+        private long count;
+        private double totalMs;
+        private double maxMs;
+    }
+}
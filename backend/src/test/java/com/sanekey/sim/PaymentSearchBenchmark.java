@@ -0,0 +1,289 @@
+package com.sanekey.sim;
+
+import com.sanekey.model.Payment;
+import com.sanekey.repository.PaymentRepository;
+import com.sanekey.repository.PaymentSearchCriteria;
+import com.sanekey.service.PaymentSearchService;
+import com.sanekey.service.UserService;
+import com.sanekey.util.KeysetPage;
+import com.sanekey.util.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Dataset-scale benchmark for the admin payment search. Tops the payments
+ * table up to a target size with synthetic rows (10M by default), then
+ * times the first page, a deep keyset page walk, and the exact and
+ * approximate counts for the common filter combinations.
+ *
+ * Refuses to run unless connected to a scratch schema (see ScratchDatabase).
+ * Run from the test classpath with
+ * mvn spring-boot:test-run -Dspring-boot.run.profiles=search-benchmark
+ */
+@Component
+@Profile("search-benchmark")
+public class PaymentSearchBenchmark implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentSearchBenchmark.class);
+
+    private static final DateTimeFormatter SQL_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentSearchService paymentSearchService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${sanekey.bench.payments:10000000}")
+    private long targetPayments;
+
+    @Value("${sanekey.bench.users:1000}")
+    private int targetUsers;
+
+    @Value("${sanekey.bench.days:365}")
+    private int days;
+
+    @Value("${sanekey.bench.insertBatch:5000}")
+    private int insertBatch;
+
+    @Value("${sanekey.bench.iterations:50}")
+    private int iterations;
+
+    @Value("${sanekey.bench.deepPages:20}")
+    private int deepPages;
+
+    @Value("${sanekey.bench.pageSize:50}")
+    private int pageSize;
+
+    @Value("${sanekey.bench.exitOnFinish:true}")
+    private boolean exitOnFinish;
+
+    private TransactionTemplate transactionTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        ScratchDatabase.require(dataSource, "Search benchmark");
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        int exitCode = 0;
+        try {
+            List<Long> userIds = ensureUsers();
+            seed(userIds);
+            for (Map.Entry<String, PaymentSearchCriteria> scenario : scenarios(userIds.get(0)).entrySet()) {
+                benchmark(scenario.getKey(), scenario.getValue());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Search benchmark failed: {}", e.getMessage());
+            exitCode = 1;
+        }
+
+        if (exitOnFinish) {
+            int code = exitCode;
+            System.exit(SpringApplication.exit(applicationContext, () -> code));
+        }
+    }
+
+    private List<Long> ensureUsers() {
+        List<Long> userIds = userIds();
+        for (int i = userIds.size(); i < targetUsers; i++) {
+            userService.registerUser("bench-" + i + "@example.com", "bench-password", "Bench User " + i);
+        }
+        return userIds.size() < targetUsers ? userIds() : userIds;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> userIds() {
+        List<Number> ids = entityManager.createNativeQuery("SELECT id FROM users ORDER BY id LIMIT :limit")
+                .setParameter("limit", targetUsers)
+                .getResultList();
+        List<Long> userIds = new ArrayList<>();
+        ids.forEach(id -> userIds.add(id.longValue()));
+        return userIds;
+    }
+
+    /**
+     * Insert synthetic payments until the table holds targetPayments rows
+     */
+    private void seed(List<Long> userIds) {
+        long existing = paymentRepository.count();
+        if (existing >= targetPayments) {
+            logger.info("Search benchmark: {} payments present, skipping seeding", existing);
+            return;
+        }
+
+        logger.info("Search benchmark: seeding {} payments", targetPayments - existing);
+        Random random = new Random(42);
+        SnowflakeIdGenerator ids = new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID);
+        LocalDateTime now = LocalDateTime.now();
+        long remaining = targetPayments - existing;
+        long inserted = 0;
+        while (remaining > 0) {
+            int batch = (int) Math.min(insertBatch, remaining);
+            StringBuilder sql = new StringBuilder("INSERT INTO payments (user_id, amount, currency, status, method, " +
+                    "transaction_id, description, created_at, updated_at, completed_at, version) VALUES ");
+            for (int i = 0; i < batch; i++) {
+                Payment.PaymentStatus status = status(random.nextInt(100));
+                LocalDateTime createdAt = now.minusSeconds((long) (random.nextDouble() * days * 86400L));
+                String created = "'" + SQL_TIME.format(createdAt) + "'";
+                // Amounts skew small, as real orders do
+                BigDecimal amount = BigDecimal.valueOf(Math.exp(random.nextDouble() * Math.log(5000)))
+                        .setScale(2, RoundingMode.HALF_UP);
+                if (i > 0) {
+                    sql.append(',');
+                }
+                sql.append('(').append(userIds.get(random.nextInt(userIds.size())))
+                        .append(',').append(amount.toPlainString())
+                        .append(',').append(random.nextInt(10) == 0 ? "'USD'" : "'INR'")
+                        .append(",'").append(status.name())
+                        .append("','").append(random.nextInt(10) < 6 ? "STRIPE" : "PAYPAL")
+                        .append("','").append(ids.nextEncodedId())
+                        .append("','Benchmark payment',").append(created)
+                        .append(',').append(created)
+                        .append(',').append(status == Payment.PaymentStatus.COMPLETED ? created : "NULL")
+                        .append(",0)");
+            }
+            transactionTemplate.executeWithoutResult(tx -> entityManager.createNativeQuery(sql.toString()).executeUpdate());
+            remaining -= batch;
+            inserted += batch;
+            if (inserted % (insertBatch * 200L) == 0) {
+                logger.info("Search benchmark: {} payments inserted", inserted);
+            }
+        }
+        entityManager.createNativeQuery("ANALYZE TABLE payments").getResultList();
+    }
+
+    private static Payment.PaymentStatus status(int roll) {
+        if (roll < 70) return Payment.PaymentStatus.COMPLETED;
+        if (roll < 80) return Payment.PaymentStatus.FAILED;
+        if (roll < 90) return Payment.PaymentStatus.PENDING;
+        if (roll < 97) return Payment.PaymentStatus.CANCELLED;
+        return Payment.PaymentStatus.REFUNDED;
+    }
+
+    private Map<String, PaymentSearchCriteria> scenarios(Long userId) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, PaymentSearchCriteria> scenarios = new LinkedHashMap<>();
+        scenarios.put("latest", criteria(c -> {}));
+        scenarios.put("status", criteria(c -> c.setStatus(Payment.PaymentStatus.COMPLETED)));
+        scenarios.put("status+method", criteria(c -> {
+            c.setStatus(Payment.PaymentStatus.FAILED);
+            c.setMethod(Payment.PaymentMethod.PAYPAL);
+        }));
+        scenarios.put("method+last7d", criteria(c -> {
+            c.setMethod(Payment.PaymentMethod.STRIPE);
+            c.setCreatedFrom(now.minusDays(7));
+        }));
+        scenarios.put("status+amount", criteria(c -> {
+            c.setStatus(Payment.PaymentStatus.COMPLETED);
+            c.setMinAmount(new BigDecimal("1000"));
+            c.setMaxAmount(new BigDecimal("2000"));
+        }));
+        scenarios.put("user", criteria(c -> c.setUserId(userId)));
+        scenarios.put("user+status", criteria(c -> {
+            c.setUserId(userId);
+            c.setStatus(Payment.PaymentStatus.COMPLETED);
+        }));
+        scenarios.put("last30d+currency", criteria(c -> {
+            c.setCreatedFrom(now.minusDays(30));
+            c.setCurrency("USD");
+        }));
+        scenarios.put("narrow-amount", criteria(c -> {
+            c.setMinAmount(new BigDecimal("4990"));
+            c.setMaxAmount(new BigDecimal("5000"));
+        }));
+        return scenarios;
+    }
+
+    private static PaymentSearchCriteria criteria(Consumer<PaymentSearchCriteria> filters) {
+        PaymentSearchCriteria criteria = new PaymentSearchCriteria();
+        filters.accept(criteria);
+        return criteria;
+    }
+
+    private void benchmark(String name, PaymentSearchCriteria criteria) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Timer firstPage = timer(registry, "first-page");
+        Timer deepPage = timer(registry, "deep-page");
+
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            KeysetPage<Payment> page = paymentSearchService.search(criteria, null, pageSize);
+            firstPage.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+            for (int p = 0; p < deepPages && page.isHasMore(); p++) {
+                start = System.nanoTime();
+                page = paymentSearchService.search(criteria, page.getNextCursor(), pageSize);
+                deepPage.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            entityManager.clear();
+        }
+
+        long start = System.nanoTime();
+        Long exact = paymentRepository.countExact(criteria, TimeUnit.MINUTES.toMillis(10));
+        double exactMs = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        long approximate = paymentRepository.countApproximate(criteria);
+        double approximateMs = (System.nanoTime() - start) / 1e6;
+
+        logger.info("Search benchmark [{}] index={} firstPage {} deepPage {} exactCount={} ({} ms) approximateCount={} ({} ms)",
+                name, paymentRepository.indexFor(criteria), latency(firstPage), latency(deepPage),
+                exact, String.format("%.1f", exactMs), approximate, String.format("%.1f", approximateMs));
+    }
+
+    private static Timer timer(SimpleMeterRegistry registry, String name) {
+        return Timer.builder("bench." + name).publishPercentiles(0.5, 0.99).register(registry);
+    }
+
+    private static String latency(Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        StringBuilder out = new StringBuilder("n=").append(snapshot.count());
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            out.append(String.format(" p%d=%.2fms", Math.round(percentile.percentile() * 100),
+                    percentile.value(TimeUnit.MILLISECONDS)));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,33 @@
+package com.sanekey.sim;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * Keeps the simulation harnesses, which write test users and payments by the
+ * thousand or million, off real databases: each one checks the schema it is
+ * connected to before writing anything and refuses to run unless the name
+ * ends in _scratch.
+ */
+final class ScratchDatabase {
+
+    static final String SUFFIX = "_scratch";
+
+    private ScratchDatabase() {
+    }
+
+    static void require(DataSource dataSource, String harness) {
+        String schema;
+        try (Connection connection = dataSource.getConnection()) {
+            schema = connection.getCatalog();
+        } catch (SQLException e) {
+            throw new IllegalStateException(harness + " could not check its database: " + e.getMessage(), e);
+        }
+        if (schema == null || !schema.toLowerCase(Locale.ROOT).endsWith(SUFFIX)) {
+            throw new IllegalStateException(harness + " writes test data and only runs against a schema named *"
+                    + SUFFIX + ", not " + schema + "; point SANEKEY_SCRATCH_DB_URL at a scratch database");
+        }
+    }
+}
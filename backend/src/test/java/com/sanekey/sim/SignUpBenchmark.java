@@ -0,0 +1,192 @@
+package com.sanekey.sim;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Throughput of POST /api/auth/signup over HTTP against the running
+ * application. Two phases, each warmed up and then measured for a fixed
+ * window: sign-ups with fresh emails, which hash the password and insert,
+ * and sign-ups with an email that is already registered, which the unique
+ * key on users.email rejects. Reports requests per second, p50/p99 latency
+ * and unexpected responses per phase.
+ *
+ * It registers users by the thousand, so it only runs against a scratch
+ * schema (see ScratchDatabase). Run from the test classpath with
+ * mvn spring-boot:test-run -Dspring-boot.run.profiles=signup-benchmark
+ */
+@Component
+@Profile("signup-benchmark")
+public class SignUpBenchmark implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(SignUpBenchmark.class);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${sanekey.bench.concurrency:32}")
+    private int concurrency;
+
+    @Value("${sanekey.bench.warmupSeconds:10}")
+    private long warmupSeconds;
+
+    @Value("${sanekey.bench.durationSeconds:30}")
+    private long durationSeconds;
+
+    @Value("${sanekey.bench.requestTimeoutMs:30000}")
+    private long requestTimeoutMs;
+
+    @Value("${sanekey.bench.exitOnFinish:true}")
+    private boolean exitOnFinish;
+
+    private HttpClient httpClient;
+
+    private String baseUrl;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        ScratchDatabase.require(dataSource, "Sign-up benchmark");
+        Thread runner = new Thread(this::runBenchmark, "signup-benchmark");
+        runner.setDaemon(true);
+        runner.start();
+    }
+
+    private void runBenchmark() {
+        int exitCode = 0;
+        try {
+            String port = environment.getProperty("local.server.port", "8080");
+            String contextPath = environment.getProperty("server.servlet.context-path", "");
+            baseUrl = "http://localhost:" + port + contextPath + "/api";
+            httpClient = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .executor(Executors.newFixedThreadPool(Math.max(4, concurrency / 4)))
+                    .build();
+
+            String runId = Long.toString(System.currentTimeMillis(), 36);
+            AtomicLong sequence = new AtomicLong();
+            phase("new-email", 200, worker -> "signup-" + runId + "-" + sequence.incrementAndGet() + "@example.com");
+
+            String taken = "signup-" + runId + "-taken@example.com";
+            if (signUp(taken) != 200) {
+                throw new IllegalStateException("Could not register " + taken);
+            }
+            phase("taken-email", 400, worker -> taken);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exitCode = 1;
+        } catch (Exception e) {
+            logger.error("Sign-up benchmark failed: {}", e.getMessage());
+            exitCode = 1;
+        }
+
+        if (exitOnFinish) {
+            int code = exitCode;
+            System.exit(SpringApplication.exit(applicationContext, () -> code));
+        }
+    }
+
+    /**
+     * Sign up from every worker until the window closes, recording only the
+     * requests that start after the warm-up
+     */
+    private void phase(String name, int expectedStatus, IntFunction<String> emails) throws InterruptedException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Timer timer = Timer.builder("bench.signup").publishPercentiles(0.5, 0.99).register(registry);
+        AtomicLong unexpected = new AtomicLong();
+        long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        logger.info("Sign-up benchmark [{}]: warming up for {}s, then measuring for {}s with {} workers",
+                name, warmupSeconds, durationSeconds, concurrency);
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        for (int w = 0; w < concurrency; w++) {
+            int worker = w;
+            workers.submit(() -> {
+                while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+                    long start = System.nanoTime();
+                    int status;
+                    try {
+                        status = signUp(emails.apply(worker));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (IOException e) {
+                        status = -1;
+                    }
+                    if (start >= measureFrom && start < end) {
+                        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        if (status != expectedStatus) {
+                            unexpected.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        long waitMs = TimeUnit.NANOSECONDS.toMillis(Math.max(0, end - System.nanoTime())) + requestTimeoutMs;
+        if (!workers.awaitTermination(waitMs, TimeUnit.MILLISECONDS)) {
+            workers.shutdownNow();
+        }
+
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        StringBuilder latency = new StringBuilder();
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            latency.append(String.format(" p%d=%.1fms", Math.round(percentile.percentile() * 100),
+                    percentile.value(TimeUnit.MILLISECONDS)));
+        }
+        logger.info("Sign-up benchmark [{}]: {} requests, {} per second,{} max={}ms, {} unexpected responses",
+                name, snapshot.count(), String.format("%.1f", snapshot.count() / (double) durationSeconds),
+                latency, String.format("%.1f", snapshot.max(TimeUnit.MILLISECONDS)), unexpected.get());
+    }
+
+    private int signUp(String email) throws IOException, InterruptedException {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("email", email);
+        body.put("password", "benchmark-password");
+        body.put("fullName", "Benchmark User");
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/auth/signup"))
+                .timeout(Duration.ofMillis(requestTimeoutMs))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
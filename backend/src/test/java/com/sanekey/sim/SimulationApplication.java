@@ -0,0 +1,16 @@
+package com.sanekey.sim;
+
+import com.sanekey.SanekeyApplication;
+import org.springframework.boot.SpringApplication;
+
+/**
+ * Starts the application from the test classpath, where the simulation
+ * harnesses live, e.g.
+ * mvn spring-boot:test-run -Dspring-boot.run.profiles=gateway-sim,loadtest
+ */
+public class SimulationApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.from(SanekeyApplication::main).run(args);
+    }
+}
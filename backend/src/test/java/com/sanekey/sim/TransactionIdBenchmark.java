@@ -0,0 +1,192 @@
+package com.sanekey.sim;
+
+import com.sanekey.util.SnowflakeIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Compares Snowflake transaction ids with the TXN_ millis + UUID fragment
+ * scheme they replaced: ids generated per second across threads, then rows
+ * inserted per second into a table with a unique transaction_id index, as
+ * on payments, and the size that index ends up at.
+ *
+ * Refuses to run unless connected to a scratch schema (see ScratchDatabase).
+ * Run from the test classpath with
+ * mvn spring-boot:test-run -Dspring-boot.run.profiles=txn-id-benchmark
+ */
+@Component
+@Profile("txn-id-benchmark")
+public class TransactionIdBenchmark implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionIdBenchmark.class);
+
+    // Keeps the JIT from discarding ids nobody reads
+    private static volatile int sink;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${sanekey.bench.threads:8}")
+    private int threads;
+
+    @Value("${sanekey.bench.generateMs:5000}")
+    private long generateMs;
+
+    @Value("${sanekey.bench.warmupMs:2000}")
+    private long warmupMs;
+
+    @Value("${sanekey.bench.rows:2000000}")
+    private long rows;
+
+    @Value("${sanekey.bench.insertBatch:1000}")
+    private int insertBatch;
+
+    @Value("${sanekey.bench.exitOnFinish:true}")
+    private boolean exitOnFinish;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        ScratchDatabase.require(dataSource, "Transaction id benchmark");
+        int exitCode = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Map.Entry<String, Supplier<String>> scheme : schemes().entrySet()) {
+                generate(executor, scheme.getValue(), warmupMs);
+                double perSecond = generate(executor, scheme.getValue(), generateMs);
+                logger.info("Transaction id benchmark [{}] generate: {} ids/s on {} threads",
+                        scheme.getKey(), String.format("%.0f", perSecond), threads);
+            }
+            for (Map.Entry<String, Supplier<String>> scheme : schemes().entrySet()) {
+                insert(executor, scheme.getKey(), scheme.getValue());
+            }
+        } catch (Exception e) {
+            logger.error("Transaction id benchmark failed: {}", e.getMessage());
+            exitCode = 1;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (exitOnFinish) {
+            int code = exitCode;
+            System.exit(SpringApplication.exit(applicationContext, () -> code));
+        }
+    }
+
+    private static Map<String, Supplier<String>> schemes() {
+        SnowflakeIdGenerator snowflake = new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID);
+        Map<String, Supplier<String>> schemes = new LinkedHashMap<>();
+        // What PaymentService generated before Snowflake ids
+        schemes.put("txn-uuid", () ->
+                "TXN_" + System.currentTimeMillis() + "_" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
+        schemes.put("snowflake", snowflake::nextEncodedId);
+        return schemes;
+    }
+
+    /**
+     * Generate ids on every thread for a while and return the combined rate
+     */
+    private double generate(ExecutorService executor, Supplier<String> ids, long durationMs) throws Exception {
+        AtomicLong generated = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(executor.submit(() -> {
+                start.await();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMs);
+                long count = 0;
+                int length = 0;
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 1000; i++) {
+                        length += ids.get().length();
+                    }
+                    count += 1000;
+                }
+                sink = length;
+                generated.addAndGet(count);
+                return null;
+            }));
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        return generated.get() / ((System.nanoTime() - started) / 1e9);
+    }
+
+    /**
+     * Insert rows with one scheme's ids from every thread, in multi-row
+     * batches, into a fresh table with the payments unique index
+     */
+    private void insert(ExecutorService executor, String name, Supplier<String> ids) throws Exception {
+        String table = "bench_txn_" + name.replace('-', '_');
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + table);
+        jdbcTemplate.execute("CREATE TABLE " + table + " (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "transaction_id VARCHAR(255) NOT NULL, created_at DATETIME(6) NOT NULL, " +
+                "UNIQUE KEY uk_" + table + "_transaction_id (transaction_id))");
+
+        String sql = "INSERT INTO " + table + " (transaction_id, created_at) VALUES (?, ?)";
+        AtomicLong remaining = new AtomicLong(rows);
+        List<Future<?>> workers = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            workers.add(executor.submit(() -> {
+                long claimed;
+                while ((claimed = Math.min(insertBatch, remaining.getAndAdd(-insertBatch))) > 0) {
+                    List<Object[]> batch = new ArrayList<>((int) claimed);
+                    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                    for (long i = 0; i < claimed; i++) {
+                        batch.add(new Object[] {ids.get(), now});
+                    }
+                    jdbcTemplate.batchUpdate(sql, batch);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        jdbcTemplate.execute("ANALYZE TABLE " + table);
+        Long indexBytes = jdbcTemplate.queryForObject(
+                "SELECT stat_value * @@innodb_page_size FROM mysql.innodb_index_stats " +
+                "WHERE database_name = DATABASE() AND table_name = ? AND index_name = ? AND stat_name = 'size'",
+                Long.class, table, "uk_" + table + "_transaction_id");
+        logger.info("Transaction id benchmark [{}] insert: {} rows in {} s, {} rows/s on {} threads, " +
+                        "unique index {} MB",
+                name, rows, String.format("%.1f", seconds), String.format("%.0f", rows / seconds), threads,
+                indexBytes != null ? String.format("%.1f", indexBytes / 1048576.0) : "?");
+    }
+}
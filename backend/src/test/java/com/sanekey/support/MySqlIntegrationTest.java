@@ -0,0 +1,39 @@
+package com.sanekey.support;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Base for tests that need the real schema: the queries rely on MySQL-only
+ * SQL (FORCE INDEX, ON DUPLICATE KEY UPDATE, INSERT IGNORE), so they run
+ * against one MySQL container shared by every test class and skip when no
+ * Docker daemon is available.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@Testcontainers(disabledWithoutDocker = true)
+public abstract class MySqlIntegrationTest {
+
+    private static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0.33")
+            .withDatabaseName("sanekey_test");
+
+    // Started once and left for Testcontainers to remove when the JVM exits
+    @BeforeAll
+    static void startDatabase() {
+        if (!MYSQL.isRunning()) {
+            MYSQL.start();
+        }
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", MYSQL::getJdbcUrl);
+        registry.add("spring.datasource.username", MYSQL::getUsername);
+        registry.add("spring.datasource.password", MYSQL::getPassword);
+    }
+}